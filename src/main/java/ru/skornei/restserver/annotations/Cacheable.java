@@ -0,0 +1,46 @@
+package ru.skornei.restserver.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Запоминать ответы GET обработчика. Ключ - адрес, параметры,
+ * выбранные заголовки и тип ответа
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Cacheable {
+
+    /**
+     * Время жизни ответа
+     * @return миллисекунды
+     */
+    long ttl();
+
+    /**
+     * Максимальное количество ответов
+     * @return количество
+     */
+    int maxEntries() default 100;
+
+    /**
+     * Максимальный общий размер тел ответов
+     * @return размер в байтах
+     */
+    int maxBytes() default 1024 * 1024;
+
+    /**
+     * Параметры запроса, входящие в ключ. Пусто - все параметры
+     * @return названия параметров
+     */
+    String[] parameters() default {};
+
+    /**
+     * Заголовки запроса, входящие в ключ. Для обработчика с RequiresAuthentication
+     * Authorization добавляется сам, ответ одного пользователя не попадет другому
+     * @return названия заголовков
+     */
+    String[] headers() default {};
+}
@@ -0,0 +1,33 @@
+package ru.skornei.restserver.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Сжатие ответа обработчика, перекрывает настройки RestServer
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Compress {
+
+    /**
+     * Сжимать ответ
+     * @return да или нет
+     */
+    boolean value() default true;
+
+    /**
+     * Минимальный размер тела для сжатия, -1 - как у сервера
+     * @return размер в байтах
+     */
+    int minSize() default -1;
+
+    /**
+     * Запоминать сжатое тело. Для статичных и повторяющихся ответов,
+     * одинаковое тело не сжимается повторно
+     * @return да или нет
+     */
+    boolean cache() default false;
+}
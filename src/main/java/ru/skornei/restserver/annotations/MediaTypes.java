@@ -0,0 +1,15 @@
+package ru.skornei.restserver.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Типы содержимого, с которыми работает конвертер
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface MediaTypes {
+    String[] value();
+}
@@ -0,0 +1,47 @@
+package ru.skornei.restserver.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import ru.skornei.restserver.server.dictionary.RateLimitKey;
+
+/**
+ * Ограничение запросов к обработчику. Лишние запросы получают ответ 429 с Retry-After
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface RateLimit {
+
+    /**
+     * По чему считаются запросы
+     * @return ключ
+     */
+    RateLimitKey key() default RateLimitKey.ADDRESS;
+
+    /**
+     * Средняя скорость запросов, 0 - без ограничения
+     * @return запросов в секунду
+     */
+    double rate() default 0;
+
+    /**
+     * Сколько запросов можно сделать подряд сверх средней скорости.
+     * 0 - одна секунда запросов
+     * @return количество
+     */
+    int burst() default 0;
+
+    /**
+     * Количество одновременно выполняемых запросов, 0 - без ограничения
+     * @return количество
+     */
+    int concurrency() default 0;
+
+    /**
+     * Сколько клиентов помнить, при переполнении сначала забываются неактивные
+     * @return количество
+     */
+    int maxClients() default 4096;
+}
@@ -5,8 +5,22 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
+import ru.skornei.restserver.server.dictionary.ControllerScope;
+
 @Retention(RetentionPolicy.RUNTIME)
 @Target(ElementType.TYPE)
 public @interface RestController {
     String value();
+
+    /**
+     * Время жизни контроллера
+     * @return область
+     */
+    ControllerScope scope() default ControllerScope.REQUEST;
+
+    /**
+     * Размер пула для {@link ControllerScope#POOLED}
+     * @return размер пула
+     */
+    int poolSize() default 4;
 }
@@ -15,21 +15,275 @@ public @interface RestServer {
      */
     int port();
 
+    /**
+     * Адрес интерфейса, пустой - все интерфейсы
+     * @return адрес
+     */
+    String hostname() default "";
+
+    /**
+     * Хранилище ключей для HTTPS: путь к файлу или ресурсу.
+     * Пустое - сервер работает по HTTP
+     * @return путь
+     */
+    String keyStore() default "";
+
+    /**
+     * Пароль хранилища и ключа. Значение аннотации попадает в байткод,
+     * поэтому лучше передать пароль во время работы, переопределив
+     * BaseRestServer.getKeyStorePassword(). Это значение используется, если он вернул null
+     * @return пароль
+     */
+    String keyStorePassword() default "";
+
+    /**
+     * Тип хранилища, например PKCS12 или BKS. Пустой - по умолчанию системы
+     * @return тип
+     */
+    String keyStoreType() default "";
+
+    /**
+     * Разрешенные версии TLS, пустой список - по умолчанию системы
+     * @return версии
+     */
+    String[] tlsProtocols() default {};
+
+    /**
+     * Сколько TLS сессий помнить для возобновления без полного рукопожатия
+     * @return количество
+     */
+    int tlsSessionCacheSize() default 1024;
+
+    /**
+     * Сколько помнить TLS сессию
+     * @return секунды
+     */
+    int tlsSessionTimeout() default 24 * 60 * 60;
+
     /**
      * Конвертер объектов
      * @return класс конвертера
      */
     Class<?> converter() default void.class;
 
+    /**
+     * Дополнительные конвертеры, типы задаются аннотацией MediaTypes.
+     * Тип ответа выбирается по заголовку Accept, конвертер запроса по Content-Type
+     * @return список классов
+     */
+    Class<?>[] converters() default {};
+
+    /**
+     * Сжимать ответы, если клиент принимает gzip или deflate.
+     * Обработчик может перекрыть аннотацией Compress
+     * @return да или нет
+     */
+    boolean compression() default false;
+
+    /**
+     * Минимальный размер тела для сжатия
+     * @return размер в байтах
+     */
+    int compressionMinSize() default 1024;
+
+    /**
+     * Типы ответов, которые сжимаются
+     * @return типы, допускаются маски
+     */
+    String[] compressionTypes() default {"text/*",
+            "application/json",
+            "application/*+json",
+            "application/xml",
+            "application/*+xml",
+            "application/javascript"};
+
+    /**
+     * Размер кэша сжатых тел для обработчиков с Compress(cache = true)
+     * @return размер в байтах
+     */
+    int compressionCacheSize() default 1024 * 1024;
+
+    /**
+     * Считать ETag GET ответов по телу и отвечать 304 на If-None-Match
+     * @return да или нет
+     */
+    boolean etag() default true;
+
+    /**
+     * Собирать статистику запросов по обработчикам
+     * @return да или нет
+     */
+    boolean metrics() default true;
+
+    /**
+     * Адрес статистики в формате Prometheus, пусто - не отдавать
+     * @return адрес, например /metrics
+     */
+    String metricsPath() default "";
+
+    /**
+     * Класс периодической отправки статистики, реализация BaseMetricsReporter
+     * @return класс
+     */
+    Class<?> metricsReporter() default void.class;
+
+    /**
+     * Период отправки статистики
+     * @return секунды
+     */
+    int metricsInterval() default 60;
+
     /**
      * Аунтификатор
      * @return класс аунтификатор
      */
     Class<?> authentication() default void.class;
 
+    /**
+     * Сколько помнить успешную аутентификацию по заголовку Authorization.
+     * 0 - проверять каждый запрос
+     * @return миллисекунды
+     */
+    long authCacheTtl() default 0;
+
+    /**
+     * Сколько помнить отказ в аутентификации
+     * @return миллисекунды
+     */
+    long authCacheNegativeTtl() default 0;
+
+    /**
+     * Максимальное количество запомненных результатов аутентификации
+     * @return количество
+     */
+    int authCacheSize() default 1024;
+
+    /**
+     * Сколько ждать асинхронную аутентификацию, затем ответ 503.
+     * 0 - без ограничения
+     * @return миллисекунды
+     */
+    long authTimeout() default 10000;
+
+    /**
+     * Ограничение всех запросов к серверу, в том числе к неизвестным адресам.
+     * Обработчики добавляют свои ограничения аннотацией RateLimit
+     * @return ограничение
+     */
+    RateLimit rateLimit() default @RateLimit;
+
     /**
      * Контроллеры сервера
      * @return список классов
      */
     Class<?>[] controllers();
+
+    /**
+     * Максимальный размер тела запроса, который читается в память.
+     * Тело большего размера можно получить только параметром
+     * InputStream или ReadableByteChannel, иначе ответ 413
+     * @return размер в байтах
+     */
+    int maxBufferedBody() default 4 * 1024 * 1024;
+
+    /**
+     * Сколько ждать результат обработчика, который возвращает Future
+     * или принимает AsyncResponse. Обработчик может перекрыть аннотацией Timeout
+     * @return миллисекунды
+     */
+    long asyncTimeout() default 30000;
+
+    /**
+     * Адрес пакетного запроса: POST с массивом {method, uri, headers, body},
+     * ответ - массив {status, headers, body, encoding}, нетекстовое тело в base64.
+     * Пусто - пакетные запросы отключены.
+     * Нужен конвертер объектов
+     * @return адрес
+     */
+    String batchPath() default "";
+
+    /**
+     * Максимальное количество запросов в пакете
+     * @return количество
+     */
+    int batchMaxRequests() default 20;
+
+    /**
+     * Потоки для параллельного выполнения пакета с параметром parallel=true.
+     * 0 - запросы пакета всегда выполняются по очереди
+     * @return количество потоков
+     */
+    int batchThreads() default 0;
+
+    /**
+     * Количество потоков обработки соединений.
+     * 0 - новый поток на каждое соединение
+     * @return количество потоков
+     */
+    int threads() default 0;
+
+    /**
+     * Размер очереди соединений, ожидающих свободный поток
+     * @return размер очереди
+     */
+    int queueSize() default 0;
+
+    /**
+     * Использовать виртуальные потоки, если JVM их поддерживает.
+     * threads() тогда ограничивает число одновременных соединений
+     * @return да или нет
+     */
+    boolean virtualThreads() default false;
+
+    /**
+     * Через сколько секунд повторить запрос после отказа 503
+     * @return секунды
+     */
+    int retryAfter() default 1;
+
+    /**
+     * Свой обработчик соединений, реализация NanoHTTPD.AsyncRunner
+     * @return класс обработчика
+     */
+    Class<?> runner() default void.class;
+
+    /**
+     * Через сколько закрыть соединение без запросов, в том числе keep-alive
+     * @return миллисекунды
+     */
+    int idleTimeout() default 5000;
+
+    /**
+     * Сколько соединений может быть открыто, лишние получают 503.
+     * 0 - без ограничения
+     * @return количество
+     */
+    int maxConnections() default 0;
+
+    /**
+     * Сколько запросов обработать в одном соединении до его закрытия.
+     * 0 - без ограничения
+     * @return количество
+     */
+    int maxRequestsPerConnection() default 0;
+
+    /**
+     * Очередь подключений слушающего сокета, 0 - по умолчанию системы
+     * @return размер очереди
+     */
+    int backlog() default 0;
+
+    /**
+     * Отправлять маленькие ответы без задержки (TCP_NODELAY)
+     * @return да или нет
+     */
+    boolean tcpNoDelay() default true;
+
+    /**
+     * Сколько stop() ждет завершения начатых запросов, 0 - закрыть сразу.
+     * stop() часто вызывают из главного потока, где долгое ожидание дает ANR,
+     * поэтому по умолчанию ожидания нет, дождаться можно вызовом stop(timeout)
+     * @return миллисекунды
+     */
+    int drainTimeout() default 0;
 }
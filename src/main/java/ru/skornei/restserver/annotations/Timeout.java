@@ -0,0 +1,21 @@
+package ru.skornei.restserver.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Сколько ждать результат обработчика, который возвращает Future
+ * или принимает AsyncResponse. По истечении ответ 504
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Timeout {
+
+    /**
+     * Время ожидания
+     * @return миллисекунды
+     */
+    long value();
+}
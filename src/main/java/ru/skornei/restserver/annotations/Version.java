@@ -0,0 +1,16 @@
+package ru.skornei.restserver.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Метод контроллера, быстро возвращающий версию данных для GET.
+ * Если версия совпадает с If-None-Match, ответ 304 отдается без вызова обработчика.
+ * Параметры как у обработчика, null - проверки нет
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Version {
+}
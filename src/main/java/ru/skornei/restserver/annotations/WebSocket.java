@@ -0,0 +1,28 @@
+package ru.skornei.restserver.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Контроллер принимает соединения WebSocket по своему адресу.
+ * Экземпляр контроллера берется на все время соединения
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface WebSocket {
+
+    /**
+     * Сколько сообщений может ждать отправки одному клиенту.
+     * Клиент, который не успевает их читать, отключается
+     * @return количество
+     */
+    int sendQueueSize() default 64;
+
+    /**
+     * Через сколько закрыть соединение без входящих сообщений, 0 - не закрывать
+     * @return миллисекунды
+     */
+    int idleTimeout() default 0;
+}
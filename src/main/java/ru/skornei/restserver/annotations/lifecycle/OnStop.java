@@ -0,0 +1,14 @@
+package ru.skornei.restserver.annotations.lifecycle;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Вызывается при остановке сервера для singleton и pooled контроллеров
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface OnStop {
+}
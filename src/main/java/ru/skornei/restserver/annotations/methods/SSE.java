@@ -0,0 +1,35 @@
+package ru.skornei.restserver.annotations.methods;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Подписка на события контроллера в формате text/event-stream.
+ * Отвечает на GET, если у контроллера нет своего GET или клиент принимает text/event-stream.
+ * Метод вызывается при подписке и может отправить клиенту начальное состояние
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface SSE {
+
+    /**
+     * Сколько событий может ждать отправки одному клиенту.
+     * Клиент, который не успевает их читать, отключается
+     * @return количество
+     */
+    int bufferSize() default 64;
+
+    /**
+     * Сколько последних событий помнить для повтора по Last-Event-ID
+     * @return количество
+     */
+    int replaySize() default 100;
+
+    /**
+     * Период комментария, который держит соединение открытым
+     * @return миллисекунды
+     */
+    long heartbeat() default 15000;
+}
@@ -0,0 +1,15 @@
+package ru.skornei.restserver.annotations.websocket;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Вызывается для каждого сообщения WebSocket.
+ * Параметр сообщения: String, byte[] или класс для конвертера
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface OnMessage {
+}
@@ -0,0 +1,15 @@
+package ru.skornei.restserver.annotations.websocket;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Вызывается после установки соединения WebSocket.
+ * RequiresAuthentication на этом методе проверяется до установки соединения
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface OnOpen {
+}
@@ -1,25 +1,85 @@
 package ru.skornei.restserver.server;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.util.HashMap;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.Map;
 
+import javax.net.ssl.SSLSocket;
+
 import fi.iki.elonen.NanoHTTPD;
-import ru.skornei.restserver.Cache;
-import ru.skornei.restserver.annotations.ExceptionHandler;
+import fi.iki.elonen.NanoWSD;
 import ru.skornei.restserver.annotations.RestController;
 import ru.skornei.restserver.annotations.RestServer;
-import ru.skornei.restserver.annotations.methods.DELETE;
-import ru.skornei.restserver.annotations.methods.GET;
-import ru.skornei.restserver.annotations.methods.POST;
-import ru.skornei.restserver.annotations.methods.PUT;
-import ru.skornei.restserver.server.authentication.BaseAuthentication;
+import ru.skornei.restserver.annotations.Compress;
+import ru.skornei.restserver.server.authentication.AuthenticationManager;
+import ru.skornei.restserver.server.batch.BatchRequest;
+import ru.skornei.restserver.server.batch.BatchResponse;
+import ru.skornei.restserver.server.batch.BatchSession;
+import ru.skornei.restserver.server.cache.ResponseCache;
+import ru.skornei.restserver.server.compression.Compressor;
+import ru.skornei.restserver.server.connection.ConnectionManager;
+import ru.skornei.restserver.server.connection.ListenerSocketFactory;
 import ru.skornei.restserver.server.converter.BaseConverter;
+import ru.skornei.restserver.server.converter.BaseStreamConverter;
+import ru.skornei.restserver.server.converter.ConverterBodyWriter;
+import ru.skornei.restserver.server.converter.ConverterRegistry;
+import ru.skornei.restserver.server.dictionary.ContentEncoding;
 import ru.skornei.restserver.server.dictionary.HeaderType;
+import ru.skornei.restserver.server.dictionary.RateLimitKey;
 import ru.skornei.restserver.server.dictionary.ResponseStatus;
 import ru.skornei.restserver.server.exceptions.NoAnnotationException;
+import ru.skornei.restserver.server.io.BodyInputStream;
+import ru.skornei.restserver.server.io.ChunkedInputStream;
+import ru.skornei.restserver.server.io.ChunksInputStream;
+import ru.skornei.restserver.server.io.EmptyResponse;
+import ru.skornei.restserver.server.limit.RateLimiter;
+import ru.skornei.restserver.server.io.FileResponse;
+import ru.skornei.restserver.server.io.FixedLengthInputStream;
+import ru.skornei.restserver.server.io.StreamBodyWriter;
+import ru.skornei.restserver.server.io.WriterResponse;
+import ru.skornei.restserver.server.metrics.BaseMetricsReporter;
+import ru.skornei.restserver.server.metrics.MetricsRegistry;
+import ru.skornei.restserver.server.metrics.Phase;
+import ru.skornei.restserver.server.metrics.PrometheusFormatter;
+import ru.skornei.restserver.server.metrics.RequestTimer;
+import ru.skornei.restserver.server.metrics.RouteMetrics;
+import ru.skornei.restserver.server.protocol.AsyncResponse;
+import ru.skornei.restserver.server.protocol.BodyWriter;
 import ru.skornei.restserver.server.protocol.RequestInfo;
 import ru.skornei.restserver.server.protocol.ResponseInfo;
+import ru.skornei.restserver.server.route.ControllerInfo;
+import ru.skornei.restserver.server.route.Router;
+import ru.skornei.restserver.server.sse.EventPublisher;
+import ru.skornei.restserver.server.tls.TlsManager;
+import ru.skornei.restserver.server.websocket.WebSocketConnection;
+import ru.skornei.restserver.server.websocket.WebSocketPublisher;
+import ru.skornei.restserver.server.sse.EventStreamResponse;
+import ru.skornei.restserver.server.sse.EventSubscriber;
+import ru.skornei.restserver.server.runner.BaseRunner;
+import ru.skornei.restserver.server.runner.ExecutorRunner;
+import ru.skornei.restserver.server.runner.BoundedRunner;
+import ru.skornei.restserver.server.runner.RejectableHandler;
+import ru.skornei.restserver.server.runner.VirtualThreadRunner;
+import ru.skornei.restserver.utils.DateUtils;
+import ru.skornei.restserver.utils.ETagUtils;
 import ru.skornei.restserver.utils.ReflectionUtils;
 
 public abstract class BaseRestServer {
@@ -30,56 +90,244 @@ public abstract class BaseRestServer {
     private HttpServer httpServer;
 
     /**
-     * Контроллеры обработчики запросов
+     * Контроллеры обработчики запросов.
+     * Не меняется после создания, при регистрации подменяется копией
+     */
+    private volatile Router<ControllerInfo> controllers = new Router<>();
+
+    /**
+     * Сервер запущен
      */
-    private Map<String, Class> controllers = new HashMap<>();
+    private volatile boolean running;
 
     /**
-     * Конвертер объектов
+     * Конвертеры объектов
      */
-    private BaseConverter converter;
+    private final ConverterRegistry converters = new ConverterRegistry();
 
     /**
      * Аутентификация
      */
-    private BaseAuthentication authentication;
+    private AuthenticationManager authentication;
+
+    /**
+     * Ограничение всех запросов, null если не задано
+     */
+    private RateLimiter rateLimiter;
+
+    /**
+     * Сжатие ответов
+     */
+    private Compressor compressor;
+
+    /**
+     * Считать ETag по телу ответа
+     */
+    private boolean etag;
+
+    /**
+     * Статистика запросов, null если не собирается
+     */
+    private MetricsRegistry metrics;
+
+    /**
+     * Адрес статистики в формате Prometheus
+     */
+    private String metricsPath;
+
+    /**
+     * Отправка статистики
+     */
+    private BaseMetricsReporter metricsReporter;
+
+    private int metricsInterval;
+
+    private ScheduledExecutorService metricsScheduler;
+
+    /**
+     * Ожидание результата асинхронных обработчиков
+     */
+    private long asyncTimeout;
+
+    /**
+     * Через сколько секунд повторить запрос после отказа 503
+     */
+    private int retryAfter;
+
+    /**
+     * Адрес пакетного запроса, null если отключен
+     */
+    private String batchPath;
+
+    private int batchMaxRequests;
+
+    private int batchThreads;
+
+    /**
+     * Потоки параллельного выполнения пакета
+     */
+    private ExecutorService batchExecutor;
+
+    /**
+     * Потоки отправки сообщений WebSocket
+     */
+    private volatile ExecutorService webSocketSender;
+
+    /**
+     * Соединение, которое обрабатывает этот поток
+     */
+    private final ThreadLocal<HttpServer.ClientHandler> currentConnection = new ThreadLocal<>();
+
+    /**
+     * Учет открытых соединений
+     */
+    private ConnectionManager connections;
+
+    /**
+     * Слушающий сокет
+     */
+    private ListenerSocketFactory listener;
+
+    private int idleTimeout;
+
+    private boolean tcpNoDelay;
+
+    private int drainTimeout;
+
+    /**
+     * HTTPS или null
+     */
+    private TlsManager tls;
+
+    /**
+     * Соединение WebSocket, подготовленное до ответа на рукопожатие
+     */
+    private final ThreadLocal<WebSocketConnection> pendingWebSocket = new ThreadLocal<>();
+
+    /**
+     * Обработчик соединений
+     */
+    private NanoHTTPD.AsyncRunner runner;
+
+    /**
+     * Максимальный размер тела запроса в памяти
+     */
+    private int maxBufferedBody;
+
+    /**
+     * Общие ресурсы нескольких серверов или null
+     */
+    private final ServerRuntime runtime;
 
     /**
      * Создаем rest сервер
      */
     public BaseRestServer() {
+        this(null);
+    }
+
+    /**
+     * Создаем rest сервер, который делит пул потоков, конвертеры,
+     * аутентификацию и контроллеры с другими серверами
+     * @param runtime общие ресурсы или null
+     */
+    public BaseRestServer(ServerRuntime runtime) {
+        this.runtime = runtime;
         RestServer restServer = getClass().getAnnotation(RestServer.class);
         if (restServer != null) {
-            //Создаем конвертер
-            if (!restServer.converter().equals(void.class) &&
-                    BaseConverter.class.isAssignableFrom(restServer.converter())) {
-                try {
-                    this.converter = (BaseConverter) restServer.converter().newInstance();
-                } catch (Throwable throwable) {
-                    throwable.printStackTrace();
-                }
-            }
+            //Создаем конвертеры, первый используется по умолчанию
+            createConverter(restServer.converter());
+            for (Class<?> cls : restServer.converters())
+                createConverter(cls);
 
             //Создаем класс аутентификации
             if (!restServer.authentication().equals(void.class) &&
-                    BaseAuthentication.class.isAssignableFrom(restServer.authentication())) {
+                    AuthenticationManager.isAuthentication(restServer.authentication())) {
                 try {
-                    this.authentication = (BaseAuthentication) restServer.authentication().newInstance();
+                    this.authentication = runtime != null ?
+                            runtime.getAuthentication(restServer) :
+                            new AuthenticationManager(restServer.authentication().newInstance(),
+                                    restServer.authCacheTtl(),
+                                    restServer.authCacheNegativeTtl(),
+                                    restServer.authCacheSize(),
+                                    restServer.authTimeout());
                 } catch (Throwable throwable) {
                     throwable.printStackTrace();
                 }
             }
 
-            //Получаем контроллеры
+            //Статистика
+            if (restServer.metrics()) {
+                metrics = runtime != null ? runtime.getMetrics() : new MetricsRegistry();
+                if (!restServer.metricsPath().isEmpty())
+                    metricsPath = restServer.metricsPath();
+                if (!restServer.metricsReporter().equals(void.class) &&
+                        BaseMetricsReporter.class.isAssignableFrom(restServer.metricsReporter())) {
+                    try {
+                        metricsReporter = (BaseMetricsReporter) restServer.metricsReporter().newInstance();
+                        metricsInterval = Math.max(1, restServer.metricsInterval());
+                    } catch (Throwable throwable) {
+                        throwable.printStackTrace();
+                    }
+                }
+            }
+
+            //Получаем контроллеры и разбираем их методы один раз
+            Router<ControllerInfo> router = new Router<>();
             for (Class<?> cls : restServer.controllers()) {
                 if (cls.isAnnotationPresent(RestController.class)) {
                     RestController restController = cls.getAnnotation(RestController.class);
-                    controllers.put(restController.value(), cls);
+                    try {
+                        router.add(restController.value(), createController(cls));
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
                 }
             }
+            controllers = router;
+
+            maxBufferedBody = restServer.maxBufferedBody();
+
+            rateLimiter = RateLimiter.create(restServer.rateLimit());
+
+            asyncTimeout = restServer.asyncTimeout();
+            retryAfter = restServer.retryAfter();
+
+            //Batch requests are parsed by the default converter
+            if (!restServer.batchPath().isEmpty() && !converters.isEmpty()) {
+                batchPath = restServer.batchPath();
+                batchMaxRequests = Math.max(1, restServer.batchMaxRequests());
+                batchThreads = restServer.batchThreads();
+            }
+
+            etag = restServer.etag();
+
+            //Сжатие ответов
+            compressor = new Compressor(restServer.compression(),
+                    restServer.compressionMinSize(),
+                    restServer.compressionTypes(),
+                    restServer.compressionCacheSize());
+
+            //Настройки соединений
+            connections = new ConnectionManager(restServer.maxConnections(), restServer.maxRequestsPerConnection());
+            listener = new ListenerSocketFactory(restServer.backlog());
+            idleTimeout = Math.max(0, restServer.idleTimeout());
+            tcpNoDelay = restServer.tcpNoDelay();
+            drainTimeout = Math.max(0, restServer.drainTimeout());
 
             //Создаем сервер
-            httpServer = new HttpServer(restServer.port());
+            httpServer = new HttpServer(restServer.hostname().isEmpty() ? null : restServer.hostname(), restServer.port());
+            httpServer.setServerSocketFactory(listener);
+
+            //Создаем обработчик соединений, с общими ресурсами пул один на все серверы
+            runner = runtime != null ?
+                    new ExecutorRunner(runtime.getExecutor(), retryAfter) :
+                    createRunner(restServer);
+            if (runner != null)
+                httpServer.setAsyncRunner(runner);
+
+            if (runtime != null)
+                runtime.add(this);
         } else {
             throw new NoAnnotationException(getClass().getSimpleName(), RestServer.class.getSimpleName());
         }
@@ -89,186 +337,1446 @@ public abstract class BaseRestServer {
      * Запускаем сервер
      * @throws IOException
      */
-    public void start() throws IOException {
-        httpServer.start();
+    public synchronized void start() throws IOException {
+        //Create singleton and pooled controllers, shared ones are started by the runtime
+        if (runtime != null) {
+            runtime.startControllers();
+        } else {
+            for (ControllerInfo controllerInfo : controllers.values()) {
+                try {
+                    controllerInfo.start();
+                } catch (Exception e) {
+                    throw new IOException("Could not start controller " + controllerInfo.getType().getName(), e);
+                }
+            }
+        }
+
+        //Keys are loaded here, the subclass is constructed and may supply the password
+        if (tls == null)
+            tls = TlsManager.create(getClass().getAnnotation(RestServer.class), getKeyStorePassword());
+
+        connections.resume();
+        httpServer.start(idleTimeout);
+
+        if (batchPath != null && batchThreads > 0) {
+            batchExecutor = Executors.newFixedThreadPool(batchThreads, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "RestServer Batch");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+
+        if (hasWebSockets())
+            startWebSocketSender();
+
+        if (metricsReporter != null) {
+            metricsScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "RestServer Metrics");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            metricsScheduler.scheduleAtFixedRate(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        metricsReporter.report(metrics);
+                    } catch (Throwable throwable) {
+                        //A failing reporter must not stop the schedule
+                        throwable.printStackTrace();
+                    }
+                }
+            }, metricsInterval, metricsInterval, TimeUnit.SECONDS);
+        }
+
+        running = true;
     }
 
     /**
-     * Останавливаем сервер
+     * Останавливаем сервер, начатые запросы ждем drainTimeout (по умолчанию не ждем)
      */
     public void stop() {
-        httpServer.stop();
+        stop(drainTimeout);
     }
 
     /**
-     * Получить контроллер для этого адреса
-     * @param uri адрес
-     * @return контроллер
+     * Останавливаем сервер: новые соединения не принимаются,
+     * начатые запросы завершаются до истечения срока, остальные соединения обрываются
+     * @param timeout сколько ждать, миллисекунды, 0 - закрыть сразу
+     * @return true, если все соединения закрылись до срока
      */
-    private Class getController(String uri) {
-        if (controllers.containsKey(uri))
-            return controllers.get(uri);
+    public synchronized boolean stop(long timeout) {
+        running = false;
 
-        return null;
-    }
+        if (metricsScheduler != null) {
+            metricsScheduler.shutdownNow();
+            metricsScheduler = null;
+        }
 
-    /**
-     * Http server
-     */
-    private class HttpServer extends NanoHTTPD {
+        //New connections are refused while the open ones finish
+        boolean drained = true;
+        if (timeout > 0 && httpServer.wasStarted()) {
+            listener.close();
+
+            //Event streams and websockets would hold their connections until the deadline
+            if (runtime == null) {
+                for (ControllerInfo controllerInfo : controllers.values())
+                    controllerInfo.closeStreams();
+            }
 
-        public HttpServer(int port) {
-            super(port);
+            drained = connections.drain(timeout);
         }
 
-        /**
-         * Получаем данные от клиента
-         *
-         * @param session сессия
-         * @return ответ
-         */
-        @Override
-        public Response serve(IHTTPSession session) {
-            //Request information
-            RequestInfo requestInfo = new RequestInfo(session.getRemoteIpAddress(),
-                    session.getHeaders(),
-                    session.getParameters());
+        httpServer.stop();
 
-            //Reply Information
-            ResponseInfo responseInfo = new ResponseInfo();
+        if (batchExecutor != null) {
+            batchExecutor.shutdownNow();
+            batchExecutor = null;
+        }
 
-            //Get the controller
-            Class cls = getController(session.getUri());
+        if (runtime == null) {
+            for (ControllerInfo controllerInfo : controllers.values())
+                controllerInfo.stop();
+        }
 
-            //Found the controller
-            if (cls != null) {
-                //Create a controller
-                Object controller = null;
+        if (webSocketSender != null) {
+            webSocketSender.shutdownNow();
+            webSocketSender = null;
+        }
+
+        return drained;
+    }
+
+    /**
+     * Добавить контроллер во время работы, начатые запросы не прерываются.
+     * Контроллер с тем же адресом заменяется
+     * @param controller класс контроллера с аннотацией RestController
+     * @throws IOException если контроллер не удалось запустить
+     */
+    public synchronized void register(Class<?> controller) throws IOException {
+        RestController restController = controller.getAnnotation(RestController.class);
+        if (restController == null)
+            throw new NoAnnotationException(controller.getSimpleName(), RestController.class.getSimpleName());
+
+        ControllerInfo controllerInfo = createController(controller);
+        if (running) {
+            if (runtime == null) {
                 try {
-                    controller = cls.newInstance();
+                    controllerInfo.start();
                 } catch (Exception e) {
-                    e.printStackTrace();
+                    unregisterMetrics(controllerInfo);
+                    throw new IOException("Could not start controller " + controller.getName(), e);
                 }
+            }
 
-                //Created the controller
-                if (controller != null) {
-                    try {
-                        //Read body
-                        if (session.getHeaders().containsKey(HeaderType.CONTENT_LENGTH)) {
-                            Integer contentLength = Integer.valueOf(session.getHeaders().get(HeaderType.CONTENT_LENGTH));
-                            if (contentLength > 0) {
-                                byte[] buffer = new byte[contentLength];
-                                session.getInputStream().read(buffer, 0, contentLength);
-                                requestInfo.setBody(buffer);
-                            }
-                        }
+            if (controllerInfo.getWebSocket() != null && webSocketSender == null)
+                startWebSocketSender();
+        }
 
-                        //Get the method
-                        ReflectionUtils.MethodInfo methodInfo = null;
-                        if (session.getMethod() == Method.GET)
-                            methodInfo = ReflectionUtils.getDeclaredMethodInfo(controller, cls, GET.class);
-                        else if (session.getMethod() == Method.POST)
-                            methodInfo = ReflectionUtils.getDeclaredMethodInfo(controller, cls, POST.class);
-                        else if (session.getMethod() == Method.PUT)
-                            methodInfo = ReflectionUtils.getDeclaredMethodInfo(controller, cls, PUT.class);
-                        else if (session.getMethod() == Method.DELETE)
-                            methodInfo = ReflectionUtils.getDeclaredMethodInfo(controller, cls, DELETE.class);
-
-                        //If the method is found
-                        if (methodInfo != null) {
-                            //RequiresAuthentication
-                            if (authentication != null &&
-                                    methodInfo.isRequiresAuthentication() &&
-                                    !authentication.authentication(requestInfo)) {
-                                //Answer 401
-                                return newFixedLengthResponse(ResponseStatus.UNAUTHORIZED,
-                                        NanoHTTPD.MIME_PLAINTEXT,
-                                        ResponseStatus.UNAUTHORIZED.getDescription());
-                            }
+        Router.Match<ControllerInfo> replaced = controllers.match(restController.value());
+        controllers = controllers.with(restController.value(), controllerInfo);
 
-                            //Accept
-                            String accept = methodInfo.getAccept();
-                            if (accept != null) {
-                                if (session.getHeaders().containsKey(HeaderType.CONTENT_TYPE)) {
-                                    String contentType = session.getHeaders().get(HeaderType.CONTENT_TYPE);
-                                    if (!accept.equals(contentType)) {
-                                        //Answer 415
-                                        return newFixedLengthResponse(ResponseStatus.UNSUPPORTED_MEDIA_TYPE,
-                                                NanoHTTPD.MIME_PLAINTEXT,
-                                                ResponseStatus.UNSUPPORTED_MEDIA_TYPE.getDescription());
-                                    }
-                                }
-                            }
+        if (replaced != null && replaced.getValue() != controllerInfo && !controllers.values().contains(replaced.getValue()))
+            retire(replaced.getValue());
+    }
 
-                            //Get the response type
-                            String produces = methodInfo.getProduces();
-                            if (produces != null)
-                                responseInfo.setType(produces);
+    /**
+     * Убрать контроллер во время работы.
+     * Его потоки событий и соединения WebSocket закрываются
+     * @param controller класс контроллера
+     * @return false, если такого контроллера нет
+     */
+    public synchronized boolean unregister(Class<?> controller) {
+        for (ControllerInfo controllerInfo : controllers.values()) {
+            if (controllerInfo.getType().equals(controller)) {
+                controllers = controllers.without(controllerInfo);
+                retire(controllerInfo);
+                return true;
+            }
+        }
 
-                            //If we are waiting for an object
-                            Object paramObject = null;
-                            if (converter != null) {
-                                Class paramClass = methodInfo.getParamClass();
-                                if (paramClass != null && requestInfo.isBodyAvailable()) {
-                                    paramObject = converter.writeValue(requestInfo.getBody(), paramClass);
-                                }
-                            }
+        return false;
+    }
 
-                            //If we do not return anything
-                            if (methodInfo.isVoidResult()) {
-                                methodInfo.invoke(Cache.getContext(),
-                                        requestInfo,
-                                        responseInfo,
-                                        paramObject);
-                            } else {
-                                //Return the answer
-                                Object result = methodInfo.invoke(Cache.getContext(),
-                                        requestInfo,
-                                        responseInfo,
-                                        paramObject);
+    /**
+     * Остановить контроллер, который больше не получает запросы.
+     * Экземпляры останавливаются после начатых на них запросов
+     * @param controllerInfo контроллер
+     */
+    private void retire(ControllerInfo controllerInfo) {
+        converters.forget(controllerInfo.getHandlers());
 
-                                if (converter != null)
-                                    responseInfo.setBody(converter.writeValueAsBytes(result));
-                            }
+        //Shared controllers may still serve other ports
+        if (runtime != null)
+            return;
 
-                            //Sending response
-                            return newFixedLengthResponse(responseInfo.getStatus(),
-                                    responseInfo.getType(),
-                                    responseInfo.getBodyInputStream(),
-                                    responseInfo.getBodyLength());
-                        }
-                    } catch (Throwable throwable) {
-                        //Return error 500 in case it is not otherwise configured in ExceptionHandler
-                        responseInfo.setStatus(ResponseStatus.INTERNAL_SERVER_ERROR);
-
-                        //Get the method
-                        ReflectionUtils.MethodInfo methodInfo = ReflectionUtils.getDeclaredMethodInfo(controller, cls, ExceptionHandler.class);
-                        if (methodInfo != null) {
-                            //Get the response type
-                            String produces = methodInfo.getProduces();
-                            if (produces != null)
-                                responseInfo.setType(produces);
-
-                            try {
-                                methodInfo.invoke(throwable, responseInfo);
-                            } catch (Exception e) {
-                                e.printStackTrace();
-                            }
-                        }
+        unregisterMetrics(controllerInfo);
+        if (running)
+            controllerInfo.stop();
+        else
+            controllerInfo.closeStreams();
+    }
 
-                        //Sending response
-                        return newFixedLengthResponse(responseInfo.getStatus(),
-                                responseInfo.getType(),
-                                responseInfo.getBodyInputStream(),
-                                responseInfo.getBodyLength());
-                    }
-                }
+    private void unregisterMetrics(ControllerInfo controllerInfo) {
+        if (metrics != null) {
+            for (RouteMetrics routeMetrics : controllerInfo.getMetrics())
+                metrics.unregister(routeMetrics);
+        }
+    }
+
+    /**
+     * Описание контроллера, общее для всех серверов, если есть общие ресурсы
+     * @param cls класс контроллера
+     * @return контроллер
+     */
+    private ControllerInfo createController(Class<?> cls) throws IOException {
+        if (runtime != null)
+            return runtime.getController(cls, metrics, converters.getDefaultConverter());
+
+        return new ControllerInfo(cls, metrics, converters.getDefaultConverter());
+    }
+
+    /**
+     * Перестать принимать соединения до остановки
+     */
+    void closeListener() {
+        listener.close();
+    }
+
+    private void startWebSocketSender() {
+        webSocketSender = Executors.newCachedThreadPool(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "RestServer WebSocket");
+                thread.setDaemon(true);
+                return thread;
             }
+        });
+    }
 
-            //Answer 404
-            return newFixedLengthResponse(ResponseStatus.NOT_FOUND,
-                    NanoHTTPD.MIME_PLAINTEXT,
-                    ResponseStatus.NOT_FOUND.getDescription());
+    /**
+     * Рассылка событий подписчикам контроллера с методом SSE
+     * @param controller класс контроллера
+     * @return рассылка или null
+     */
+    public EventPublisher getEventPublisher(Class<?> controller) {
+        for (ControllerInfo controllerInfo : controllers.values()) {
+            if (controllerInfo.getType().equals(controller))
+                return controllerInfo.getEventPublisher();
+        }
+
+        return null;
+    }
+
+    /**
+     * Рассылка сообщений соединениям контроллера с аннотацией WebSocket
+     * @param controller класс контроллера
+     * @return рассылка или null
+     */
+    public WebSocketPublisher getWebSocketPublisher(Class<?> controller) {
+        for (ControllerInfo controllerInfo : controllers.values()) {
+            if (controllerInfo.getType().equals(controller))
+                return controllerInfo.getWebSocket() != null ? controllerInfo.getWebSocket().getPublisher() : null;
+        }
+
+        return null;
+    }
+
+    /**
+     * Обработать запрос без сети, например в тестах и замерах.
+     * Сервер не обязательно запускать
+     * @param session запрос
+     * @return ответ
+     */
+    public NanoHTTPD.Response serve(NanoHTTPD.IHTTPSession session) {
+        return httpServer.serve(session);
+    }
+
+    /**
+     * Количество соединений, которые сейчас обрабатываются
+     * @return количество
+     */
+    public int getActiveCount() {
+        if (runner instanceof BaseRunner)
+            return ((BaseRunner) runner).getActiveCount();
+
+        return 0;
+    }
+
+    /**
+     * Порт, который слушает сервер, в том числе выбранный системой для port = 0
+     * @return порт или -1, если сервер не запущен
+     */
+    public int getListeningPort() {
+        return httpServer.getListeningPort();
+    }
+
+    /**
+     * Открытые соединения и их статистика
+     * @return учет соединений
+     */
+    public ConnectionManager getConnections() {
+        return connections;
+    }
+
+    /**
+     * Пароль хранилища ключей HTTPS, например из Android Keystore или настроек.
+     * Вызывается при первом запуске, после загрузки ключей массив очищается
+     * @return пароль или null, тогда используется пароль из аннотации RestServer
+     */
+    protected char[] getKeyStorePassword() {
+        return null;
+    }
+
+    /**
+     * HTTPS и статистика рукопожатий
+     * @return TLS или null, если сервер работает по HTTP или еще не запускался
+     */
+    public TlsManager getTls() {
+        return tls;
+    }
+
+    /**
+     * Статистика запросов по обработчикам
+     * @return статистика или null, если не собирается
+     */
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Статистика в формате Prometheus
+     * @return текст
+     */
+    public String getPrometheusMetrics() {
+        StringBuilder out = new StringBuilder();
+        if (metrics != null)
+            out.append(PrometheusFormatter.format(metrics));
+        out.append(PrometheusFormatter.format("restserver_active_connections", "gauge",
+                "Connections being processed", getActiveCount()));
+        out.append(PrometheusFormatter.format("restserver_queued_connections", "gauge",
+                "Connections waiting for a worker", getQueueDepth()));
+        out.append(PrometheusFormatter.format("restserver_open_connections", "gauge",
+                "Open client connections", connections.getOpenConnections()));
+        out.append(PrometheusFormatter.format("restserver_accepted_connections_total", "counter",
+                "Accepted client connections", connections.getAcceptedConnections()));
+        out.append(PrometheusFormatter.format("restserver_refused_connections_total", "counter",
+                "Connections refused by the connection limit or shutdown", connections.getRefusedConnections()));
+        if (tls != null) {
+            out.append(PrometheusFormatter.format("restserver_tls_handshakes_total", "counter",
+                    "Completed TLS handshakes", tls.getHandshakes()));
+            out.append(PrometheusFormatter.format("restserver_tls_resumed_handshakes_total", "counter",
+                    "TLS handshakes that resumed a cached session", tls.getResumedHandshakes()));
+            out.append(PrometheusFormatter.format("restserver_tls_handshake_failures_total", "counter",
+                    "Failed TLS handshakes", tls.getFailedHandshakes()));
+            out.append(PrometheusFormatter.format("restserver_tls_handshake_seconds_total", "counter",
+                    "Time spent in completed TLS handshakes", tls.getHandshakeNanos() / 1e9));
+        }
+        out.append(PrometheusFormatter.format("restserver_cache_hits_total", "counter",
+                "Responses served from the response cache", getCacheHits()));
+        out.append(PrometheusFormatter.format("restserver_cache_misses_total", "counter",
+                "Cacheable requests that called the handler", getCacheMisses()));
+        out.append(PrometheusFormatter.format("restserver_compression_in_bytes_total", "counter",
+                "Response bytes before compression", compressor.getBytesIn()));
+        out.append(PrometheusFormatter.format("restserver_compression_out_bytes_total", "counter",
+                "Response bytes after compression", compressor.getBytesOut()));
+        out.append(PrometheusFormatter.format("restserver_compression_seconds_total", "counter",
+                "Time spent compressing buffered bodies", compressor.getCompressionNanos() / 1e9));
+        return out.toString();
+    }
+
+    /**
+     * Сжатие ответов и его статистика
+     * @return сжатие
+     */
+    public Compressor getCompressor() {
+        return compressor;
+    }
+
+    /**
+     * Сколько запросов получили запомненный ответ
+     * @return количество
+     */
+    public long getCacheHits() {
+        long hits = 0;
+        for (ControllerInfo controllerInfo : controllers.values()) {
+            if (controllerInfo.getResponseCache() != null)
+                hits += controllerInfo.getResponseCache().getHits();
+        }
+
+        return hits;
+    }
+
+    /**
+     * Сколько запросов с кэшем вызвали обработчик
+     * @return количество
+     */
+    public long getCacheMisses() {
+        long misses = 0;
+        for (ControllerInfo controllerInfo : controllers.values()) {
+            if (controllerInfo.getResponseCache() != null)
+                misses += controllerInfo.getResponseCache().getMisses();
+        }
+
+        return misses;
+    }
+
+    /**
+     * Количество соединений в очереди на обработку
+     * @return количество
+     */
+    public int getQueueDepth() {
+        if (runner instanceof BaseRunner)
+            return ((BaseRunner) runner).getQueueDepth();
+
+        return 0;
+    }
+
+    /**
+     * Создать и зарегистрировать конвертер
+     * @param cls класс конвертера
+     */
+    private void createConverter(Class<?> cls) {
+        if (!cls.equals(void.class) &&
+                BaseConverter.class.isAssignableFrom(cls)) {
+            try {
+                converters.register(runtime != null ? runtime.getConverter(cls) : (BaseConverter) cls.newInstance());
+            } catch (Throwable throwable) {
+                throwable.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Создать обработчик соединений
+     * @param restServer настройки сервера
+     * @return обработчик или null для стандартного
+     */
+    private NanoHTTPD.AsyncRunner createRunner(RestServer restServer) {
+        if (!restServer.runner().equals(void.class) &&
+                NanoHTTPD.AsyncRunner.class.isAssignableFrom(restServer.runner())) {
+            try {
+                return (NanoHTTPD.AsyncRunner) restServer.runner().newInstance();
+            } catch (Throwable throwable) {
+                throwable.printStackTrace();
+            }
+        }
+
+        if (restServer.virtualThreads() && VirtualThreadRunner.isSupported())
+            return new VirtualThreadRunner(restServer.threads(), restServer.retryAfter());
+
+        if (restServer.threads() > 0)
+            return new BoundedRunner(restServer.threads(), restServer.queueSize(), restServer.retryAfter());
+
+        return null;
+    }
+
+    /**
+     * Получить контроллер для этого адреса
+     * @param uri адрес
+     * @return контроллер и переменные адреса
+     */
+    private Router.Match<ControllerInfo> getController(String uri) {
+        return controllers.match(uri);
+    }
+
+    /**
+     * Есть ли контроллеры WebSocket
+     * @return да или нет
+     */
+    private boolean hasWebSockets() {
+        for (ControllerInfo controllerInfo : controllers.values()) {
+            if (controllerInfo.getWebSocket() != null)
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Http server
+     */
+    private class HttpServer extends NanoWSD {
+
+        public HttpServer(String hostname, int port) {
+            super(hostname, port);
+        }
+
+        @Override
+        protected NanoHTTPD.ClientHandler createClientHandler(Socket socket, InputStream inputStream) {
+            try {
+                socket.setTcpNoDelay(tcpNoDelay);
+            } catch (IOException e) {
+                //Client is already gone
+            }
+
+            ClientHandler clientHandler;
+            try {
+                //The handshake itself runs on the connection thread
+                if (tls != null) {
+                    SSLSocket sslSocket = tls.wrap(socket);
+                    clientHandler = new ClientHandler(sslSocket.getInputStream(), sslSocket, socket);
+                } else {
+                    clientHandler = new ClientHandler(inputStream, socket, socket);
+                }
+            } catch (IOException e) {
+                clientHandler = new ClientHandler(inputStream, socket, socket);
+                clientHandler.refused = true;
+                clientHandler.close();
+                return clientHandler;
+            }
+
+            if (!connections.open(socket)) {
+                //Answered on the accept thread, the 503 fits into the socket buffer
+                clientHandler.refused = true;
+                clientHandler.reject(retryAfter);
+            }
+
+            return clientHandler;
+        }
+
+        /**
+         * Получаем данные от клиента, запрос WebSocket проверяется до рукопожатия
+         *
+         * @param session сессия
+         * @return ответ
+         */
+        @Override
+        public Response serve(IHTTPSession session) {
+            if (!isWebsocketRequested(session)) {
+                ClientHandler connection = currentConnection.get();
+                Response response;
+                boolean last;
+                connections.requestStarted();
+                try {
+                    response = serveHttp(session);
+                } finally {
+                    last = connections.requestFinished(connection != null ? ++connection.requests : 0);
+                }
+
+                //Keep-alive ends after the limit or while stopping
+                if (last)
+                    response.closeConnection(true);
+                return response;
+            }
+
+            Router.Match<ControllerInfo> match = getController(session.getUri());
+            ControllerInfo controllerInfo = match != null ? match.getValue() : null;
+            if (controllerInfo == null || controllerInfo.getWebSocket() == null || webSocketSender == null)
+                return newFixedLengthResponse(ResponseStatus.NOT_FOUND,
+                        NanoHTTPD.MIME_PLAINTEXT,
+                        ResponseStatus.NOT_FOUND.getDescription());
+
+            RequestInfo requestInfo = new RequestInfo(session.getRemoteIpAddress(),
+                    session.getHeaders(),
+                    session.getParameters());
+            requestInfo.setPathVariables(match.getPathVariables());
+
+            //Refuse before switching protocols, the client sees a plain 401
+            if (authentication != null && controllerInfo.getWebSocket().isRequiresAuthentication()) {
+                Object authResult = authentication.getCached(requestInfo);
+                try {
+                    if (authResult == null)
+                        authResult = authentication.authenticate(requestInfo);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    return newFixedLengthResponse(ResponseStatus.INTERNAL_SERVER_ERROR,
+                            NanoHTTPD.MIME_PLAINTEXT,
+                            ResponseStatus.INTERNAL_SERVER_ERROR.getDescription());
+                }
+                if (authResult == AuthenticationManager.DENIED)
+                    return unauthorized();
+                if (authResult == AuthenticationManager.UNAVAILABLE)
+                    return serviceUnavailable();
+                requestInfo.setPrincipal(AuthenticationManager.getPrincipal(authResult));
+            }
+
+            pendingWebSocket.set(new WebSocketConnection(session,
+                    controllerInfo,
+                    requestInfo,
+                    webSocketSender,
+                    currentConnection.get() != null ? currentConnection.get().socket : null));
+            try {
+                return super.serve(session);
+            } finally {
+                pendingWebSocket.remove();
+            }
+        }
+
+        @Override
+        protected WebSocket openWebSocket(IHTTPSession handshake) {
+            return pendingWebSocket.get();
+        }
+
+        /**
+         * Обработать http запрос
+         *
+         * @param session сессия
+         * @return ответ
+         */
+        @Override
+        protected Response serveHttp(IHTTPSession session) {
+            //Every request of the batch is served and measured on its own
+            if (batchPath != null && batchPath.equals(session.getUri()) && !(session instanceof BatchSession))
+                return serveBatch(session);
+
+            //Request information
+            RequestInfo requestInfo = new RequestInfo(session.getRemoteIpAddress(),
+                    session.getHeaders(),
+                    session.getParameters());
+
+            //Per thread timer, nothing is allocated for metrics
+            RequestTimer timer = metrics != null ? RequestTimer.start() : null;
+
+            //Request body, read straight from the connection
+            BodyInputStream bodyStream = openBody(session);
+
+            //Server wide rate limit, checked before anything is routed
+            RateLimiter.Client limit = client(rateLimiter, requestInfo);
+            long wait = limit != null ? limit.tryAcquire() : 0;
+
+            Response response;
+            if (wait > 0)
+                response = tooManyRequests(wait);
+            else if (metricsPath != null && session.getMethod() == Method.GET && metricsPath.equals(session.getUri()))
+                response = newFixedLengthResponse(ResponseStatus.OK, PrometheusFormatter.CONTENT_TYPE, getPrometheusMetrics());
+            else {
+                try {
+                    response = handle(session, requestInfo, bodyStream, timer);
+                } finally {
+                    if (limit != null)
+                        limit.release();
+                }
+            }
+
+            //Skip what the handler did not read, otherwise the next request on this connection is broken
+            if (bodyStream != null && !response.isCloseConnection() && !bodyStream.drain(maxBufferedBody))
+                response.closeConnection(true);
+
+            if (timer != null)
+                timer.finish(metrics.getUnmatched(),
+                        response.getStatus().getRequestStatus(),
+                        requestInfo.isBodyAvailable() ? requestInfo.getBody().length : contentLength(session),
+                        response.getData() instanceof ByteArrayInputStream ? available(response.getData()) : -1);
+
+            return response;
+        }
+
+        /**
+         * Выполнить пакетный запрос
+         *
+         * @param session сессия
+         * @return ответ с массивом ответов
+         */
+        private Response serveBatch(final IHTTPSession session) {
+            if (session.getMethod() != Method.POST)
+                return newFixedLengthResponse(ResponseStatus.METHOD_NOT_ALLOWED,
+                        NanoHTTPD.MIME_PLAINTEXT,
+                        ResponseStatus.METHOD_NOT_ALLOWED.getDescription());
+
+            BaseConverter converter = converters.getDefaultConverter();
+            BatchRequest[] requests;
+            try {
+                BodyInputStream bodyStream = openBody(session);
+                byte[] body = bodyStream != null ? bodyStream.readFully(maxBufferedBody) : new byte[0];
+                if (body == null) {
+                    //Answer 413
+                    Response response = newFixedLengthResponse(ResponseStatus.PAYLOAD_TOO_LARGE,
+                            NanoHTTPD.MIME_PLAINTEXT,
+                            ResponseStatus.PAYLOAD_TOO_LARGE.getDescription());
+                    response.closeConnection(true);
+                    return response;
+                }
+
+                requests = converter.writeValue(body, BatchRequest[].class);
+            } catch (Exception e) {
+                requests = null;
+            }
+
+            if (requests == null || requests.length > batchMaxRequests)
+                return newFixedLengthResponse(ResponseStatus.BAD_REQUEST,
+                        NanoHTTPD.MIME_PLAINTEXT,
+                        ResponseStatus.BAD_REQUEST.getDescription());
+
+            //Requests run in parallel only if the client says they are independent
+            List<String> parallel = session.getParameters().get("parallel");
+            ExecutorService executor = batchExecutor;
+            boolean concurrent = executor != null && parallel != null && parallel.contains("true");
+
+            BatchResponse[] responses = new BatchResponse[requests.length];
+            if (concurrent) {
+                List<Future<BatchResponse>> futures = new ArrayList<>(requests.length);
+                for (int i = 0; i < requests.length - 1; i++) {
+                    final BatchRequest request = requests[i];
+                    futures.add(executor.submit(new Callable<BatchResponse>() {
+                        @Override
+                        public BatchResponse call() {
+                            return dispatch(session, request);
+                        }
+                    }));
+                }
+
+                //The last one runs on this thread while the pool works
+                if (requests.length > 0)
+                    responses[requests.length - 1] = dispatch(session, requests[requests.length - 1]);
+
+                for (int i = 0; i < futures.size(); i++) {
+                    try {
+                        responses[i] = futures.get(i).get();
+                    } catch (InterruptedException | ExecutionException e) {
+                        responses[i] = BatchResponse.error(ResponseStatus.INTERNAL_SERVER_ERROR);
+                    }
+                }
+            } else {
+                for (int i = 0; i < requests.length; i++)
+                    responses[i] = dispatch(session, requests[i]);
+            }
+
+            byte[] body = converter.writeValueAsBytes(responses);
+            String type = converters.getDefaultType();
+            return newFixedLengthResponse(ResponseStatus.OK,
+                    type != null ? type : BatchResponse.MIME_TYPE,
+                    new ByteArrayInputStream(body),
+                    body.length);
+        }
+
+        /**
+         * Выполнить один запрос пакета тем же путем, что и запрос из сети
+         *
+         * @param session пакетный запрос
+         * @param request запрос
+         * @return ответ
+         */
+        private BatchResponse dispatch(IHTTPSession session, BatchRequest request) {
+            Method method;
+            try {
+                method = Method.valueOf(String.valueOf(request.getMethod()).toUpperCase(Locale.US));
+            } catch (IllegalArgumentException e) {
+                return BatchResponse.error(ResponseStatus.BAD_REQUEST);
+            }
+
+            if (request.getUri() == null)
+                return BatchResponse.error(ResponseStatus.BAD_REQUEST);
+
+            try {
+                byte[] body = null;
+                if (request.getBody() instanceof String)
+                    body = ((String) request.getBody()).getBytes("UTF-8");
+                else if (request.getBody() != null)
+                    body = converters.getDefaultConverter().writeValueAsBytes(request.getBody());
+
+                //Nested batches are not allowed, the path is compared decoded as serveHttp does
+                BatchSession batchSession = new BatchSession(session, method, request.getUri(), request.getHeaders(), body);
+                if (batchPath.equals(batchSession.getUri()))
+                    return BatchResponse.error(ResponseStatus.BAD_REQUEST);
+
+                return BatchResponse.of(serveHttp(batchSession));
+            } catch (Exception e) {
+                e.printStackTrace();
+                return BatchResponse.error(ResponseStatus.INTERNAL_SERVER_ERROR);
+            }
+        }
+
+        /**
+         * Счетчики клиента для ограничения
+         * @param rateLimiter ограничение или null
+         * @param requestInfo запрос
+         * @return счетчики или null
+         */
+        private RateLimiter.Client client(RateLimiter rateLimiter, RequestInfo requestInfo) {
+            if (rateLimiter == null)
+                return null;
+
+            //Only credentials the authentication has accepted get their own counter
+            String principal = null;
+            if (rateLimiter.getKey() == RateLimitKey.PRINCIPAL && authentication != null)
+                principal = authentication.getVerifiedKey(requestInfo);
+
+            return rateLimiter.client(requestInfo, principal);
+        }
+
+        /**
+         * Размер тела из Content-Length
+         *
+         * @param session сессия
+         * @return размер или -1
+         */
+        private long contentLength(IHTTPSession session) {
+            String contentLength = session.getHeaders().get(HeaderType.CONTENT_LENGTH);
+            if (contentLength != null) {
+                try {
+                    return Long.parseLong(contentLength.trim());
+                } catch (NumberFormatException e) {
+                    return -1;
+                }
+            }
+
+            return -1;
+        }
+
+        private long available(InputStream inputStream) {
+            try {
+                return inputStream.available();
+            } catch (IOException e) {
+                return -1;
+            }
+        }
+
+        /**
+         * Обработать запрос
+         *
+         * @param session сессия
+         * @param requestInfo запрос
+         * @param bodyStream тело запроса
+         * @param timer замер этапов или null
+         * @return ответ
+         */
+        private Response handle(IHTTPSession session, RequestInfo requestInfo, BodyInputStream bodyStream, RequestTimer timer) {
+            //Reply Information
+            ResponseInfo responseInfo = new ResponseInfo();
+
+            //Get the controller
+            Router.Match<ControllerInfo> match = getController(session.getUri());
+
+            //Found the controller
+            if (match != null) {
+                ControllerInfo controllerInfo = match.getValue();
+                requestInfo.setPathVariables(match.getPathVariables());
+
+                //Get the method
+                ReflectionUtils.MethodInfo methodInfo = controllerInfo.getMethodInfo(session.getMethod());
+
+                //Event stream answers GET unless the controller has its own and the client wants it
+                boolean eventStream = controllerInfo.getEventStream() != null &&
+                        session.getMethod() == Method.GET &&
+                        (methodInfo == null || acceptsEventStream(session));
+                if (eventStream)
+                    methodInfo = controllerInfo.getEventStream();
+
+                //If the method is found
+                if (methodInfo != null) {
+                    if (timer != null)
+                        timer.setRoute(controllerInfo.getMetrics(session.getMethod()));
+
+                    //Handler rate limit, a subscription has its own
+                    RateLimiter rateLimiter = eventStream ?
+                            controllerInfo.getEventStreamRateLimiter() :
+                            controllerInfo.getRateLimiter(session.getMethod());
+                    RateLimiter.Client limit = client(rateLimiter, requestInfo);
+                    if (limit != null) {
+                        long wait = limit.tryAcquire();
+                        if (wait > 0)
+                            return tooManyRequests(wait);
+                    }
+
+                    //Create a controller
+                    Object controller = null;
+                    try {
+                        controller = controllerInfo.acquire();
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
+
+                    //The place is not used without a controller, a retired one answers 404
+                    if (controller == null && limit != null)
+                        limit.release();
+
+                    //Created the controller
+                    if (controller != null) {
+                        //Authentication running on another thread
+                        Future<?> pendingAuth = null;
+                        try {
+                            //Converter for the request body
+                            BaseConverter converter = converters.forContentType(session.getHeaders().get(HeaderType.CONTENT_TYPE));
+
+                            //Body is parsed straight from the connection by a streaming converter
+                            boolean streamingConverter = converter instanceof BaseStreamConverter &&
+                                    methodInfo.getParamClass() != null;
+
+                            //RequiresAuthentication, a cached result or async check is known before the body is read
+                            boolean authRequired = authentication != null && methodInfo.isRequiresAuthentication();
+                            Object authResult = null;
+                            if (authRequired) {
+                                authResult = authentication.getCached(requestInfo);
+                                if (authResult == AuthenticationManager.DENIED)
+                                    return unauthorized();
+                                if (authResult == null && authentication.isAsync())
+                                    pendingAuth = authentication.start(requestInfo);
+                            }
+
+                            //Read body
+                            if (bodyStream != null) {
+                                if (methodInfo.isStreamingBody() || streamingConverter) {
+                                    requestInfo.setBodyStream(bodyStream);
+                                } else {
+                                    if (timer != null)
+                                        timer.skip();
+                                    byte[] body = bodyStream.readFully(maxBufferedBody);
+                                    if (timer != null)
+                                        timer.mark(Phase.BODY_READ);
+                                    if (body == null) {
+                                        //Answer 413
+                                        Response response = newFixedLengthResponse(ResponseStatus.PAYLOAD_TOO_LARGE,
+                                                NanoHTTPD.MIME_PLAINTEXT,
+                                                ResponseStatus.PAYLOAD_TOO_LARGE.getDescription());
+                                        response.closeConnection(true);
+                                        return response;
+                                    }
+
+                                    if (body.length > 0)
+                                        requestInfo.setBody(body);
+                                }
+                            }
+
+                            //Not cached, check on this thread
+                            if (authRequired && authResult == null && pendingAuth == null) {
+                                if (timer != null)
+                                    timer.skip();
+                                authResult = authentication.authenticate(requestInfo);
+                                if (timer != null)
+                                    timer.mark(Phase.AUTH);
+
+                                if (authResult == AuthenticationManager.DENIED)
+                                    return unauthorized();
+                            }
+                            if (authResult != null)
+                                requestInfo.setPrincipal(AuthenticationManager.getPrincipal(authResult));
+
+                            //Accept
+                            if (!methodInfo.getAccept().isEmpty()) {
+                                if (session.getHeaders().containsKey(HeaderType.CONTENT_TYPE)) {
+                                    String contentType = session.getHeaders().get(HeaderType.CONTENT_TYPE);
+                                    if (!ConverterRegistry.isAcceptable(methodInfo.getAccept(), contentType)) {
+                                        //Answer 415
+                                        return newFixedLengthResponse(ResponseStatus.UNSUPPORTED_MEDIA_TYPE,
+                                                NanoHTTPD.MIME_PLAINTEXT,
+                                                ResponseStatus.UNSUPPORTED_MEDIA_TYPE.getDescription());
+                                    }
+                                }
+                            }
+
+                            //Negotiate the response type
+                            ConverterRegistry.Selection selection = converters.negotiate(methodInfo,
+                                    session.getHeaders().get(HeaderType.ACCEPT),
+                                    !methodInfo.isVoidResult() && !converters.isEmpty());
+                            if (selection != null) {
+                                responseInfo.setType(selection.getType().getValue());
+                                if (selection.isNegotiated())
+                                    responseInfo.addHeader(HeaderType.VARY, "Accept");
+                            }
+
+                            //Nothing may be answered from the controller before authentication completes
+                            ReflectionUtils.MethodInfo version = controllerInfo.getVersion();
+                            ResponseCache responseCache = controllerInfo.getResponseCache();
+                            if (pendingAuth != null && (version != null || responseCache != null)) {
+                                Response refused = awaitAuthentication(pendingAuth, requestInfo, timer);
+                                pendingAuth = null;
+                                if (refused != null)
+                                    return refused;
+                            }
+
+                            //Cheap version check, the handler is not called if the client is up to date
+                            if (version != null && session.getMethod() == Method.GET && !eventStream) {
+                                Object value = version.invoke(controller, requestInfo, responseInfo, null);
+                                if (value != null) {
+                                    responseInfo.setETag(String.valueOf(value));
+                                    if (ETagUtils.isNotModified(session.getHeaders(), responseInfo.getETag(), -1))
+                                        return newResponse(session, responseInfo, methodInfo.getCompress());
+                                }
+                            }
+
+                            //Cached response
+                            String cacheKey = null;
+                            if (responseCache != null && session.getMethod() == Method.GET && !eventStream) {
+                                cacheKey = responseCache.key(session.getUri(), requestInfo, responseInfo.getType());
+                                if (responseCache.get(cacheKey, responseInfo))
+                                    return newResponse(session, responseInfo, methodInfo.getCompress());
+                            }
+
+                            //If we are waiting for an object
+                            Object paramObject = null;
+                            if (timer != null)
+                                timer.skip();
+                            if (converter != null && methodInfo.getParamClass() != null) {
+                                Class paramClass = methodInfo.getParamClass();
+                                if (streamingConverter && !methodInfo.isStreamingBody()) {
+                                    if (bodyStream != null)
+                                        paramObject = ((BaseStreamConverter) converter).readValue(bodyStream, paramClass);
+                                } else if (paramClass != null && requestInfo.isBodyAvailable()) {
+                                    paramObject = converter.writeValue(requestInfo.getBody(), paramClass);
+                                }
+                                if (timer != null)
+                                    timer.mark(Phase.DESERIALIZE);
+                            }
+
+                            //Body was parsed while the credentials were checked
+                            if (pendingAuth != null) {
+                                Response refused = awaitAuthentication(pendingAuth, requestInfo, timer);
+                                pendingAuth = null;
+                                if (refused != null)
+                                    return refused;
+                            }
+
+                            //Subscription, the handler may queue the initial state
+                            if (eventStream) {
+                                EventPublisher publisher = controllerInfo.getEventPublisher();
+                                EventSubscriber subscriber = publisher.newSubscriber();
+                                responseInfo.setEventSubscriber(subscriber);
+                                methodInfo.invoke(controller, requestInfo, responseInfo, paramObject);
+                                if (timer != null)
+                                    timer.mark(Phase.INVOKE);
+
+                                //The handler may refuse with its own status
+                                if (responseInfo.getStatus() == ResponseStatus.OK) {
+                                    publisher.subscribe(subscriber, session.getHeaders().get(HeaderType.LAST_EVENT_ID));
+
+                                    //The place stays taken while the stream is open
+                                    EventStreamResponse response = new EventStreamResponse(publisher, subscriber, limit);
+                                    limit = null;
+                                    return response;
+                                }
+                                subscriber.close();
+                            } else if (methodInfo.isVoidResult()) {
+                                //If we do not return anything
+                                methodInfo.invoke(controller,
+                                        requestInfo,
+                                        responseInfo,
+                                        paramObject);
+                                if (timer != null)
+                                    timer.mark(Phase.INVOKE);
+                            } else {
+                                //The handler completes the result from another thread
+                                if (methodInfo.isAsync())
+                                    responseInfo.setAsyncResponse(new AsyncResponse());
+
+                                //Return the answer
+                                Object result = methodInfo.invoke(controller,
+                                        requestInfo,
+                                        responseInfo,
+                                        paramObject);
+
+                                if (methodInfo.isAsync()) {
+                                    Future<?> future = result instanceof Future ?
+                                            (Future<?>) result :
+                                            responseInfo.getAsyncResponse();
+                                    try {
+                                        result = future != null ? future.get(asyncTimeout(methodInfo), TimeUnit.MILLISECONDS) : null;
+                                    } catch (TimeoutException e) {
+                                        //Answer 504, the result is no longer needed
+                                        future.cancel(true);
+                                        return newFixedLengthResponse(ResponseStatus.GATEWAY_TIMEOUT,
+                                                NanoHTTPD.MIME_PLAINTEXT,
+                                                ResponseStatus.GATEWAY_TIMEOUT.getDescription());
+                                    } catch (CancellationException e) {
+                                        return serviceUnavailable();
+                                    } catch (ExecutionException e) {
+                                        if (e.getCause() instanceof RejectedExecutionException)
+                                            return serviceUnavailable();
+
+                                        //Same as an exception thrown by a synchronous handler
+                                        throw new InvocationTargetException(e.getCause());
+                                    }
+                                }
+                                if (timer != null)
+                                    timer.mark(Phase.INVOKE);
+
+                                BaseConverter resultConverter = selection != null ?
+                                        selection.getConverter() :
+                                        converters.getDefaultConverter();
+
+                                //Cached responses need the body in memory
+                                if (resultConverter instanceof BaseStreamConverter && cacheKey == null)
+                                    responseInfo.setBodyWriter(new ConverterBodyWriter((BaseStreamConverter) resultConverter, result));
+                                else if (resultConverter != null) {
+                                    responseInfo.setBody(resultConverter.writeValueAsBytes(result));
+                                    if (timer != null)
+                                        timer.mark(Phase.SERIALIZE);
+                                }
+                            }
+
+                            if (cacheKey != null) {
+                                //Hash the body once, not on every hit
+                                createETag(session, responseInfo);
+                                responseCache.put(cacheKey, responseInfo);
+                            }
+
+                            //Data changed, cached responses are stale
+                            if (methodInfo.isCacheEvict() && controllerInfo.getResponseCache() != null)
+                                controllerInfo.getResponseCache().clear();
+
+                            //Sending response
+                            return newResponse(session, responseInfo, methodInfo.getCompress());
+                        } catch (Throwable throwable) {
+                            //Return error 500 in case it is not otherwise configured in ExceptionHandler
+                            responseInfo.setStatus(ResponseStatus.INTERNAL_SERVER_ERROR);
+
+                            //Get the method
+                            ReflectionUtils.MethodInfo exceptionHandler = controllerInfo.getExceptionHandler();
+                            if (exceptionHandler != null) {
+                                //Get the response type
+                                if (!exceptionHandler.getProduces().isEmpty())
+                                    responseInfo.setType(exceptionHandler.getProduces().get(0).getValue());
+
+                                try {
+                                    exceptionHandler.invoke(controller, throwable, responseInfo);
+                                } catch (Exception e) {
+                                    e.printStackTrace();
+                                }
+                            }
+
+                            //Sending response
+                            return newResponse(session, responseInfo,
+                                    exceptionHandler != null ? exceptionHandler.getCompress() : null);
+                        } finally {
+                            //Answered before the check completed
+                            if (pendingAuth != null)
+                                pendingAuth.cancel(true);
+
+                            //Return the controller to its scope
+                            controllerInfo.release(controller);
+
+                            if (limit != null)
+                                limit.release();
+                        }
+                    }
+                }
+            }
+
+            //Answer 404
+            return newFixedLengthResponse(ResponseStatus.NOT_FOUND,
+                    NanoHTTPD.MIME_PLAINTEXT,
+                    ResponseStatus.NOT_FOUND.getDescription());
+        }
+
+        /**
+         * Дождаться аутентификации, начатой до чтения тела
+         *
+         * @param pendingAuth результат
+         * @param requestInfo запрос
+         * @param timer замер этапов или null
+         * @return null, если аутентификация прошла, иначе ответ 401 или 503
+         */
+        private Response awaitAuthentication(Future<?> pendingAuth, RequestInfo requestInfo, RequestTimer timer) throws Exception {
+            if (timer != null)
+                timer.skip();
+            Object authResult = authentication.await(pendingAuth, requestInfo);
+            if (timer != null)
+                timer.mark(Phase.AUTH);
+
+            if (authResult == AuthenticationManager.DENIED)
+                return unauthorized();
+            if (authResult == AuthenticationManager.UNAVAILABLE)
+                return serviceUnavailable();
+
+            requestInfo.setPrincipal(AuthenticationManager.getPrincipal(authResult));
+            return null;
+        }
+
+        /**
+         * Принимает ли клиент text/event-stream
+         *
+         * @param session сессия
+         * @return да или нет
+         */
+        private boolean acceptsEventStream(IHTTPSession session) {
+            String accept = session.getHeaders().get(HeaderType.ACCEPT);
+            return accept != null && accept.contains(EventStreamResponse.MIME_TYPE);
+        }
+
+        /**
+         * Сколько ждать результат обработчика
+         *
+         * @param methodInfo обработчик
+         * @return миллисекунды
+         */
+        private long asyncTimeout(ReflectionUtils.MethodInfo methodInfo) {
+            return methodInfo.getTimeout() >= 0 ? methodInfo.getTimeout() : asyncTimeout;
+        }
+
+        /**
+         * Ответ 503, обработчик не смог принять запрос
+         *
+         * @return ответ
+         */
+        private Response serviceUnavailable() {
+            Response response = newFixedLengthResponse(ResponseStatus.SERVICE_UNAVAILABLE,
+                    NanoHTTPD.MIME_PLAINTEXT,
+                    ResponseStatus.SERVICE_UNAVAILABLE.getDescription());
+            response.addHeader(HeaderType.RETRY_AFTER, String.valueOf(retryAfter));
+            return response;
+        }
+
+        /**
+         * Ответ 429
+         *
+         * @param wait через сколько наносекунд повторить запрос
+         * @return ответ
+         */
+        private Response tooManyRequests(long wait) {
+            Response response = newFixedLengthResponse(ResponseStatus.TOO_MANY_REQUESTS,
+                    NanoHTTPD.MIME_PLAINTEXT,
+                    ResponseStatus.TOO_MANY_REQUESTS.getDescription());
+            response.addHeader(HeaderType.RETRY_AFTER, String.valueOf(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(wait + TimeUnit.SECONDS.toNanos(1) - 1))));
+            return response;
+        }
+
+        /**
+         * Ответ 401
+         *
+         * @return ответ
+         */
+        private Response unauthorized() {
+            return newFixedLengthResponse(ResponseStatus.UNAUTHORIZED,
+                    NanoHTTPD.MIME_PLAINTEXT,
+                    ResponseStatus.UNAUTHORIZED.getDescription());
+        }
+
+        /**
+         * Создать ответ из ResponseInfo
+         *
+         * @param session сессия
+         * @param responseInfo ответ обработчика
+         * @param compress настройки сжатия обработчика или null
+         * @return ответ
+         */
+        private Response newResponse(IHTTPSession session, ResponseInfo responseInfo, Compress compress) {
+            Response response;
+
+            //Compression, files are sent as is because ranges address the raw bytes
+            ContentEncoding encoding = null;
+            if (responseInfo.getBodyFile() == null &&
+                    !responseInfo.getHeaders().containsKey(HeaderType.CONTENT_ENCODING) &&
+                    compressor.isCompressible(compress, responseInfo.getType())) {
+                String vary = responseInfo.getHeaders().get(HeaderType.VARY);
+                responseInfo.addHeader(HeaderType.VARY, vary != null ? vary + ", Accept-Encoding" : "Accept-Encoding");
+                encoding = Compressor.negotiate(session.getHeaders().get(HeaderType.ACCEPT_ENCODING));
+
+                //Small bodies are not worth it
+                if (!responseInfo.isStreaming() && responseInfo.getBodyLength() < Math.max(1, compressor.getMinSize(compress)))
+                    encoding = null;
+            }
+
+            //Conditional GET
+            if (createETag(session, responseInfo) &&
+                    ETagUtils.isNotModified(session.getHeaders(), responseInfo.getETag(), responseInfo.getLastModified())) {
+                response = new EmptyResponse(ResponseStatus.NOT_MODIFIED, null);
+                addHeaders(response, responseInfo, encoding);
+                return response;
+            }
+
+            if (responseInfo.getBodyFile() != null && responseInfo.getStatus() == ResponseStatus.OK) {
+                //File with ranges and conditional requests
+                response = FileResponse.create(responseInfo.getBodyFile(),
+                        responseInfo.getType(),
+                        session.getHeaders());
+            } else if (responseInfo.getBodyWriter() != null) {
+                //Handler writes the body itself
+                response = newWriterResponse(responseInfo, responseInfo.getBodyWriter(), encoding);
+            } else if (encoding != null && responseInfo.getBodyStream() != null) {
+                response = newWriterResponse(responseInfo, new StreamBodyWriter(responseInfo.getBodyStream()), encoding);
+            } else if (encoding != null && responseInfo.getBodyChunks() != null) {
+                response = newWriterResponse(responseInfo,
+                        new StreamBodyWriter(new ChunksInputStream(responseInfo.getBodyChunks())),
+                        encoding);
+            } else if (encoding != null && responseInfo.getBody() != null) {
+                //Body is compressed whole, so the length is still known
+                byte[] body = compressor.compress(responseInfo.getBody(),
+                        encoding,
+                        compress != null && compress.cache());
+                response = newFixedLengthResponse(responseInfo.getStatus(),
+                        responseInfo.getType(),
+                        new ByteArrayInputStream(body),
+                        body.length);
+                response.addHeader("Content-Encoding", encoding.getName());
+            } else if (responseInfo.getBodyStream() != null) {
+                //Body of unknown length
+                response = newChunkedResponse(responseInfo.getStatus(),
+                        responseInfo.getType(),
+                        responseInfo.getBodyStream());
+            } else if (responseInfo.getBodyChunks() != null) {
+                response = newChunkedResponse(responseInfo.getStatus(),
+                        responseInfo.getType(),
+                        new ChunksInputStream(responseInfo.getBodyChunks()));
+            } else {
+                response = newFixedLengthResponse(responseInfo.getStatus(),
+                        responseInfo.getType(),
+                        responseInfo.getBodyInputStream(),
+                        responseInfo.getBodyLength());
+            }
+
+            addHeaders(response, responseInfo, encoding);
+            return response;
+        }
+
+        /**
+         * Заголовки обработчика и версия ответа
+         *
+         * @param response ответ
+         * @param responseInfo ответ обработчика
+         * @param encoding сжатие или null
+         */
+        private void addHeaders(Response response, ResponseInfo responseInfo, ContentEncoding encoding) {
+            for (Map.Entry<String, String> header : responseInfo.getHeaders().entrySet())
+                response.addHeader(header.getKey(), header.getValue());
+
+            //Files carry their own version
+            if (responseInfo.getBodyFile() != null)
+                return;
+
+            //A compressed body is a different representation, a strong tag would be wrong
+            if (responseInfo.getETag() != null)
+                response.addHeader("ETag", encoding != null && !responseInfo.getETag().startsWith("W/") ?
+                        "W/" + responseInfo.getETag() :
+                        responseInfo.getETag());
+            if (responseInfo.getLastModified() >= 0)
+                response.addHeader("Last-Modified", DateUtils.formatHttpDate(responseInfo.getLastModified()));
+        }
+
+        /**
+         * Посчитать ETag успешного GET ответа, если обработчик его не задал
+         *
+         * @param session сессия
+         * @param responseInfo ответ обработчика
+         * @return можно ли ответить 304
+         */
+        private boolean createETag(IHTTPSession session, ResponseInfo responseInfo) {
+            if (session.getMethod() != Method.GET ||
+                    responseInfo.getStatus() != ResponseStatus.OK ||
+                    responseInfo.getBodyFile() != null)
+                return false;
+
+            if (etag && responseInfo.getETag() == null && !responseInfo.isStreaming() && responseInfo.getBody() != null)
+                responseInfo.setETag(ETagUtils.createETag(responseInfo.getBody()));
+
+            return responseInfo.getETag() != null || responseInfo.getLastModified() >= 0;
+        }
+
+        private Response newWriterResponse(ResponseInfo responseInfo, BodyWriter bodyWriter, ContentEncoding encoding) {
+            WriterResponse response = new WriterResponse(responseInfo.getStatus(),
+                    responseInfo.getType(),
+                    bodyWriter);
+            if (encoding != null)
+                response.setContentEncoding(encoding, compressor);
+
+            return response;
+        }
+
+        /**
+         * Сжатие выбирается в newResponse с учетом порога и типов
+         */
+        @Override
+        protected boolean useGzipWhenAccepted(Response r) {
+            return false;
+        }
+
+        /**
+         * Открыть тело запроса
+         *
+         * @param session сессия
+         * @return тело или null, если его нет
+         */
+        private BodyInputStream openBody(IHTTPSession session) {
+            String transferEncoding = session.getHeaders().get(HeaderType.TRANSFER_ENCODING);
+            if (transferEncoding != null && transferEncoding.toLowerCase().contains("chunked"))
+                return new ChunkedInputStream(session.getInputStream());
+
+            String contentLength = session.getHeaders().get(HeaderType.CONTENT_LENGTH);
+            if (contentLength != null) {
+                try {
+                    long length = Long.parseLong(contentLength.trim());
+                    if (length > 0)
+                        return new FixedLengthInputStream(session.getInputStream(), length);
+                } catch (NumberFormatException e) {
+                    e.printStackTrace();
+                }
+            }
+
+            return null;
+        }
+
+        /**
+         * Соединение, которому можно отказать без запуска обработки
+         */
+        private class ClientHandler extends NanoHTTPD.ClientHandler implements RejectableHandler {
+
+            private final Socket socket;
+
+            /**
+             * Сокет под TLS, его чтение можно закрыть при остановке
+             */
+            private final Socket rawSocket;
+
+            /**
+             * Отклонено ограничением соединений
+             */
+            private boolean refused;
+
+            /**
+             * Запросов обработано в этом соединении
+             */
+            private int requests;
+
+            public ClientHandler(InputStream inputStream, Socket socket, Socket rawSocket) {
+                super(inputStream, socket);
+                this.socket = socket;
+                this.rawSocket = rawSocket;
+            }
+
+            @Override
+            public void run() {
+                if (refused || (socket instanceof SSLSocket && !tls.handshake((SSLSocket) socket))) {
+                    close();
+                    asyncRunner.closed(this);
+                    return;
+                }
+
+                //A websocket takes this thread over, its socket is needed after the handshake
+                currentConnection.set(this);
+                try {
+                    super.run();
+                } finally {
+                    currentConnection.remove();
+                    connections.closed(rawSocket);
+                }
+            }
+
+            @Override
+            public void close() {
+                super.close();
+                connections.closed(rawSocket);
+            }
+
+            @Override
+            public void reject(int retryAfter) {
+                //Writing would start the TLS handshake on the accept thread
+                if (socket instanceof SSLSocket) {
+                    close();
+                    return;
+                }
+
+                try {
+                    byte[] body = ResponseStatus.SERVICE_UNAVAILABLE.getDescription().getBytes("UTF-8");
+                    String header = "HTTP/1.1 " + ResponseStatus.SERVICE_UNAVAILABLE.getDescription() + "\r\n" +
+                            HeaderType.CONTENT_TYPE + ": " + NanoHTTPD.MIME_PLAINTEXT + "\r\n" +
+                            HeaderType.CONTENT_LENGTH + ": " + body.length + "\r\n" +
+                            HeaderType.RETRY_AFTER + ": " + retryAfter + "\r\n" +
+                            "connection: close\r\n\r\n";
+
+                    OutputStream outputStream = socket.getOutputStream();
+                    outputStream.write(header.getBytes("UTF-8"));
+                    outputStream.write(body);
+                    outputStream.flush();
+                } catch (IOException e) {
+                    //Client is already gone
+                } finally {
+                    close();
+                }
+            }
         }
     }
 }
@@ -0,0 +1,244 @@
+package ru.skornei.restserver.server;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ru.skornei.restserver.annotations.RestServer;
+import ru.skornei.restserver.server.authentication.AuthenticationManager;
+import ru.skornei.restserver.server.converter.BaseConverter;
+import ru.skornei.restserver.server.metrics.MetricsRegistry;
+import ru.skornei.restserver.server.route.ControllerInfo;
+
+/**
+ * Общие ресурсы нескольких серверов в одном процессе: пул потоков,
+ * конвертеры, аутентификация и контроллеры с их кэшами.
+ * Каждый сервер слушает свой порт или интерфейс и обслуживает свой набор контроллеров
+ */
+public class ServerRuntime {
+
+    /**
+     * Сколько живет простаивающий поток
+     */
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    /**
+     * Потоки обработки соединений всех серверов
+     */
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Экземпляры по классу
+     */
+    private final Map<Class<?>, BaseConverter> converters = new HashMap<>();
+
+    private final Map<Class<?>, AuthenticationManager> authentications = new HashMap<>();
+
+    private final Map<Class<?>, ControllerInfo> controllers = new LinkedHashMap<>();
+
+    /**
+     * Статистика всех серверов, создается, если ее включил хотя бы один
+     */
+    private MetricsRegistry metrics;
+
+    private final List<BaseRestServer> servers = new ArrayList<>();
+
+    /**
+     * Контроллеры запущены
+     */
+    private boolean controllersStarted;
+
+    /**
+     * @param threads количество потоков обработки соединений, 0 - без ограничения
+     * @param queueSize размер очереди соединений, ожидающих свободный поток
+     */
+    public ServerRuntime(int threads, int queueSize) {
+        BlockingQueue<Runnable> queue;
+        if (threads > 0 && queueSize > 0)
+            queue = new ArrayBlockingQueue<>(queueSize);
+        else
+            queue = new SynchronousQueue<>();
+
+        this.executor = new ThreadPoolExecutor(threads > 0 ? threads : 0,
+                threads > 0 ? threads : Integer.MAX_VALUE,
+                KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS,
+                queue,
+                new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "RestServer Runtime #" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Запустить контроллеры и все серверы
+     * @throws IOException если порт занят или контроллер не запустился
+     */
+    public synchronized void start() throws IOException {
+        startControllers();
+
+        List<BaseRestServer> started = new ArrayList<>();
+        try {
+            for (BaseRestServer server : servers) {
+                server.start();
+                started.add(server);
+            }
+        } catch (IOException e) {
+            for (BaseRestServer server : started)
+                server.stop(0);
+            throw e;
+        }
+    }
+
+    /**
+     * Остановить все серверы с общим сроком завершения запросов, затем контроллеры
+     * @param timeout сколько ждать, миллисекунды
+     * @return true, если все соединения закрылись до срока
+     */
+    public synchronized boolean stop(long timeout) {
+        long deadline = System.currentTimeMillis() + timeout;
+
+        //Every port stops accepting before any of them waits
+        for (BaseRestServer server : servers)
+            server.closeListener();
+        for (ControllerInfo controllerInfo : controllers.values())
+            controllerInfo.closeStreams();
+
+        boolean drained = true;
+        for (BaseRestServer server : servers)
+            drained &= server.stop(timeout > 0 ? Math.max(1, deadline - System.currentTimeMillis()) : 0);
+
+        if (controllersStarted) {
+            for (ControllerInfo controllerInfo : controllers.values())
+                controllerInfo.stop();
+            controllersStarted = false;
+        }
+
+        return drained;
+    }
+
+    /**
+     * Освободить пул потоков, после этого серверы не запускаются
+     */
+    public synchronized void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public List<BaseRestServer> getServers() {
+        return Collections.unmodifiableList(new ArrayList<>(servers));
+    }
+
+    /**
+     * Количество потоков, которые сейчас обрабатывают соединения
+     * @return количество
+     */
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    ExecutorService getExecutor() {
+        return executor;
+    }
+
+    synchronized void add(BaseRestServer server) {
+        servers.add(server);
+    }
+
+    synchronized void startControllers() throws IOException {
+        if (controllersStarted)
+            return;
+
+        for (ControllerInfo controllerInfo : controllers.values())
+            start(controllerInfo);
+        controllersStarted = true;
+    }
+
+    /**
+     * Общий конвертер
+     * @param cls класс конвертера
+     * @return экземпляр
+     */
+    synchronized BaseConverter getConverter(Class<?> cls) throws Exception {
+        BaseConverter converter = converters.get(cls);
+        if (converter == null) {
+            converter = (BaseConverter) cls.newInstance();
+            converters.put(cls, converter);
+        }
+
+        return converter;
+    }
+
+    /**
+     * Общая аутентификация и ее кэш, настройки кэша берутся у первого сервера
+     * @param restServer настройки сервера
+     * @return аутентификация
+     */
+    synchronized AuthenticationManager getAuthentication(RestServer restServer) throws Exception {
+        AuthenticationManager authentication = authentications.get(restServer.authentication());
+        if (authentication == null) {
+            authentication = new AuthenticationManager(restServer.authentication().newInstance(),
+                    restServer.authCacheTtl(),
+                    restServer.authCacheNegativeTtl(),
+                    restServer.authCacheSize(),
+                    restServer.authTimeout());
+            authentications.put(restServer.authentication(), authentication);
+        }
+
+        return authentication;
+    }
+
+    synchronized MetricsRegistry getMetrics() {
+        if (metrics == null)
+            metrics = new MetricsRegistry();
+
+        return metrics;
+    }
+
+    /**
+     * Общий контроллер: один экземпляр, кэш ответов и подписчики на все серверы
+     * @param cls класс контроллера
+     * @param registry статистика или null
+     * @param converter конвертер данных событий и сообщений или null
+     * @return контроллер
+     * @throws IOException если контроллер добавлен после запуска и не запустился
+     */
+    synchronized ControllerInfo getController(Class<?> cls, MetricsRegistry registry, BaseConverter converter) throws IOException {
+        ControllerInfo controllerInfo = controllers.get(cls);
+        if (controllerInfo == null) {
+            controllerInfo = new ControllerInfo(cls, registry, converter);
+            if (controllersStarted)
+                start(controllerInfo);
+            controllers.put(cls, controllerInfo);
+        }
+
+        return controllerInfo;
+    }
+
+    private static void start(ControllerInfo controllerInfo) throws IOException {
+        try {
+            controllerInfo.start();
+        } catch (Exception e) {
+            throw new IOException("Could not start controller " + controllerInfo.getType().getName(), e);
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package ru.skornei.restserver.server.authentication;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ru.skornei.restserver.server.dictionary.HeaderType;
+import ru.skornei.restserver.server.protocol.RequestInfo;
+
+/**
+ * Вызов аутентификации с кэшем результатов по заголовку Authorization.
+ * Кэш без блокировок на чтение, при переполнении сначала удаляются устаревшие записи
+ */
+public class AuthenticationManager {
+
+    /**
+     * Аутентификация не прошла
+     */
+    public static final Object DENIED = new Object();
+
+    /**
+     * Аутентификация не успела завершиться, результат не запоминается
+     */
+    public static final Object UNAVAILABLE = new Object();
+
+    /**
+     * Аутентификация прошла, данных пользователя нет
+     */
+    private static final Object AUTHENTICATED = new Object();
+
+    /**
+     * Запомненный результат
+     */
+    private static class Entry {
+
+        private final Object result;
+        private final long expiresAt;
+
+        Entry(Object result, long expiresAt) {
+            this.result = result;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * BaseAuthentication, BasePrincipalAuthentication или BaseAsyncAuthentication
+     */
+    private final Object authentication;
+
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final int maxEntries;
+    private final long timeout;
+
+    private final ConcurrentHashMap<String, Entry> cache = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param authentication аутентификация
+     * @param ttl время жизни успешного результата в миллисекундах, 0 - не запоминать
+     * @param negativeTtl время жизни отказа в миллисекундах, 0 - не запоминать
+     * @param maxEntries максимальное количество результатов
+     */
+    public AuthenticationManager(Object authentication, long ttl, long negativeTtl, int maxEntries) {
+        this(authentication, ttl, negativeTtl, maxEntries, 0);
+    }
+
+    /**
+     * @param authentication аутентификация
+     * @param ttl время жизни успешного результата в миллисекундах, 0 - не запоминать
+     * @param negativeTtl время жизни отказа в миллисекундах, 0 - не запоминать
+     * @param maxEntries максимальное количество результатов
+     * @param timeout сколько ждать асинхронную аутентификацию в миллисекундах, 0 - без ограничения
+     */
+    public AuthenticationManager(Object authentication, long ttl, long negativeTtl, int maxEntries, long timeout) {
+        this.authentication = authentication;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttl);
+        this.negativeTtlNanos = TimeUnit.MILLISECONDS.toNanos(negativeTtl);
+        this.maxEntries = Math.max(1, maxEntries);
+        this.timeout = timeout;
+    }
+
+    /**
+     * Подходит ли класс для аутентификации
+     * @param cls класс
+     * @return да или нет
+     */
+    public static boolean isAuthentication(Class<?> cls) {
+        return BaseAuthentication.class.isAssignableFrom(cls) ||
+                BasePrincipalAuthentication.class.isAssignableFrom(cls) ||
+                BaseAsyncAuthentication.class.isAssignableFrom(cls);
+    }
+
+    /**
+     * Аутентификация выполняется в другом потоке
+     * @return да или нет
+     */
+    public boolean isAsync() {
+        return authentication instanceof BaseAsyncAuthentication;
+    }
+
+    /**
+     * Результат из кэша
+     * @param requestInfo запрос
+     * @return результат, DENIED или null, если его нет
+     */
+    public Object getCached(RequestInfo requestInfo) {
+        String key = key(requestInfo);
+        if (key == null)
+            return null;
+
+        Entry entry = cache.get(key);
+        if (entry == null || entry.expiresAt - System.nanoTime() <= 0) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        hits.incrementAndGet();
+        return entry.result;
+    }
+
+    /**
+     * Учетные данные запроса, если они уже прошли проверку и запомнены.
+     * Статистику кэша не меняет
+     * @param requestInfo запрос
+     * @return значение Authorization или null
+     */
+    public String getVerifiedKey(RequestInfo requestInfo) {
+        String key = key(requestInfo);
+        if (key == null)
+            return null;
+
+        Entry entry = cache.get(key);
+        if (entry == null || entry.result == DENIED || entry.expiresAt - System.nanoTime() <= 0)
+            return null;
+
+        return key;
+    }
+
+    /**
+     * Начать аутентификацию в другом потоке
+     * @param requestInfo запрос без тела
+     * @return результат
+     */
+    public Future<?> start(RequestInfo requestInfo) {
+        return ((BaseAsyncAuthentication) authentication).authenticate(requestInfo);
+    }
+
+    /**
+     * Дождаться аутентификации, начатой в start
+     * @param future результат
+     * @param requestInfo запрос
+     * @return результат, DENIED или UNAVAILABLE, если не дождались
+     */
+    public Object await(Future<?> future, RequestInfo requestInfo) throws Exception {
+        Object principal;
+        try {
+            principal = timeout > 0 ? future.get(timeout, TimeUnit.MILLISECONDS) : future.get();
+        } catch (TimeoutException e) {
+            //The check is no longer needed
+            future.cancel(true);
+            return UNAVAILABLE;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception)
+                throw (Exception) e.getCause();
+            throw e;
+        }
+
+        return remember(requestInfo, principal != null ? principal : DENIED);
+    }
+
+    /**
+     * Аутентификация в текущем потоке, асинхронная ожидается здесь же
+     * @param requestInfo запрос
+     * @return результат, DENIED или UNAVAILABLE
+     */
+    public Object authenticate(RequestInfo requestInfo) throws Exception {
+        if (isAsync())
+            return await(start(requestInfo), requestInfo);
+
+        Object result;
+        if (authentication instanceof BasePrincipalAuthentication) {
+            Object principal = ((BasePrincipalAuthentication) authentication).authenticate(requestInfo);
+            result = principal != null ? principal : DENIED;
+        } else {
+            result = ((BaseAuthentication) authentication).authentication(requestInfo) ? AUTHENTICATED : DENIED;
+        }
+
+        return remember(requestInfo, result);
+    }
+
+    /**
+     * Данные пользователя для обработчика
+     * @param result результат аутентификации
+     * @return данные или null
+     */
+    public static Object getPrincipal(Object result) {
+        return result == AUTHENTICATED || result == DENIED || result == UNAVAILABLE ? null : result;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private Object remember(RequestInfo requestInfo, Object result) {
+        long ttl = result == DENIED ? negativeTtlNanos : ttlNanos;
+        String key = key(requestInfo);
+        if (ttl <= 0 || key == null)
+            return result;
+
+        if (cache.size() >= maxEntries)
+            evict();
+        cache.put(key, new Entry(result, System.nanoTime() + ttl));
+        return result;
+    }
+
+    /**
+     * Освободить место: устаревшие записи, затем любые до трех четвертей размера
+     */
+    private void evict() {
+        long now = System.nanoTime();
+        Iterator<Map.Entry<String, Entry>> iterator = cache.entrySet().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().getValue().expiresAt - now <= 0)
+                iterator.remove();
+        }
+
+        iterator = cache.entrySet().iterator();
+        while (cache.size() > maxEntries * 3 / 4 && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    private static String key(RequestInfo requestInfo) {
+        return requestInfo.getHeaders().get(HeaderType.CONTENT_AUTHORIZATION);
+    }
+}
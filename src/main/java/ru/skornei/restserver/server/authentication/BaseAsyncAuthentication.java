@@ -0,0 +1,19 @@
+package ru.skornei.restserver.server.authentication;
+
+import java.util.concurrent.Future;
+
+import ru.skornei.restserver.server.protocol.RequestInfo;
+
+/**
+ * Аутентификация в другом потоке. Запускается до чтения тела запроса,
+ * поэтому может использовать только адрес, заголовки и параметры
+ */
+public interface BaseAsyncAuthentication {
+
+    /**
+     * Начать аутентификацию
+     * @param requestInfo параметры запроса без тела
+     * @return данные пользователя или null, если аутентификация не прошла
+     */
+    Future<?> authenticate(RequestInfo requestInfo);
+}
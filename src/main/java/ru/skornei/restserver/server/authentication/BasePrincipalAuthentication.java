@@ -0,0 +1,16 @@
+package ru.skornei.restserver.server.authentication;
+
+import ru.skornei.restserver.server.protocol.RequestInfo;
+
+/**
+ * Аутентификация, возвращающая данные пользователя
+ */
+public interface BasePrincipalAuthentication {
+
+    /**
+     * Аутентификация
+     * @param requestInfo параметры запроса
+     * @return данные пользователя или null, если аутентификация не прошла
+     */
+    Object authenticate(RequestInfo requestInfo) throws Exception;
+}
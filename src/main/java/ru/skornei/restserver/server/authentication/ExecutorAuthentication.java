@@ -0,0 +1,33 @@
+package ru.skornei.restserver.server.authentication;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import ru.skornei.restserver.server.protocol.RequestInfo;
+
+/**
+ * Выполнение обычной аутентификации на отдельном пуле потоков,
+ * пока поток соединения читает и разбирает тело запроса
+ */
+public class ExecutorAuthentication implements BaseAsyncAuthentication {
+
+    private final BasePrincipalAuthentication authentication;
+
+    private final ExecutorService executor;
+
+    public ExecutorAuthentication(BasePrincipalAuthentication authentication, ExecutorService executor) {
+        this.authentication = authentication;
+        this.executor = executor;
+    }
+
+    @Override
+    public Future<?> authenticate(final RequestInfo requestInfo) {
+        return executor.submit(new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                return authentication.authenticate(requestInfo);
+            }
+        });
+    }
+}
@@ -0,0 +1,61 @@
+package ru.skornei.restserver.server.batch;
+
+import java.util.Map;
+
+/**
+ * Запрос внутри пакетного запроса
+ */
+public class BatchRequest {
+
+    /**
+     * Http метод
+     */
+    private String method;
+
+    /**
+     * Адрес с параметрами
+     */
+    private String uri;
+
+    /**
+     * Заголовки, дополняют заголовки пакетного запроса
+     */
+    private Map<String, String> headers;
+
+    /**
+     * Тело: строка передается как есть, объект преобразуется конвертером
+     */
+    private Object body;
+
+    public String getMethod() {
+        return method;
+    }
+
+    public void setMethod(String method) {
+        this.method = method;
+    }
+
+    public String getUri() {
+        return uri;
+    }
+
+    public void setUri(String uri) {
+        this.uri = uri;
+    }
+
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    public void setHeaders(Map<String, String> headers) {
+        this.headers = headers;
+    }
+
+    public Object getBody() {
+        return body;
+    }
+
+    public void setBody(Object body) {
+        this.body = body;
+    }
+}
@@ -0,0 +1,208 @@
+package ru.skornei.restserver.server.batch;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import fi.iki.elonen.NanoHTTPD;
+import ru.skornei.restserver.server.dictionary.ContentType;
+import ru.skornei.restserver.server.dictionary.HeaderType;
+import ru.skornei.restserver.server.dictionary.ResponseStatus;
+import ru.skornei.restserver.server.io.BaseResponse;
+
+/**
+ * Ответ на запрос внутри пакетного запроса
+ */
+public class BatchResponse {
+
+    /**
+     * Заголовки, которые переносятся в ответ
+     */
+    private static final String[] HEADERS = {
+            HeaderType.CONTENT_TYPE,
+            "etag",
+            "last-modified",
+            "location",
+            "cache-control",
+            HeaderType.VARY,
+            HeaderType.RETRY_AFTER
+    };
+
+    /**
+     * Тип ответа пакета, если у конвертеров нет своего
+     */
+    public static final String MIME_TYPE = ContentType.APPLICATION_JSON;
+
+    /**
+     * Кодировка тела, которое не является текстом
+     */
+    public static final String BASE64 = "base64";
+
+    private static final char[] ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+    /**
+     * Код ответа
+     */
+    private int status;
+
+    /**
+     * Заголовки
+     */
+    private Map<String, String> headers;
+
+    /**
+     * Тело: текст UTF-8 или base64, если задан encoding
+     */
+    private String body;
+
+    /**
+     * Кодировка тела, null - текст
+     */
+    private String encoding;
+
+    public BatchResponse() {
+    }
+
+    public BatchResponse(int status, Map<String, String> headers, String body) {
+        this.status = status;
+        this.headers = headers;
+        this.body = body;
+    }
+
+    public BatchResponse(int status, Map<String, String> headers, String body, String encoding) {
+        this(status, headers, body);
+        this.encoding = encoding;
+    }
+
+    /**
+     * Ответ с ошибкой
+     * @param status код ответа
+     * @return ответ
+     */
+    public static BatchResponse error(ResponseStatus status) {
+        return new BatchResponse(status.getRequestStatus(), new LinkedHashMap<String, String>(), status.getDescription());
+    }
+
+    /**
+     * Собрать ответ из ответа обработчика
+     * @param response ответ
+     * @return ответ
+     */
+    public static BatchResponse of(NanoHTTPD.Response response) throws IOException {
+        Map<String, String> headers = new LinkedHashMap<>();
+        for (String name : HEADERS) {
+            String value = name.equals(HeaderType.CONTENT_TYPE) ? response.getMimeType() : response.getHeader(name);
+            if (value != null)
+                headers.put(name, value);
+        }
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        if (response instanceof BaseResponse) {
+            ((BaseResponse) response).writeBody(outputStream);
+        } else if (response.getData() != null) {
+            InputStream inputStream = response.getData();
+            try {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = inputStream.read(buffer)) != -1)
+                    outputStream.write(buffer, 0, read);
+            } finally {
+                inputStream.close();
+            }
+        }
+
+        int status = response.getStatus().getRequestStatus();
+        if (outputStream.size() == 0)
+            return new BatchResponse(status, headers, null);
+
+        //Binary bodies do not survive a UTF-8 string
+        if (!isText(response.getMimeType()))
+            return new BatchResponse(status, headers, encode(outputStream.toByteArray()), BASE64);
+
+        return new BatchResponse(status, headers, outputStream.toString("UTF-8"));
+    }
+
+    /**
+     * Текстовый ли тип: text/*, json, xml, javascript, form или с указанной кодировкой
+     * @param mimeType тип ответа
+     * @return да или нет
+     */
+    static boolean isText(String mimeType) {
+        if (mimeType == null)
+            return false;
+
+        String type = mimeType.toLowerCase(Locale.US);
+        int parameters = type.indexOf(';');
+        if (parameters >= 0) {
+            if (type.indexOf("charset=", parameters) >= 0)
+                return true;
+            type = type.substring(0, parameters);
+        }
+        type = type.trim();
+
+        return type.startsWith("text/")
+                || type.equals("application/json")
+                || type.endsWith("+json")
+                || type.equals("application/xml")
+                || type.endsWith("+xml")
+                || type.equals("application/javascript")
+                || type.equals("application/x-www-form-urlencoded");
+    }
+
+    /**
+     * Base64 без переносов строк
+     * @param data данные
+     * @return строка
+     */
+    static String encode(byte[] data) {
+        StringBuilder builder = new StringBuilder((data.length + 2) / 3 * 4);
+        for (int i = 0; i < data.length; i += 3) {
+            int b = (data[i] & 0xff) << 16;
+            if (i + 1 < data.length)
+                b |= (data[i + 1] & 0xff) << 8;
+            if (i + 2 < data.length)
+                b |= data[i + 2] & 0xff;
+
+            builder.append(ALPHABET[(b >> 18) & 0x3f]);
+            builder.append(ALPHABET[(b >> 12) & 0x3f]);
+            builder.append(i + 1 < data.length ? ALPHABET[(b >> 6) & 0x3f] : '=');
+            builder.append(i + 2 < data.length ? ALPHABET[b & 0x3f] : '=');
+        }
+        return builder.toString();
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    public void setHeaders(Map<String, String> headers) {
+        this.headers = headers;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    public void setBody(String body) {
+        this.body = body;
+    }
+
+    public String getEncoding() {
+        return encoding;
+    }
+
+    public void setEncoding(String encoding) {
+        this.encoding = encoding;
+    }
+}
@@ -0,0 +1,174 @@
+package ru.skornei.restserver.server.batch;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import fi.iki.elonen.NanoHTTPD;
+import ru.skornei.restserver.server.dictionary.HeaderType;
+
+/**
+ * Запрос из пакетного запроса, обрабатывается без отдельного соединения
+ */
+public class BatchSession implements NanoHTTPD.IHTTPSession {
+
+    /**
+     * Пакетный запрос
+     */
+    private final NanoHTTPD.IHTTPSession parent;
+
+    private final NanoHTTPD.Method method;
+
+    private final String uri;
+
+    private final String queryString;
+
+    private final Map<String, String> headers;
+
+    private final Map<String, List<String>> parameters;
+
+    private final InputStream inputStream;
+
+    /**
+     * @param parent пакетный запрос
+     * @param method http метод
+     * @param uri адрес с параметрами
+     * @param headers свои заголовки или null
+     * @param body тело или null
+     */
+    public BatchSession(NanoHTTPD.IHTTPSession parent,
+                        NanoHTTPD.Method method,
+                        String uri,
+                        Map<String, String> headers,
+                        byte[] body) {
+        this.parent = parent;
+        this.method = method;
+
+        int query = uri.indexOf('?');
+        this.uri = decode(query >= 0 ? uri.substring(0, query) : uri);
+        this.queryString = query >= 0 ? uri.substring(query + 1) : null;
+        this.parameters = decodeParameters(queryString);
+
+        //Authorization and other headers of the batch apply unless overridden
+        this.headers = new HashMap<>(parent.getHeaders());
+        this.headers.remove(HeaderType.CONTENT_LENGTH);
+        this.headers.remove(HeaderType.CONTENT_TYPE);
+        this.headers.remove(HeaderType.TRANSFER_ENCODING);
+        if (headers != null) {
+            for (Map.Entry<String, String> entry : headers.entrySet()) {
+                if (entry.getKey() != null && entry.getValue() != null)
+                    this.headers.put(entry.getKey().toLowerCase(Locale.US), entry.getValue());
+            }
+        }
+
+        //Responses are embedded into the batch, no compression
+        this.headers.remove(HeaderType.ACCEPT_ENCODING);
+
+        if (body != null) {
+            this.headers.put(HeaderType.CONTENT_LENGTH, String.valueOf(body.length));
+            this.inputStream = new ByteArrayInputStream(body);
+        } else {
+            this.inputStream = new ByteArrayInputStream(new byte[0]);
+        }
+    }
+
+    @Override
+    public void execute() {
+    }
+
+    @Override
+    public NanoHTTPD.CookieHandler getCookies() {
+        return parent.getCookies();
+    }
+
+    @Override
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return inputStream;
+    }
+
+    @Override
+    public NanoHTTPD.Method getMethod() {
+        return method;
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public Map<String, String> getParms() {
+        Map<String, String> parms = new HashMap<>();
+        for (Map.Entry<String, List<String>> entry : parameters.entrySet())
+            parms.put(entry.getKey(), entry.getValue().get(0));
+        return parms;
+    }
+
+    @Override
+    public Map<String, List<String>> getParameters() {
+        return parameters;
+    }
+
+    @Override
+    public String getQueryParameterString() {
+        return queryString;
+    }
+
+    @Override
+    public String getUri() {
+        return uri;
+    }
+
+    @Override
+    public void parseBody(Map<String, String> files) {
+    }
+
+    @Override
+    public String getRemoteIpAddress() {
+        return parent.getRemoteIpAddress();
+    }
+
+    @Override
+    public String getRemoteHostName() {
+        return parent.getRemoteHostName();
+    }
+
+    private static Map<String, List<String>> decodeParameters(String queryString) {
+        Map<String, List<String>> parameters = new HashMap<>();
+        if (queryString == null)
+            return parameters;
+
+        for (String pair : queryString.split("&")) {
+            if (pair.isEmpty())
+                continue;
+
+            int separator = pair.indexOf('=');
+            String name = decode(separator >= 0 ? pair.substring(0, separator) : pair).trim();
+            String value = separator >= 0 ? decode(pair.substring(separator + 1)) : "";
+
+            List<String> values = parameters.get(name);
+            if (values == null) {
+                values = new ArrayList<>();
+                parameters.put(name, values);
+            }
+            values.add(value);
+        }
+
+        return parameters;
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+            return value;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package ru.skornei.restserver.server.cache;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ru.skornei.restserver.annotations.Cacheable;
+import ru.skornei.restserver.server.dictionary.HeaderType;
+import ru.skornei.restserver.server.dictionary.ResponseStatus;
+import ru.skornei.restserver.server.protocol.RequestInfo;
+import ru.skornei.restserver.server.protocol.ResponseInfo;
+
+/**
+ * Запомненные ответы обработчика, вытесняются самые старые
+ */
+public class ResponseCache {
+
+    /**
+     * Запомненный ответ
+     */
+    private static class Entry {
+
+        private final ResponseStatus status;
+        private final String type;
+        private final Map<String, String> headers;
+        private final byte[] body;
+        private final String etag;
+        private final long lastModified;
+        private final long expiresAt;
+
+        Entry(ResponseInfo responseInfo, long expiresAt) {
+            this.status = responseInfo.getStatus();
+            this.type = responseInfo.getType();
+            this.headers = new LinkedHashMap<>(responseInfo.getHeaders());
+            this.body = responseInfo.getBody();
+            this.etag = responseInfo.getETag();
+            this.lastModified = responseInfo.getLastModified();
+            this.expiresAt = expiresAt;
+        }
+
+        int size() {
+            return body != null ? body.length : 0;
+        }
+    }
+
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final long maxBytes;
+    private final String[] parameters;
+    private final String[] headers;
+
+    /**
+     * Ответы в порядке обращения
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Размер тел
+     */
+    private long bytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public ResponseCache(Cacheable cacheable) {
+        this(cacheable, false);
+    }
+
+    /**
+     * @param cacheable настройки
+     * @param perUser ответы зависят от пользователя, Authorization входит в ключ
+     */
+    public ResponseCache(Cacheable cacheable, boolean perUser) {
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(cacheable.ttl());
+        this.maxEntries = Math.max(1, cacheable.maxEntries());
+        this.maxBytes = cacheable.maxBytes();
+        this.parameters = cacheable.parameters();
+
+        Set<String> headers = new LinkedHashSet<>();
+        for (String header : cacheable.headers())
+            headers.add(header.toLowerCase(Locale.US));
+        if (perUser)
+            headers.add(HeaderType.CONTENT_AUTHORIZATION);
+        this.headers = headers.toArray(new String[headers.size()]);
+    }
+
+    /**
+     * Ключ ответа
+     * @param uri адрес
+     * @param requestInfo запрос
+     * @param type выбранный тип ответа
+     * @return ключ
+     */
+    public String key(String uri, RequestInfo requestInfo, String type) {
+        StringBuilder key = new StringBuilder(uri);
+
+        //Parameters in a stable order
+        Map<String, List<String>> requestParameters = requestInfo.getParameters();
+        if (requestParameters != null) {
+            if (parameters.length == 0) {
+                for (Map.Entry<String, List<String>> parameter : new TreeMap<>(requestParameters).entrySet())
+                    key.append('&').append(parameter.getKey()).append('=').append(parameter.getValue());
+            } else {
+                for (String name : parameters)
+                    key.append('&').append(name).append('=').append(requestParameters.get(name));
+            }
+        }
+
+        for (String name : headers)
+            key.append('|').append(name).append('=').append(requestInfo.getHeaders().get(name));
+
+        return key.append('|').append(type).toString();
+    }
+
+    /**
+     * Заполнить ответ из кэша
+     * @param key ключ
+     * @param responseInfo ответ
+     * @return найден ли ответ
+     */
+    public boolean get(String key, ResponseInfo responseInfo) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry != null && entry.expiresAt - System.nanoTime() <= 0) {
+                entries.remove(key);
+                bytes -= entry.size();
+                entry = null;
+            }
+        }
+
+        if (entry == null) {
+            misses.incrementAndGet();
+            return false;
+        }
+
+        hits.incrementAndGet();
+        responseInfo.setStatus(entry.status);
+        responseInfo.setType(entry.type);
+        responseInfo.getHeaders().putAll(entry.headers);
+        responseInfo.setBody(entry.body);
+        responseInfo.setETag(entry.etag);
+        responseInfo.setLastModified(entry.lastModified);
+        return true;
+    }
+
+    /**
+     * Запомнить ответ. Запоминаются только успешные ответы с телом в памяти
+     * @param key ключ
+     * @param responseInfo ответ
+     */
+    public void put(String key, ResponseInfo responseInfo) {
+        if (responseInfo.getStatus() != ResponseStatus.OK || responseInfo.isStreaming())
+            return;
+
+        //The handler may reuse its array, keep our own copy
+        if (responseInfo.getBody() != null)
+            responseInfo.setBody(Arrays.copyOf(responseInfo.getBody(), responseInfo.getBody().length));
+
+        Entry entry = new Entry(responseInfo, System.nanoTime() + ttlNanos);
+        if (entry.size() > maxBytes)
+            return;
+
+        synchronized (this) {
+            Entry previous = entries.put(key, entry);
+            bytes += entry.size();
+            if (previous != null)
+                bytes -= previous.size();
+
+            Iterator<Entry> iterator = entries.values().iterator();
+            while ((entries.size() > maxEntries || bytes > maxBytes) && iterator.hasNext()) {
+                bytes -= iterator.next().size();
+                iterator.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Удалить все ответы
+     */
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Количество ответов, вытесненных из-за размера
+     * @return количество
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+}
@@ -0,0 +1,95 @@
+package ru.skornei.restserver.server.compression;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import ru.skornei.restserver.server.dictionary.ContentEncoding;
+
+/**
+ * Сжатые тела ответов, вытесняются самые старые по общему размеру
+ */
+class CompressionCache {
+
+    /**
+     * Ключ: способ сжатия и исходное тело
+     */
+    private static class Key {
+
+        private final ContentEncoding encoding;
+        private final byte[] body;
+        private final int hash;
+
+        Key(ContentEncoding encoding, byte[] body) {
+            this.encoding = encoding;
+            this.body = body;
+            this.hash = 31 * encoding.hashCode() + Arrays.hashCode(body);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof Key))
+                return false;
+
+            Key key = (Key) o;
+            return hash == key.hash &&
+                    encoding == key.encoding &&
+                    Arrays.equals(body, key.body);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Записи в порядке обращения
+     */
+    private final LinkedHashMap<Key, byte[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Максимальный размер исходных и сжатых тел
+     */
+    private final long maxBytes;
+
+    /**
+     * Текущий размер
+     */
+    private long bytes;
+
+    CompressionCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    synchronized byte[] get(ContentEncoding encoding, byte[] body) {
+        return entries.get(new Key(encoding, body));
+    }
+
+    synchronized void put(ContentEncoding encoding, byte[] body, byte[] compressed) {
+        long size = body.length + compressed.length;
+        if (size > maxBytes)
+            return;
+
+        //The handler may reuse its array, keep our own copy
+        byte[] copy = Arrays.copyOf(body, body.length);
+        byte[] previous = entries.put(new Key(encoding, copy), compressed);
+        bytes += size;
+        if (previous != null)
+            bytes -= body.length + previous.length;
+
+        Iterator<Map.Entry<Key, byte[]>> iterator = entries.entrySet().iterator();
+        while (bytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<Key, byte[]> entry = iterator.next();
+            bytes -= entry.getKey().body.length + entry.getValue().length;
+            iterator.remove();
+        }
+    }
+
+    synchronized long getBytes() {
+        return bytes;
+    }
+}
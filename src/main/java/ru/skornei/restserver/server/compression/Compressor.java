@@ -0,0 +1,330 @@
+package ru.skornei.restserver.server.compression;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import ru.skornei.restserver.annotations.Compress;
+import ru.skornei.restserver.server.dictionary.ContentEncoding;
+import ru.skornei.restserver.server.protocol.MediaType;
+
+/**
+ * Сжатие ответов по заголовку Accept-Encoding
+ */
+public class Compressor {
+
+    /**
+     * Сжимать ответы всех обработчиков
+     */
+    private final boolean enabled;
+
+    /**
+     * Минимальный размер тела для сжатия
+     */
+    private final int minSize;
+
+    /**
+     * Типы, которые имеет смысл сжимать
+     */
+    private final List<MediaType> types = new ArrayList<>();
+
+    /**
+     * Сжатые тела, null если не используется
+     */
+    private final CompressionCache cache;
+
+    private final AtomicLong compressedCount = new AtomicLong();
+    private final AtomicLong bytesIn = new AtomicLong();
+    private final AtomicLong bytesOut = new AtomicLong();
+    private final AtomicLong compressionNanos = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+    private final AtomicInteger openStreams = new AtomicInteger();
+
+    /**
+     * @param enabled сжимать ответы всех обработчиков
+     * @param minSize минимальный размер тела
+     * @param types типы содержимого, допускаются маски
+     * @param cacheSize размер кэша сжатых тел в байтах, 0 - без кэша
+     */
+    public Compressor(boolean enabled, int minSize, String[] types, long cacheSize) {
+        this.enabled = enabled;
+        this.minSize = minSize;
+        for (String type : types) {
+            MediaType mediaType = MediaType.parse(type);
+            if (mediaType != null)
+                this.types.add(mediaType);
+        }
+        this.cache = cacheSize > 0 ? new CompressionCache(cacheSize) : null;
+    }
+
+    /**
+     * Можно ли сжимать ответ этого типа
+     * @param compress настройки обработчика или null
+     * @param mimeType тип ответа
+     * @return да или нет
+     */
+    public boolean isCompressible(Compress compress, String mimeType) {
+        if (compress != null ? !compress.value() : !enabled)
+            return false;
+
+        MediaType mediaType = MediaType.parse(mimeType);
+        if (mediaType == null)
+            return false;
+
+        for (MediaType type : types) {
+            if (type.includes(mediaType))
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Минимальный размер тела для сжатия
+     * @param compress настройки обработчика или null
+     * @return размер в байтах
+     */
+    public int getMinSize(Compress compress) {
+        if (compress != null && compress.minSize() >= 0)
+            return compress.minSize();
+
+        return minSize;
+    }
+
+    /**
+     * Выбрать сжатие по заголовку Accept-Encoding
+     * @param acceptEncoding заголовок
+     * @return сжатие или null, если клиент его не принимает
+     */
+    public static ContentEncoding negotiate(String acceptEncoding) {
+        if (acceptEncoding == null)
+            return null;
+
+        float gzip = -1f;
+        float deflate = -1f;
+        float any = -1f;
+        for (String part : acceptEncoding.split(",")) {
+            String[] params = part.split(";");
+            String name = params[0].trim().toLowerCase(Locale.US);
+            float quality = 1f;
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        quality = Float.parseFloat(param.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        quality = 0f;
+                    }
+                }
+            }
+
+            if (name.equals("gzip") || name.equals("x-gzip"))
+                gzip = quality;
+            else if (name.equals("deflate"))
+                deflate = quality;
+            else if (name.equals("*"))
+                any = quality;
+        }
+
+        //Encodings not named explicitly take the weight of *
+        if (gzip < 0)
+            gzip = any;
+        if (deflate < 0)
+            deflate = any;
+
+        if (gzip > 0 && gzip >= deflate)
+            return ContentEncoding.GZIP;
+        if (deflate > 0)
+            return ContentEncoding.DEFLATE;
+
+        return null;
+    }
+
+    /**
+     * Сжать тело
+     * @param body тело
+     * @param encoding сжатие
+     * @param useCache искать и запоминать результат в кэше
+     * @return сжатое тело
+     */
+    public byte[] compress(byte[] body, ContentEncoding encoding, boolean useCache) {
+        if (useCache && cache != null) {
+            byte[] compressed = cache.get(encoding, body);
+            if (compressed != null) {
+                cacheHits.incrementAndGet();
+                return compressed;
+            }
+            cacheMisses.incrementAndGet();
+        }
+
+        long start = System.nanoTime();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(Math.max(64, body.length / 4));
+        try {
+            DeflaterOutputStream deflaterOutputStream = open(outputStream, encoding, false);
+            try {
+                deflaterOutputStream.write(body);
+            } finally {
+                //Finishes the body and frees the deflater
+                deflaterOutputStream.close();
+            }
+        } catch (IOException e) {
+            //Memory streams do not fail
+            throw new IllegalStateException(e);
+        }
+        byte[] compressed = outputStream.toByteArray();
+        compressionNanos.addAndGet(System.nanoTime() - start);
+        record(body.length, compressed.length);
+
+        if (useCache && cache != null)
+            cache.put(encoding, body, compressed);
+
+        return compressed;
+    }
+
+    /**
+     * Поток, сжимающий тело при записи. После записи нужно вызвать finish(),
+     * он освобождает память zlib, даже если запись не удалась
+     * @param outputStream соединение
+     * @param encoding сжатие
+     * @return поток
+     */
+    public DeflaterOutputStream wrap(OutputStream outputStream, ContentEncoding encoding) throws IOException {
+        return open(outputStream, encoding, true);
+    }
+
+    private DeflaterOutputStream open(OutputStream outputStream, ContentEncoding encoding, final boolean record) throws IOException {
+        openStreams.incrementAndGet();
+        if (encoding == ContentEncoding.GZIP) {
+            return new GZIPOutputStream(outputStream) {
+                private boolean finished;
+
+                @Override
+                public void finish() throws IOException {
+                    if (finished)
+                        return;
+
+                    finished = true;
+                    try {
+                        super.finish();
+                        if (record)
+                            record(def.getBytesRead(), def.getBytesWritten());
+                    } finally {
+                        end(def);
+                    }
+                }
+            };
+        }
+
+        return new DeflaterOutputStream(outputStream) {
+            private boolean finished;
+
+            @Override
+            public void finish() throws IOException {
+                if (finished)
+                    return;
+
+                finished = true;
+                try {
+                    super.finish();
+                    if (record)
+                        record(def.getBytesRead(), def.getBytesWritten());
+                } finally {
+                    end(def);
+                }
+            }
+        };
+    }
+
+    /**
+     * Освободить память zlib сразу, а не в финализаторе
+     * @param deflater сжатие
+     */
+    private void end(Deflater deflater) {
+        deflater.end();
+        openStreams.decrementAndGet();
+    }
+
+    private void record(long in, long out) {
+        compressedCount.incrementAndGet();
+        bytesIn.addAndGet(in);
+        bytesOut.addAndGet(out);
+    }
+
+    /**
+     * Количество сжатых ответов
+     * @return количество
+     */
+    public long getCompressedCount() {
+        return compressedCount.get();
+    }
+
+    /**
+     * Размер тел до сжатия
+     * @return байты
+     */
+    public long getBytesIn() {
+        return bytesIn.get();
+    }
+
+    /**
+     * Размер тел после сжатия
+     * @return байты
+     */
+    public long getBytesOut() {
+        return bytesOut.get();
+    }
+
+    /**
+     * Степень сжатия: размер после к размеру до
+     * @return отношение, 1 если ничего не сжималось
+     */
+    public double getRatio() {
+        long in = bytesIn.get();
+        if (in == 0)
+            return 1d;
+
+        return (double) bytesOut.get() / in;
+    }
+
+    /**
+     * Время сжатия тел в памяти. Сжатие занимает только процессор,
+     * поэтому время потока совпадает со временем процессора
+     * @return наносекунды
+     */
+    public long getCompressionNanos() {
+        return compressionNanos.get();
+    }
+
+    public long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    public long getCacheMisses() {
+        return cacheMisses.get();
+    }
+
+    /**
+     * Потоки сжатия, которые еще держат память zlib
+     * @return количество
+     */
+    public int getOpenStreams() {
+        return openStreams.get();
+    }
+
+    /**
+     * Размер кэша сжатых тел
+     * @return байты
+     */
+    public long getCacheBytes() {
+        return cache != null ? cache.getBytes() : 0;
+    }
+}
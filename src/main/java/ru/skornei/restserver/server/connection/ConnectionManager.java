@@ -0,0 +1,207 @@
+package ru.skornei.restserver.server.connection;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Учет открытых соединений, их ограничения и плавная остановка
+ */
+public class ConnectionManager {
+
+    /**
+     * Сколько соединений может быть открыто, 0 - без ограничения
+     */
+    private final int maxConnections;
+
+    /**
+     * Сколько запросов обработать в одном соединении, 0 - без ограничения
+     */
+    private final int maxRequestsPerConnection;
+
+    /**
+     * Открытые соединения
+     */
+    private final Set<Socket> sockets = Collections.newSetFromMap(new ConcurrentHashMap<Socket, Boolean>());
+
+    private final AtomicInteger open = new AtomicInteger();
+
+    /**
+     * Запросы, которые сейчас обрабатываются
+     */
+    private final AtomicInteger active = new AtomicInteger();
+
+    private final AtomicLong accepted = new AtomicLong();
+
+    private final AtomicLong refused = new AtomicLong();
+
+    private final AtomicLong requests = new AtomicLong();
+
+    /**
+     * Ожидание остановки
+     */
+    private final Object lock = new Object();
+
+    /**
+     * Новые соединения не принимаются, открытые закрываются после ответа
+     */
+    private volatile boolean draining;
+
+    public ConnectionManager(int maxConnections, int maxRequestsPerConnection) {
+        this.maxConnections = Math.max(0, maxConnections);
+        this.maxRequestsPerConnection = Math.max(0, maxRequestsPerConnection);
+    }
+
+    /**
+     * Принять новое соединение
+     * @param socket сокет клиента
+     * @return false, если соединение нужно отклонить
+     */
+    public boolean open(Socket socket) {
+        if (draining) {
+            refused.incrementAndGet();
+            return false;
+        }
+
+        if (open.incrementAndGet() > maxConnections && maxConnections > 0) {
+            open.decrementAndGet();
+            refused.incrementAndGet();
+            return false;
+        }
+
+        sockets.add(socket);
+        accepted.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Соединение закрыто, можно вызывать несколько раз
+     * @param socket сокет клиента
+     */
+    public void closed(Socket socket) {
+        if (sockets.remove(socket) && open.decrementAndGet() == 0)
+            signal();
+    }
+
+    /**
+     * Начало обработки запроса
+     */
+    public void requestStarted() {
+        active.incrementAndGet();
+        requests.incrementAndGet();
+    }
+
+    /**
+     * Конец обработки запроса
+     * @param served сколько запросов обработано в этом соединении
+     * @return true, если после ответа соединение нужно закрыть
+     */
+    public boolean requestFinished(int served) {
+        if (active.decrementAndGet() == 0)
+            signal();
+
+        return draining || (maxRequestsPerConnection > 0 && served >= maxRequestsPerConnection);
+    }
+
+    /**
+     * Снова принимать соединения после остановки
+     */
+    public void resume() {
+        draining = false;
+    }
+
+    /**
+     * Дождаться конца запросов и закрыть соединения.
+     * Слушающий сокет нужно закрыть до вызова
+     * @param timeout сколько ждать, миллисекунды
+     * @return true, если все соединения закрылись сами
+     */
+    public boolean drain(long timeout) {
+        draining = true;
+        long deadline = System.currentTimeMillis() + timeout;
+
+        //Handlers finish and their responses go out with Connection: close
+        if (!await(active, deadline))
+            return false;
+
+        //Idle keep-alive connections see the end of the stream, responses being written are not cut
+        for (Socket socket : sockets) {
+            try {
+                socket.shutdownInput();
+            } catch (IOException ignored) {
+            }
+        }
+
+        return await(open, deadline);
+    }
+
+    public boolean isDraining() {
+        return draining;
+    }
+
+    /**
+     * Количество открытых соединений
+     * @return количество
+     */
+    public int getOpenConnections() {
+        return open.get();
+    }
+
+    /**
+     * Количество запросов в обработке
+     * @return количество
+     */
+    public int getActiveRequests() {
+        return active.get();
+    }
+
+    /**
+     * Количество принятых соединений
+     * @return количество
+     */
+    public long getAcceptedConnections() {
+        return accepted.get();
+    }
+
+    /**
+     * Количество отклоненных соединений
+     * @return количество
+     */
+    public long getRefusedConnections() {
+        return refused.get();
+    }
+
+    /**
+     * Количество обработанных запросов
+     * @return количество
+     */
+    public long getRequests() {
+        return requests.get();
+    }
+
+    private boolean await(AtomicInteger counter, long deadline) {
+        synchronized (lock) {
+            long left;
+            while (counter.get() > 0 && (left = deadline - System.currentTimeMillis()) > 0) {
+                try {
+                    lock.wait(left);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+
+            return counter.get() == 0;
+        }
+    }
+
+    private void signal() {
+        synchronized (lock) {
+            lock.notifyAll();
+        }
+    }
+}
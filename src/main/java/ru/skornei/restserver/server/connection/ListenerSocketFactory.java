@@ -0,0 +1,50 @@
+package ru.skornei.restserver.server.connection;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.SocketAddress;
+
+import fi.iki.elonen.NanoHTTPD;
+
+/**
+ * Слушающий сокет с заданной очередью подключений.
+ * Запоминает сокет, чтобы перестать принимать соединения до остановки сервера
+ */
+public class ListenerSocketFactory implements NanoHTTPD.ServerSocketFactory {
+
+    /**
+     * Очередь подключений, 0 - по умолчанию системы
+     */
+    private final int backlog;
+
+    private volatile ServerSocket serverSocket;
+
+    public ListenerSocketFactory(int backlog) {
+        this.backlog = Math.max(0, backlog);
+    }
+
+    @Override
+    public ServerSocket create() throws IOException {
+        //NanoHTTPD binds without a backlog
+        serverSocket = new ServerSocket() {
+            @Override
+            public void bind(SocketAddress endpoint) throws IOException {
+                super.bind(endpoint, backlog);
+            }
+        };
+        return serverSocket;
+    }
+
+    /**
+     * Перестать принимать соединения
+     */
+    public void close() {
+        ServerSocket serverSocket = this.serverSocket;
+        if (serverSocket != null) {
+            try {
+                serverSocket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package ru.skornei.restserver.server.controller;
+
+public interface BaseControllerProvider {
+
+    /**
+     * Получить экземпляр контроллера для запроса
+     * @return контроллер
+     */
+    Object acquire() throws Exception;
+
+    /**
+     * Вернуть экземпляр после обработки запроса
+     * @param controller контроллер
+     */
+    void release(Object controller);
+
+    /**
+     * Запуск сервера
+     */
+    void start() throws Exception;
+
+    /**
+     * Остановка сервера, после нее acquire не выдает экземпляры до запуска
+     */
+    void stop();
+}
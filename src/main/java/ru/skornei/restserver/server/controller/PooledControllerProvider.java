@@ -0,0 +1,116 @@
+package ru.skornei.restserver.server.controller;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import ru.skornei.restserver.utils.ReflectionUtils;
+
+/**
+ * Пул контроллеров ограниченного размера.
+ * Если свободных экземпляров нет, создается временный,
+ * который не возвращается в заполненный пул
+ */
+public class PooledControllerProvider implements BaseControllerProvider {
+
+    private final Class<?> type;
+    private final int poolSize;
+    private final ReflectionUtils.MethodInfo onStart;
+    private final ReflectionUtils.MethodInfo onStop;
+    private final ReflectionUtils.MethodInfo onReset;
+
+    private final BlockingQueue<Object> pool;
+
+    /**
+     * После остановки экземпляры не выдаются до следующего запуска
+     */
+    private volatile boolean stopped;
+
+    public PooledControllerProvider(Class<?> type,
+                                    int poolSize,
+                                    ReflectionUtils.MethodInfo onStart,
+                                    ReflectionUtils.MethodInfo onStop,
+                                    ReflectionUtils.MethodInfo onReset) {
+        this.type = type;
+        this.poolSize = Math.max(1, poolSize);
+        this.onStart = onStart;
+        this.onStop = onStop;
+        this.onReset = onReset;
+        this.pool = new ArrayBlockingQueue<>(this.poolSize);
+    }
+
+    @Override
+    public Object acquire() throws Exception {
+        if (stopped)
+            throw new IllegalStateException("Controller " + type.getName() + " is stopped");
+
+        Object controller = pool.poll();
+        if (controller == null)
+            controller = create();
+
+        return controller;
+    }
+
+    @Override
+    public void release(Object controller) {
+        try {
+            if (onReset != null)
+                onReset.invoke(controller);
+        } catch (Exception e) {
+            //Do not return a broken instance
+            e.printStackTrace();
+            destroy(controller);
+            return;
+        }
+
+        if (stopped || !pool.offer(controller)) {
+            destroy(controller);
+            return;
+        }
+
+        //Stopped while the instance was being returned
+        if (stopped)
+            drain();
+    }
+
+    @Override
+    public void start() throws Exception {
+        stopped = false;
+        while (pool.size() < poolSize) {
+            Object controller = create();
+            if (!pool.offer(controller)) {
+                destroy(controller);
+                break;
+            }
+        }
+    }
+
+    @Override
+    public void stop() {
+        stopped = true;
+        drain();
+    }
+
+    private void drain() {
+        Object controller;
+        while ((controller = pool.poll()) != null)
+            destroy(controller);
+    }
+
+    private Object create() throws Exception {
+        Object controller = type.newInstance();
+        if (onStart != null)
+            onStart.invoke(controller);
+
+        return controller;
+    }
+
+    private void destroy(Object controller) {
+        if (onStop != null) {
+            try {
+                onStop.invoke(controller);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
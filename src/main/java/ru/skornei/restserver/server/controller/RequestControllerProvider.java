@@ -0,0 +1,30 @@
+package ru.skornei.restserver.server.controller;
+
+/**
+ * Новый контроллер на каждый запрос
+ */
+public class RequestControllerProvider implements BaseControllerProvider {
+
+    private final Class<?> type;
+
+    public RequestControllerProvider(Class<?> type) {
+        this.type = type;
+    }
+
+    @Override
+    public Object acquire() throws Exception {
+        return type.newInstance();
+    }
+
+    @Override
+    public void release(Object controller) {
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void stop() {
+    }
+}
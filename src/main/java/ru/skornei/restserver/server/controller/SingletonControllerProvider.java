@@ -0,0 +1,77 @@
+package ru.skornei.restserver.server.controller;
+
+import ru.skornei.restserver.utils.ReflectionUtils;
+
+/**
+ * Один контроллер на все запросы
+ */
+public class SingletonControllerProvider implements BaseControllerProvider {
+
+    private final Class<?> type;
+    private final ReflectionUtils.MethodInfo onStart;
+    private final ReflectionUtils.MethodInfo onStop;
+
+    private volatile Object controller;
+
+    /**
+     * После остановки экземпляр не создается до следующего запуска
+     */
+    private boolean stopped;
+
+    public SingletonControllerProvider(Class<?> type,
+                                       ReflectionUtils.MethodInfo onStart,
+                                       ReflectionUtils.MethodInfo onStop) {
+        this.type = type;
+        this.onStart = onStart;
+        this.onStop = onStop;
+    }
+
+    @Override
+    public Object acquire() throws Exception {
+        Object controller = this.controller;
+        if (controller == null)
+            controller = create();
+
+        return controller;
+    }
+
+    @Override
+    public void release(Object controller) {
+    }
+
+    @Override
+    public synchronized void start() throws Exception {
+        stopped = false;
+        create();
+    }
+
+    @Override
+    public synchronized void stop() {
+        stopped = true;
+        if (controller != null) {
+            if (onStop != null) {
+                try {
+                    onStop.invoke(controller);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+            controller = null;
+        }
+    }
+
+    private synchronized Object create() throws Exception {
+        if (controller == null) {
+            if (stopped)
+                throw new IllegalStateException("Controller " + type.getName() + " is stopped");
+
+            Object controller = type.newInstance();
+            if (onStart != null)
+                onStart.invoke(controller);
+
+            this.controller = controller;
+        }
+
+        return controller;
+    }
+}
@@ -0,0 +1,32 @@
+package ru.skornei.restserver.server.converter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Конвертер, который умеет работать с потоками.
+ * Тело запроса разбирается прямо из соединения,
+ * а ответ пишется в соединение без промежуточного массива байт
+ */
+public interface BaseStreamConverter extends BaseConverter {
+
+    /**
+     * Записать объект в поток
+     * @param outputStream поток соединения, закрывать нельзя.
+     *                     Закрытие только сбрасывает буфер
+     * @param value объект
+     * @throws IOException ошибка записи
+     */
+    void writeValue(OutputStream outputStream, Object value) throws IOException;
+
+    /**
+     * Прочитать объект из потока
+     * @param inputStream поток, закрывать не нужно
+     * @param valueType тип объекта
+     * @param <T>
+     * @return объект
+     * @throws IOException ошибка чтения
+     */
+    <T> T readValue(InputStream inputStream, Class<T> valueType) throws IOException;
+}
@@ -0,0 +1,48 @@
+package ru.skornei.restserver.server.converter;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import ru.skornei.restserver.server.protocol.BodyWriter;
+
+/**
+ * Запись результата обработчика конвертером прямо в соединение
+ */
+public class ConverterBodyWriter implements BodyWriter {
+
+    private final BaseStreamConverter converter;
+
+    private final Object value;
+
+    public ConverterBodyWriter(BaseStreamConverter converter, Object value) {
+        this.converter = converter;
+        this.value = value;
+    }
+
+    @Override
+    public void write(OutputStream outputStream) throws IOException {
+        //Converters like Jackson close their target by default
+        converter.writeValue(new NonClosingOutputStream(outputStream), value);
+    }
+
+    /**
+     * Поток соединения, который конвертер не может закрыть
+     */
+    private static class NonClosingOutputStream extends FilterOutputStream {
+
+        NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) throws IOException {
+            out.write(buffer, offset, length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package ru.skornei.restserver.server.converter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import ru.skornei.restserver.annotations.MediaTypes;
+import ru.skornei.restserver.server.protocol.MediaType;
+import ru.skornei.restserver.utils.ReflectionUtils;
+
+/**
+ * Конвертеры по типам содержимого и выбор типа ответа по заголовку Accept
+ */
+public class ConverterRegistry {
+
+    /**
+     * Сколько разных заголовков Accept запоминать для одного обработчика
+     */
+    private static final int MAX_CACHED_ACCEPT = 32;
+
+    /**
+     * Выбранный тип ответа и конвертер для него
+     */
+    public static class Selection {
+
+        private final MediaType type;
+        private final BaseConverter converter;
+        private final boolean negotiated;
+
+        Selection(MediaType type, BaseConverter converter, boolean negotiated) {
+            this.type = type;
+            this.converter = converter;
+            this.negotiated = negotiated;
+        }
+
+        public MediaType getType() {
+            return type;
+        }
+
+        public BaseConverter getConverter() {
+            return converter;
+        }
+
+        /**
+         * Зависит ли выбор от заголовка Accept
+         * @return да или нет
+         */
+        public boolean isNegotiated() {
+            return negotiated;
+        }
+    }
+
+    private static class Entry {
+
+        private final MediaType mediaType;
+        private final BaseConverter converter;
+
+        Entry(MediaType mediaType, BaseConverter converter) {
+            this.mediaType = mediaType;
+            this.converter = converter;
+        }
+    }
+
+    /**
+     * Конвертеры в порядке регистрации
+     */
+    private final List<Entry> entries = new ArrayList<>();
+
+    /**
+     * Конкретные типы конвертеров, из них выбирается ответ,
+     * если у обработчика нет @Produces
+     */
+    private final List<MediaType> concreteTypes = new ArrayList<>();
+
+    /**
+     * Конвертер по умолчанию
+     */
+    private BaseConverter defaultConverter;
+
+    /**
+     * Результат выбора по обработчику и заголовку Accept
+     */
+    private final Map<ReflectionUtils.MethodInfo, Map<String, Selection>> cache = new ConcurrentHashMap<>();
+
+    /**
+     * Зарегистрировать конвертер. Типы берутся из {@link MediaTypes},
+     * без аннотации конвертер подходит для любого типа
+     * @param converter конвертер
+     */
+    public void register(BaseConverter converter) {
+        MediaTypes mediaTypes = converter.getClass().getAnnotation(MediaTypes.class);
+        if (mediaTypes == null) {
+            entries.add(new Entry(MediaType.parse("*/*"), converter));
+        } else {
+            for (String value : mediaTypes.value()) {
+                MediaType mediaType = MediaType.parse(value);
+                if (mediaType != null) {
+                    entries.add(new Entry(mediaType, converter));
+                    if (!mediaType.isWildcard())
+                        concreteTypes.add(mediaType);
+                }
+            }
+        }
+
+        if (defaultConverter == null)
+            defaultConverter = converter;
+    }
+
+    public boolean isEmpty() {
+        return defaultConverter == null;
+    }
+
+    public BaseConverter getDefaultConverter() {
+        return defaultConverter;
+    }
+
+    /**
+     * Тип, в который пишет конвертер по умолчанию
+     * @return тип или null, если у конвертера нет конкретного типа
+     */
+    public String getDefaultType() {
+        for (Entry entry : entries) {
+            if (entry.converter == defaultConverter && !entry.mediaType.isWildcard())
+                return entry.mediaType.getValue();
+        }
+
+        return null;
+    }
+
+    /**
+     * Конвертер для тела запроса
+     * @param contentType заголовок Content-Type
+     * @return конвертер или null
+     */
+    public BaseConverter forContentType(String contentType) {
+        MediaType mediaType = MediaType.parse(contentType);
+        if (mediaType != null) {
+            BaseConverter converter = find(mediaType);
+            if (converter != null)
+                return converter;
+        }
+
+        return defaultConverter;
+    }
+
+    /**
+     * Выбрать тип ответа
+     * @param methodInfo обработчик
+     * @param accept заголовок Accept
+     * @param convertsResult ответ будет создан конвертером
+     * @return выбор или null, если выбирать не из чего
+     */
+    public Selection negotiate(ReflectionUtils.MethodInfo methodInfo, String accept, boolean convertsResult) {
+        String key = accept != null ? accept : "";
+
+        Map<String, Selection> selections = cache.get(methodInfo);
+        if (selections != null) {
+            Selection selection = selections.get(key);
+            if (selection != null)
+                return selection;
+        }
+
+        List<MediaType> candidates = methodInfo.getProduces();
+        if (candidates.isEmpty() && convertsResult)
+            candidates = concreteTypes;
+        if (candidates.isEmpty())
+            return null;
+
+        MediaType type = select(candidates, MediaType.parseList(accept));
+        BaseConverter converter = find(type);
+        Selection selection = new Selection(type,
+                converter != null ? converter : defaultConverter,
+                candidates.size() > 1);
+
+        if (selections == null) {
+            selections = new ConcurrentHashMap<>();
+            cache.put(methodInfo, selections);
+        }
+        if (selections.size() < MAX_CACHED_ACCEPT)
+            selections.put(key, selection);
+
+        return selection;
+    }
+
+    /**
+     * Забыть выбор для обработчиков, например удаленного контроллера
+     * @param methods обработчики
+     */
+    public void forget(Collection<ReflectionUtils.MethodInfo> methods) {
+        for (ReflectionUtils.MethodInfo methodInfo : methods)
+            cache.remove(methodInfo);
+    }
+
+    /**
+     * Подходит ли Content-Type запроса под допустимые типы
+     * @param accept допустимые типы
+     * @param contentType заголовок Content-Type
+     * @return да или нет
+     */
+    public static boolean isAcceptable(List<MediaType> accept, String contentType) {
+        MediaType mediaType = MediaType.parse(contentType);
+        if (mediaType == null)
+            return false;
+
+        for (MediaType range : accept) {
+            if (range.includes(mediaType))
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Лучший тип по весам q. Если клиенту ничего не подходит,
+     * отдаем первый тип, как и раньше без разбора Accept
+     */
+    private static MediaType select(List<MediaType> candidates, List<MediaType> accepts) {
+        if (accepts.isEmpty())
+            return candidates.get(0);
+
+        MediaType best = null;
+        float bestQuality = 0f;
+        for (MediaType candidate : candidates) {
+            float quality = quality(candidate, accepts);
+            if (quality > bestQuality) {
+                best = candidate;
+                bestQuality = quality;
+            }
+        }
+
+        return best != null ? best : candidates.get(0);
+    }
+
+    /**
+     * Вес типа: берется самый конкретный подходящий диапазон
+     */
+    private static float quality(MediaType candidate, List<MediaType> accepts) {
+        MediaType match = null;
+        for (MediaType range : accepts) {
+            if (range.includes(candidate) &&
+                    (match == null || range.getSpecificity() > match.getSpecificity()))
+                match = range;
+        }
+
+        return match != null ? match.getQuality() : 0f;
+    }
+
+    private BaseConverter find(MediaType mediaType) {
+        //Exact types first, then masks
+        BaseConverter wildcard = null;
+        for (Entry entry : entries) {
+            if (entry.mediaType.includes(mediaType)) {
+                if (!entry.mediaType.isWildcard())
+                    return entry.converter;
+                if (wildcard == null)
+                    wildcard = entry.converter;
+            }
+        }
+
+        return wildcard;
+    }
+}
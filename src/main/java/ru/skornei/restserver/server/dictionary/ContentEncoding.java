@@ -0,0 +1,28 @@
+package ru.skornei.restserver.server.dictionary;
+
+public enum ContentEncoding {
+
+    /**
+     * gzip
+     */
+    GZIP("gzip"),
+
+    /**
+     * deflate (zlib)
+     */
+    DEFLATE("deflate");
+
+    private final String name;
+
+    ContentEncoding(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Значение заголовка Content-Encoding
+     * @return название
+     */
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,19 @@
+package ru.skornei.restserver.server.dictionary;
+
+public enum ControllerScope {
+
+    /**
+     * Новый экземпляр на каждый запрос
+     */
+    REQUEST,
+
+    /**
+     * Один экземпляр на весь сервер, используется из разных потоков
+     */
+    SINGLETON,
+
+    /**
+     * Ограниченный пул экземпляров
+     */
+    POOLED
+}
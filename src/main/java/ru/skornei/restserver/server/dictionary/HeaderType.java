@@ -7,13 +7,68 @@ public interface HeaderType {
      */
     String CONTENT_LENGTH = "content-length";
 
+    /**
+     * Transfer-Encoding
+     */
+    String TRANSFER_ENCODING = "transfer-encoding";
+
     /**
      * Content-Type
      */
     String CONTENT_TYPE = "content-type";
 
+    /**
+     * Accept
+     */
+    String ACCEPT = "accept";
+
+    /**
+     * Vary
+     */
+    String VARY = "vary";
+
+    /**
+     * Accept-Encoding
+     */
+    String ACCEPT_ENCODING = "accept-encoding";
+
+    /**
+     * Content-Encoding
+     */
+    String CONTENT_ENCODING = "content-encoding";
+
     /**
      * Авторизация
      */
     String CONTENT_AUTHORIZATION = "authorization";
+
+    /**
+     * Last-Event-ID
+     */
+    String LAST_EVENT_ID = "last-event-id";
+
+    /**
+     * Retry-After
+     */
+    String RETRY_AFTER = "retry-after";
+
+    /**
+     * Range
+     */
+    String RANGE = "range";
+
+    /**
+     * If-Range
+     */
+    String IF_RANGE = "if-range";
+
+    /**
+     * If-None-Match
+     */
+    String IF_NONE_MATCH = "if-none-match";
+
+    /**
+     * If-Modified-Since
+     */
+    String IF_MODIFIED_SINCE = "if-modified-since";
 }
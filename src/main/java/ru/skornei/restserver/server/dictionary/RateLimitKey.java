@@ -0,0 +1,20 @@
+package ru.skornei.restserver.server.dictionary;
+
+public enum RateLimitKey {
+
+    /**
+     * IP адрес клиента
+     */
+    ADDRESS,
+
+    /**
+     * Учетные данные из заголовка Authorization, которые аутентификация
+     * уже проверила и запомнила. Остальные запросы считаются по IP адресу
+     */
+    PRINCIPAL,
+
+    /**
+     * Один счетчик на обработчик, для RestServer - на весь сервер
+     */
+    ROUTE
+}
@@ -0,0 +1,16 @@
+package ru.skornei.restserver.server.invoker;
+
+import java.lang.reflect.InvocationTargetException;
+
+public interface BaseInvoker {
+
+    /**
+     * Вызвать метод
+     * @param object объект, для статических методов игнорируется
+     * @param args аргументы в порядке параметров метода
+     * @return результат метода, null для void
+     * @throws InvocationTargetException если метод бросил исключение
+     * @throws IllegalAccessException если метод недоступен
+     */
+    Object invoke(Object object, Object[] args) throws InvocationTargetException, IllegalAccessException;
+}
@@ -0,0 +1,47 @@
+package ru.skornei.restserver.server.invoker;
+
+import java.lang.reflect.Method;
+
+public final class Invokers {
+
+    /**
+     * Доступны ли MethodHandle на этой платформе.
+     * На Android они появились только в API 26 и там медленнее рефлексии,
+     * поэтому используются только на обычной JVM
+     */
+    private static final boolean METHOD_HANDLES_SUPPORTED = isMethodHandlesSupported();
+
+    private Invokers() {
+        throw new RuntimeException();
+    }
+
+    /**
+     * Создать самый быстрый доступный вызов метода
+     * @param method метод
+     * @return вызов
+     */
+    public static BaseInvoker create(Method method) {
+        if (METHOD_HANDLES_SUPPORTED) {
+            try {
+                return new MethodHandleInvoker(method);
+            } catch (Throwable throwable) {
+                throwable.printStackTrace();
+            }
+        }
+
+        return new ReflectionInvoker(method);
+    }
+
+    private static boolean isMethodHandlesSupported() {
+        String vmName = System.getProperty("java.vm.name");
+        if (vmName != null && vmName.toLowerCase().contains("dalvik"))
+            return false;
+
+        try {
+            Class.forName("java.lang.invoke.MethodHandles");
+            return true;
+        } catch (Throwable throwable) {
+            return false;
+        }
+    }
+}
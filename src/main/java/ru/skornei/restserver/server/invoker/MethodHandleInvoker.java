@@ -0,0 +1,44 @@
+package ru.skornei.restserver.server.invoker;
+
+import android.annotation.TargetApi;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * Вызов через заранее подготовленный {@link MethodHandle}
+ * с сигнатурой (Object, Object[])Object
+ */
+@TargetApi(26)
+public class MethodHandleInvoker implements BaseInvoker {
+
+    private static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, Object.class, Object[].class);
+
+    private final MethodHandle handle;
+
+    public MethodHandleInvoker(Method method) throws IllegalAccessException {
+        method.setAccessible(true);
+
+        MethodHandle handle = MethodHandles.lookup().unreflect(method);
+        if (Modifier.isStatic(method.getModifiers()))
+            handle = MethodHandles.dropArguments(handle, 0, Object.class);
+
+        this.handle = handle
+                .asSpreader(Object[].class, method.getParameterTypes().length)
+                .asType(INVOKER_TYPE);
+    }
+
+    @Override
+    public Object invoke(Object object, Object[] args) throws InvocationTargetException, IllegalAccessException {
+        try {
+            return (Object) handle.invokeExact(object, args);
+        } catch (Throwable throwable) {
+            //Same contract as Method.invoke
+            throw new InvocationTargetException(throwable);
+        }
+    }
+}
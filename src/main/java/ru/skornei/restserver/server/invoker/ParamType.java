@@ -0,0 +1,59 @@
+package ru.skornei.restserver.server.invoker;
+
+import android.content.Context;
+
+import java.io.InputStream;
+import java.nio.channels.ReadableByteChannel;
+
+import ru.skornei.restserver.server.protocol.AsyncResponse;
+import ru.skornei.restserver.server.protocol.RequestInfo;
+import ru.skornei.restserver.server.protocol.ResponseInfo;
+import ru.skornei.restserver.server.sse.EventSubscriber;
+import ru.skornei.restserver.server.websocket.WebSocketConnection;
+
+/**
+ * Источник значения для параметра обработчика.
+ * Определяется один раз по типу параметра
+ */
+public enum ParamType {
+
+    CONTEXT,
+    REQUEST_INFO,
+    RESPONSE_INFO,
+    THROWABLE,
+    BODY_STREAM,
+    BODY_CHANNEL,
+    PRINCIPAL,
+    ASYNC_RESPONSE,
+    EVENT_SUBSCRIBER,
+    WEB_SOCKET,
+    BODY;
+
+    /**
+     * Определить источник по типу параметра
+     * @param cls тип параметра
+     * @return источник
+     */
+    public static ParamType of(Class<?> cls) {
+        if (Context.class.isAssignableFrom(cls))
+            return CONTEXT;
+        else if (RequestInfo.class.equals(cls))
+            return REQUEST_INFO;
+        else if (ResponseInfo.class.equals(cls))
+            return RESPONSE_INFO;
+        else if (Throwable.class.isAssignableFrom(cls))
+            return THROWABLE;
+        else if (InputStream.class.equals(cls))
+            return BODY_STREAM;
+        else if (ReadableByteChannel.class.equals(cls))
+            return BODY_CHANNEL;
+        else if (AsyncResponse.class.equals(cls))
+            return ASYNC_RESPONSE;
+        else if (EventSubscriber.class.equals(cls))
+            return EVENT_SUBSCRIBER;
+        else if (WebSocketConnection.class.equals(cls))
+            return WEB_SOCKET;
+
+        return BODY;
+    }
+}
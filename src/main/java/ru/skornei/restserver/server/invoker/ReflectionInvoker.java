@@ -0,0 +1,28 @@
+package ru.skornei.restserver.server.invoker;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Вызов через {@link Method#invoke}, доступен на всех версиях Android
+ */
+public class ReflectionInvoker implements BaseInvoker {
+
+    private final Method method;
+
+    public ReflectionInvoker(Method method) {
+        this.method = method;
+
+        //Skip the access check on every call
+        try {
+            method.setAccessible(true);
+        } catch (SecurityException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public Object invoke(Object object, Object[] args) throws InvocationTargetException, IllegalAccessException {
+        return method.invoke(object, args);
+    }
+}
@@ -0,0 +1,137 @@
+package ru.skornei.restserver.server.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+
+import fi.iki.elonen.NanoHTTPD;
+import ru.skornei.restserver.server.compression.Compressor;
+import ru.skornei.restserver.server.dictionary.ContentEncoding;
+import ru.skornei.restserver.utils.DateUtils;
+
+/**
+ * Ответ, который сам пишет заголовки и тело в соединение
+ */
+public abstract class BaseResponse extends NanoHTTPD.Response {
+
+    private final Map<String, String> headers = new LinkedHashMap<>();
+
+    private boolean keepAlive = true;
+
+    private ContentEncoding contentEncoding;
+
+    private Compressor compressor;
+
+    protected BaseResponse(IStatus status, String mimeType, InputStream data, long totalBytes) {
+        super(status, mimeType, data, totalBytes);
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        super.addHeader(name, value);
+        headers.put(name, value);
+    }
+
+    @Override
+    public void setKeepAlive(boolean useKeepAlive) {
+        super.setKeepAlive(useKeepAlive);
+        this.keepAlive = useKeepAlive;
+    }
+
+    /**
+     * Сжимать тело при отправке
+     * @param contentEncoding сжатие
+     * @param compressor сжатие и его статистика
+     */
+    public void setContentEncoding(ContentEncoding contentEncoding, Compressor compressor) {
+        this.contentEncoding = contentEncoding;
+        this.compressor = compressor;
+    }
+
+    protected ContentEncoding getContentEncoding() {
+        return contentEncoding;
+    }
+
+    /**
+     * Поток, сжимающий тело
+     * @param outputStream поток тела
+     * @return поток, после записи нужно вызвать finish()
+     */
+    protected DeflaterOutputStream encode(OutputStream outputStream) throws IOException {
+        return compressor.wrap(outputStream, contentEncoding);
+    }
+
+    protected boolean isHead() {
+        return getRequestMethod() == NanoHTTPD.Method.HEAD;
+    }
+
+    @Override
+    protected void send(OutputStream outputStream) {
+        try {
+            StringBuilder header = new StringBuilder();
+            header.append("HTTP/1.1 ").append(getStatus().getDescription()).append(" \r\n");
+            if (getMimeType() != null)
+                appendHeader(header, "Content-Type", getMimeType());
+            if (getHeader("date") == null)
+                appendHeader(header, "Date", DateUtils.formatHttpDate(System.currentTimeMillis()));
+            for (Map.Entry<String, String> entry : headers.entrySet()) {
+                if (!"connection".equalsIgnoreCase(entry.getKey()))
+                    appendHeader(header, entry.getKey(), entry.getValue());
+            }
+            if (getHeader("connection") == null)
+                appendHeader(header, "Connection", keepAlive ? "keep-alive" : "close");
+            else
+                appendHeader(header, "Connection", getHeader("connection"));
+            appendBodyHeaders(header);
+            header.append("\r\n");
+
+            outputStream.write(header.toString().getBytes("UTF-8"));
+
+            if (!isHead())
+                sendBody(outputStream);
+
+            outputStream.flush();
+        } catch (IOException e) {
+            //The client went away, nothing to report
+            close(outputStream);
+        } catch (RuntimeException e) {
+            //The body is cut in the middle, the connection can not be reused
+            e.printStackTrace();
+            close(outputStream);
+        }
+    }
+
+    private static void close(OutputStream outputStream) {
+        try {
+            outputStream.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * Заголовки, описывающие тело: длина, кодирование
+     * @param header заголовки
+     */
+    protected abstract void appendBodyHeaders(StringBuilder header);
+
+    /**
+     * Записать тело
+     * @param outputStream соединение
+     */
+    protected abstract void sendBody(OutputStream outputStream) throws IOException;
+
+    /**
+     * Записать тело без кодирования передачи, например в ответ пакетного запроса
+     * @param outputStream поток
+     */
+    public void writeBody(OutputStream outputStream) throws IOException {
+        sendBody(outputStream);
+    }
+
+    protected static void appendHeader(StringBuilder header, String name, String value) {
+        header.append(name).append(": ").append(value).append("\r\n");
+    }
+}
@@ -0,0 +1,85 @@
+package ru.skornei.restserver.server.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Тело запроса, которое читается прямо из сокета.
+ * Закрытие не закрывает соединение
+ */
+public abstract class BodyInputStream extends InputStream {
+
+    /**
+     * Размер буфера для пропуска непрочитанных данных
+     */
+    private static final int SKIP_BUFFER_SIZE = 4096;
+
+    /**
+     * Сокет клиента
+     */
+    protected final InputStream in;
+
+    protected BodyInputStream(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Тело прочитано до конца
+     * @return да или нет
+     */
+    public abstract boolean isFinished();
+
+    /**
+     * Пропустить непрочитанный остаток тела, чтобы соединение
+     * можно было использовать для следующего запроса
+     * @param limit сколько байт можно пропустить
+     * @return true если тело дочитано до конца
+     */
+    public boolean drain(long limit) {
+        try {
+            byte[] buffer = new byte[SKIP_BUFFER_SIZE];
+            long skipped = 0;
+            while (!isFinished() && skipped <= limit) {
+                int read = read(buffer, 0, buffer.length);
+                if (read < 0)
+                    break;
+                skipped += read;
+            }
+        } catch (IOException e) {
+            return false;
+        }
+
+        return isFinished();
+    }
+
+    /**
+     * Прочитать тело целиком
+     * @param limit максимальный размер
+     * @return тело или null, если оно больше limit
+     */
+    public byte[] readFully(int limit) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[SKIP_BUFFER_SIZE];
+        int read;
+        while ((read = read(buffer, 0, buffer.length)) >= 0) {
+            if (outputStream.size() + read > limit)
+                return null;
+            outputStream.write(buffer, 0, read);
+        }
+
+        return outputStream.toByteArray();
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] buffer = new byte[1];
+        int read = read(buffer, 0, 1);
+        return read < 0 ? -1 : buffer[0] & 0xff;
+    }
+
+    @Override
+    public void close() {
+        //The connection belongs to the server
+    }
+}
@@ -0,0 +1,102 @@
+package ru.skornei.restserver.server.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Тело запроса с Transfer-Encoding: chunked
+ */
+public class ChunkedInputStream extends BodyInputStream {
+
+    /**
+     * Максимальная длина служебной строки
+     */
+    private static final int MAX_LINE_LENGTH = 4096;
+
+    /**
+     * Сколько осталось в текущем блоке
+     */
+    private long chunkRemaining;
+
+    /**
+     * Получен последний блок
+     */
+    private boolean finished;
+
+    public ChunkedInputStream(InputStream in) {
+        super(in);
+    }
+
+    @Override
+    public boolean isFinished() {
+        return finished;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (finished)
+            return -1;
+
+        if (chunkRemaining == 0) {
+            chunkRemaining = readChunkSize();
+            if (chunkRemaining == 0) {
+                readTrailers();
+                finished = true;
+                return -1;
+            }
+        }
+
+        int read = in.read(buffer, offset, (int) Math.min(length, chunkRemaining));
+        if (read < 0)
+            throw new EOFException("Connection closed inside a chunk");
+
+        chunkRemaining -= read;
+        if (chunkRemaining == 0)
+            readLine();
+
+        return read;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (int) Math.min(in.available(), chunkRemaining);
+    }
+
+    private long readChunkSize() throws IOException {
+        String line = readLine();
+        int extension = line.indexOf(';');
+        if (extension >= 0)
+            line = line.substring(0, extension);
+
+        try {
+            long size = Long.parseLong(line.trim(), 16);
+            if (size < 0)
+                throw new NumberFormatException();
+            return size;
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid chunk size: " + line);
+        }
+    }
+
+    private void readTrailers() throws IOException {
+        while (readLine().length() > 0) {
+            //Trailers are not used
+        }
+    }
+
+    private String readLine() throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b < 0)
+                throw new EOFException("Connection closed inside chunk header");
+            if (b != '\r')
+                line.append((char) b);
+            if (line.length() > MAX_LINE_LENGTH)
+                throw new IOException("Chunk header is too long");
+        }
+
+        return line.toString();
+    }
+}
@@ -0,0 +1,64 @@
+package ru.skornei.restserver.server.io;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Запись тела с Transfer-Encoding: chunked
+ */
+public class ChunkedOutputStream extends FilterOutputStream {
+
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    private static final byte[] LAST_CHUNK = {'0', '\r', '\n', '\r', '\n'};
+
+    /**
+     * Последний блок уже записан
+     */
+    private boolean finished;
+
+    public ChunkedOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0)
+            return;
+        if (finished)
+            throw new IOException("Chunked body is already finished");
+
+        out.write(Integer.toHexString(length).getBytes("US-ASCII"));
+        out.write(CRLF);
+        out.write(buffer, offset, length);
+        out.write(CRLF);
+    }
+
+    /**
+     * Записать последний блок, соединение остается открытым.
+     * Повторный вызов ничего не делает
+     */
+    public void finish() throws IOException {
+        if (finished)
+            return;
+
+        finished = true;
+        out.write(LAST_CHUNK);
+        out.flush();
+    }
+
+    /**
+     * Завершить тело, если обработчик закрыл поток сам.
+     * Соединение не закрывается
+     */
+    @Override
+    public void close() throws IOException {
+        finish();
+    }
+}
@@ -0,0 +1,55 @@
+package ru.skornei.restserver.server.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+
+/**
+ * Поток из последовательности блоков байт.
+ * Следующий блок запрашивается только когда прочитан предыдущий
+ */
+public class ChunksInputStream extends InputStream {
+
+    private final Iterator<byte[]> chunks;
+
+    private byte[] chunk;
+    private int position;
+
+    public ChunksInputStream(Iterator<byte[]> chunks) {
+        this.chunks = chunks;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!nextChunk())
+            return -1;
+
+        return chunk[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0)
+            return 0;
+
+        if (!nextChunk())
+            return -1;
+
+        int read = Math.min(length, chunk.length - position);
+        System.arraycopy(chunk, position, buffer, offset, read);
+        position += read;
+        return read;
+    }
+
+    private boolean nextChunk() {
+        while (chunk == null || position >= chunk.length) {
+            if (!chunks.hasNext())
+                return false;
+
+            chunk = chunks.next();
+            position = 0;
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,21 @@
+package ru.skornei.restserver.server.io;
+
+import java.io.OutputStream;
+
+/**
+ * Ответ без тела, например 304
+ */
+public class EmptyResponse extends BaseResponse {
+
+    public EmptyResponse(IStatus status, String mimeType) {
+        super(status, mimeType, null, 0);
+    }
+
+    @Override
+    protected void appendBodyHeaders(StringBuilder header) {
+    }
+
+    @Override
+    protected void sendBody(OutputStream outputStream) {
+    }
+}
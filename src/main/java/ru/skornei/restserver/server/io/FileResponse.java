@@ -0,0 +1,195 @@
+package ru.skornei.restserver.server.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Map;
+
+import fi.iki.elonen.NanoHTTPD;
+import ru.skornei.restserver.server.dictionary.HeaderType;
+import ru.skornei.restserver.server.dictionary.ResponseStatus;
+import ru.skornei.restserver.utils.DateUtils;
+import ru.skornei.restserver.utils.ETagUtils;
+
+/**
+ * Отправка файла из FileChannel без загрузки в память.
+ * Поддерживает Range, ETag, Last-Modified и условные запросы
+ */
+public class FileResponse extends BaseResponse {
+
+    private final File file;
+
+    /**
+     * Начало отправляемой части
+     */
+    private final long offset;
+
+    /**
+     * Размер отправляемой части, -1 если тела нет
+     */
+    private final long length;
+
+    private FileResponse(IStatus status, String mimeType, File file, long offset, long length) {
+        super(status, mimeType, null, 0);
+        this.file = file;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * Создать ответ с учетом заголовков запроса
+     * @param file файл
+     * @param mimeType тип
+     * @param requestHeaders заголовки запроса
+     * @return ответ 200, 206, 304 или 416
+     */
+    public static NanoHTTPD.Response create(File file, String mimeType, Map<String, String> requestHeaders) {
+        if (!file.isFile() || !file.canRead())
+            return NanoHTTPD.newFixedLengthResponse(ResponseStatus.NOT_FOUND,
+                    NanoHTTPD.MIME_PLAINTEXT,
+                    ResponseStatus.NOT_FOUND.getDescription());
+
+        long fileLength = file.length();
+        long lastModified = file.lastModified();
+        String etag = createETag(fileLength, lastModified);
+
+        FileResponse response;
+        if (ETagUtils.isNotModified(requestHeaders, etag, lastModified)) {
+            //Answer 304
+            response = new FileResponse(ResponseStatus.NOT_MODIFIED, mimeType, file, 0, -1);
+        } else {
+            long[] range = null;
+            String rangeHeader = requestHeaders.get(HeaderType.RANGE);
+            if (rangeHeader != null && isRangeValid(requestHeaders, etag, lastModified))
+                range = parseRange(rangeHeader, fileLength);
+
+            if (range == null) {
+                response = new FileResponse(ResponseStatus.OK, mimeType, file, 0, fileLength);
+            } else if (range.length == 0) {
+                //Answer 416
+                response = new FileResponse(ResponseStatus.REQUESTED_RANGE_NOT_SATISFIABLE, mimeType, file, 0, 0);
+                response.addHeader("Content-Range", "bytes */" + fileLength);
+            } else {
+                //Answer 206
+                response = new FileResponse(ResponseStatus.PARTIAL_CONTENT, mimeType, file, range[0], range[1] - range[0] + 1);
+                response.addHeader("Content-Range", "bytes " + range[0] + "-" + range[1] + "/" + fileLength);
+            }
+        }
+
+        response.addHeader("ETag", etag);
+        response.addHeader("Last-Modified", DateUtils.formatHttpDate(lastModified));
+        response.addHeader("Accept-Ranges", "bytes");
+        return response;
+    }
+
+    @Override
+    public void setGzipEncoding(boolean encodeAsGzip) {
+        //Ranges are byte offsets in the file, the body is never compressed
+        super.setGzipEncoding(false);
+    }
+
+    @Override
+    protected void appendBodyHeaders(StringBuilder header) {
+        if (length >= 0)
+            appendHeader(header, "Content-Length", String.valueOf(length));
+    }
+
+    @Override
+    protected void sendBody(OutputStream outputStream) throws IOException {
+        if (length <= 0)
+            return;
+
+        FileInputStream inputStream = new FileInputStream(file);
+        try {
+            FileChannel channel = inputStream.getChannel();
+            WritableByteChannel target = Channels.newChannel(outputStream);
+
+            long position = offset;
+            long remaining = length;
+            while (remaining > 0) {
+                long sent = channel.transferTo(position, remaining, target);
+                if (sent <= 0)
+                    throw new IOException("File " + file + " was truncated while sending");
+                position += sent;
+                remaining -= sent;
+            }
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * ETag по размеру и времени изменения, без чтения файла
+     */
+    private static String createETag(long length, long lastModified) {
+        return "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+    }
+
+    /**
+     * If-Range: часть отдается только если файл не изменился
+     */
+    private static boolean isRangeValid(Map<String, String> requestHeaders, String etag, long lastModified) {
+        String ifRange = requestHeaders.get(HeaderType.IF_RANGE);
+        if (ifRange == null)
+            return true;
+
+        if (ifRange.trim().startsWith("\"") || ifRange.trim().startsWith("W/"))
+            return etag.equals(ifRange.trim());
+
+        long date = DateUtils.parseHttpDate(ifRange);
+        return date >= 0 && lastModified / 1000 == date / 1000;
+    }
+
+    /**
+     * Разобрать Range: bytes=a-b, bytes=a-, bytes=-n
+     * @return {начало, конец}, пустой массив если диапазон недостижим,
+     * null если заголовок не поддерживается и нужно отдать файл целиком
+     */
+    static long[] parseRange(String header, long fileLength) {
+        header = header.trim();
+        if (!header.startsWith("bytes="))
+            return null;
+
+        String spec = header.substring("bytes=".length()).trim();
+
+        //Several ranges are allowed to be answered with the whole file
+        if (spec.indexOf(',') >= 0)
+            return null;
+
+        int dash = spec.indexOf('-');
+        if (dash < 0)
+            return null;
+
+        try {
+            String startValue = spec.substring(0, dash).trim();
+            String endValue = spec.substring(dash + 1).trim();
+
+            long start;
+            long end;
+            if (startValue.isEmpty()) {
+                //Suffix: the last n bytes
+                long suffix = Long.parseLong(endValue);
+                if (suffix <= 0)
+                    return new long[0];
+                start = Math.max(0, fileLength - suffix);
+                end = fileLength - 1;
+            } else {
+                start = Long.parseLong(startValue);
+                end = endValue.isEmpty() ? fileLength - 1 : Math.min(Long.parseLong(endValue), fileLength - 1);
+                if (end < start)
+                    return start >= fileLength ? new long[0] : null;
+            }
+
+            if (start >= fileLength)
+                return new long[0];
+
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
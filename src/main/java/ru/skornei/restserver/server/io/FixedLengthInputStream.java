@@ -0,0 +1,66 @@
+package ru.skornei.restserver.server.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Тело запроса с известным Content-Length
+ */
+public class FixedLengthInputStream extends BodyInputStream {
+
+    /**
+     * Сколько осталось прочитать
+     */
+    private long remaining;
+
+    public FixedLengthInputStream(InputStream in, long length) {
+        super(in);
+        this.remaining = length;
+    }
+
+    public long getRemaining() {
+        return remaining;
+    }
+
+    @Override
+    public boolean isFinished() {
+        return remaining <= 0;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (remaining <= 0)
+            return -1;
+
+        int read = in.read(buffer, offset, (int) Math.min(length, remaining));
+        if (read < 0)
+            throw new EOFException("Connection closed, " + remaining + " bytes of body not received");
+
+        remaining -= read;
+        return read;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (int) Math.min(in.available(), remaining);
+    }
+
+    @Override
+    public byte[] readFully(int limit) throws IOException {
+        if (remaining > limit)
+            return null;
+
+        //Exact size is known, read without an intermediate buffer
+        byte[] body = new byte[(int) remaining];
+        int offset = 0;
+        while (offset < body.length) {
+            int read = read(body, offset, body.length - offset);
+            if (read < 0)
+                break;
+            offset += read;
+        }
+
+        return body;
+    }
+}
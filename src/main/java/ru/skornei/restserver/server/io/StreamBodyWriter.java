@@ -0,0 +1,33 @@
+package ru.skornei.restserver.server.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import ru.skornei.restserver.server.protocol.BodyWriter;
+
+/**
+ * Копирование тела из потока, поток закрывается после записи
+ */
+public class StreamBodyWriter implements BodyWriter {
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final InputStream inputStream;
+
+    public StreamBodyWriter(InputStream inputStream) {
+        this.inputStream = inputStream;
+    }
+
+    @Override
+    public void write(OutputStream outputStream) throws IOException {
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1)
+                outputStream.write(buffer, 0, read);
+        } finally {
+            inputStream.close();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package ru.skornei.restserver.server.io;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.DeflaterOutputStream;
+
+import ru.skornei.restserver.server.protocol.BodyWriter;
+
+/**
+ * Ответ, тело которого пишет обработчик прямо в соединение
+ * блоками Transfer-Encoding: chunked
+ */
+public class WriterResponse extends BaseResponse {
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final BodyWriter writer;
+
+    public WriterResponse(IStatus status, String mimeType, BodyWriter writer) {
+        super(status, mimeType, null, -1);
+        this.writer = writer;
+    }
+
+    @Override
+    protected void appendBodyHeaders(StringBuilder header) {
+        if (getContentEncoding() != null)
+            appendHeader(header, "Content-Encoding", getContentEncoding().getName());
+        if (!isHead())
+            appendHeader(header, "Transfer-Encoding", "chunked");
+    }
+
+    @Override
+    protected void sendBody(OutputStream outputStream) throws IOException {
+        ChunkedOutputStream chunkedOutputStream = new ChunkedOutputStream(outputStream);
+        OutputStream bodyOutputStream = new BufferedOutputStream(chunkedOutputStream, BUFFER_SIZE);
+        if (getContentEncoding() != null)
+            writeEncoded(bodyOutputStream);
+        else
+            writer.write(bodyOutputStream);
+        bodyOutputStream.flush();
+        chunkedOutputStream.finish();
+    }
+
+    @Override
+    public void writeBody(OutputStream outputStream) throws IOException {
+        if (getContentEncoding() != null)
+            writeEncoded(outputStream);
+        else
+            writer.write(outputStream);
+    }
+
+    /**
+     * Записать тело обработчика со сжатием
+     * @param outputStream поток
+     */
+    private void writeEncoded(OutputStream outputStream) throws IOException {
+        DeflaterOutputStream encodedOutputStream = encode(outputStream);
+        try {
+            writer.write(encodedOutputStream);
+        } catch (IOException | RuntimeException e) {
+            //The deflater is freed in finish, the body is broken anyway
+            try {
+                encodedOutputStream.finish();
+            } catch (IOException ignored) {
+            }
+            throw e;
+        }
+        encodedOutputStream.finish();
+    }
+}
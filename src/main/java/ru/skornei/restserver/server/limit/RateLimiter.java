@@ -0,0 +1,227 @@
+package ru.skornei.restserver.server.limit;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ru.skornei.restserver.annotations.RateLimit;
+import ru.skornei.restserver.server.dictionary.RateLimitKey;
+import ru.skornei.restserver.server.protocol.RequestInfo;
+
+/**
+ * Ограничение скорости и количества одновременных запросов по ключу.
+ * Счетчики каждого клиента атомарные, блокировок нет
+ */
+public class RateLimiter {
+
+    /**
+     * Ключ для RateLimitKey.ROUTE
+     */
+    private static final String ROUTE = "";
+
+    /**
+     * Когда повторить запрос, отклоненный по количеству одновременных
+     */
+    private static final long CONCURRENCY_RETRY = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * Счетчики одного клиента
+     */
+    public static class Client {
+
+        private final RateLimiter limiter;
+
+        /**
+         * Время, когда освободится следующий запрос (GCRA).
+         * Пока оно не дальше burst интервалов от текущего, запрос проходит
+         */
+        private final AtomicLong nextNanos;
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        Client(RateLimiter limiter, long now) {
+            this.limiter = limiter;
+            this.nextNanos = new AtomicLong(now);
+        }
+
+        /**
+         * Занять место для запроса
+         * @return 0, если запрос можно выполнять, иначе через сколько наносекунд повторить
+         */
+        public long tryAcquire() {
+            if (limiter.concurrency > 0 && inFlight.incrementAndGet() > limiter.concurrency) {
+                inFlight.decrementAndGet();
+                limiter.rejected.incrementAndGet();
+                return CONCURRENCY_RETRY;
+            }
+
+            if (limiter.intervalNanos > 0) {
+                while (true) {
+                    long now = System.nanoTime();
+                    long next = nextNanos.get();
+                    long updated = Math.max(next, now) + limiter.intervalNanos;
+                    long wait = updated - now - limiter.burstNanos;
+                    if (wait > 0) {
+                        if (limiter.concurrency > 0)
+                            inFlight.decrementAndGet();
+                        limiter.rejected.incrementAndGet();
+                        return wait;
+                    }
+                    if (nextNanos.compareAndSet(next, updated))
+                        break;
+                }
+            }
+
+            return 0;
+        }
+
+        /**
+         * Освободить место после запроса, пропустившего tryAcquire
+         */
+        public void release() {
+            if (limiter.concurrency > 0)
+                inFlight.decrementAndGet();
+        }
+
+        /**
+         * Клиента можно забыть без потери состояния
+         */
+        private boolean isIdle(long now) {
+            return inFlight.get() <= 0 && nextNanos.get() - now <= 0;
+        }
+    }
+
+    private final RateLimitKey key;
+
+    /**
+     * Интервал между запросами при средней скорости, 0 - без ограничения
+     */
+    private final long intervalNanos;
+
+    /**
+     * Допустимое опережение графика
+     */
+    private final long burstNanos;
+
+    private final int concurrency;
+
+    private final int maxClients;
+
+    private final ConcurrentHashMap<String, Client> clients = new ConcurrentHashMap<>();
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    public RateLimiter(RateLimit rateLimit) {
+        this.key = rateLimit.key();
+        this.intervalNanos = rateLimit.rate() > 0 ?
+                Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / rateLimit.rate())) :
+                0;
+        int burst = rateLimit.burst() > 0 ?
+                rateLimit.burst() :
+                (int) Math.max(1, Math.ceil(rateLimit.rate()));
+        this.burstNanos = intervalNanos * burst;
+        this.concurrency = Math.max(0, rateLimit.concurrency());
+        this.maxClients = Math.max(1, rateLimit.maxClients());
+    }
+
+    /**
+     * Создать ограничение
+     * @param rateLimit аннотация или null
+     * @return ограничение или null, если ничего не ограничено
+     */
+    public static RateLimiter create(RateLimit rateLimit) {
+        if (rateLimit == null || (rateLimit.rate() <= 0 && rateLimit.concurrency() <= 0))
+            return null;
+
+        return new RateLimiter(rateLimit);
+    }
+
+    /**
+     * Счетчики клиента, отправившего запрос
+     * @param requestInfo запрос
+     * @return счетчики
+     */
+    public Client client(RequestInfo requestInfo) {
+        return client(requestInfo, null);
+    }
+
+    /**
+     * Счетчики клиента, отправившего запрос
+     * @param requestInfo запрос
+     * @param principal проверенные учетные данные для RateLimitKey.PRINCIPAL,
+     *                  null - запрос считается по IP адресу
+     * @return счетчики
+     */
+    public Client client(RequestInfo requestInfo, String principal) {
+        String name = key(requestInfo, principal);
+        Client client = clients.get(name);
+        if (client != null)
+            return client;
+
+        long now = System.nanoTime();
+        if (clients.size() >= maxClients)
+            evict(now);
+
+        client = new Client(this, now);
+        Client existing = clients.putIfAbsent(name, client);
+        return existing != null ? existing : client;
+    }
+
+    /**
+     * Количество отклоненных запросов
+     * @return количество
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * Количество запомненных клиентов
+     * @return количество
+     */
+    public int getClients() {
+        return clients.size();
+    }
+
+    /**
+     * Освободить место: неактивные клиенты, затем любые до трех четвертей размера
+     */
+    private void evict(long now) {
+        Iterator<Client> iterator = clients.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().isIdle(now))
+                iterator.remove();
+        }
+
+        iterator = clients.values().iterator();
+        while (clients.size() > maxClients * 3 / 4 && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * По чему считаются запросы
+     * @return ключ
+     */
+    public RateLimitKey getKey() {
+        return key;
+    }
+
+    private String key(RequestInfo requestInfo, String principal) {
+        switch (key) {
+            case PRINCIPAL:
+                //Unverified headers are not trusted, every new value would get a fresh counter
+                if (principal != null)
+                    return principal;
+                break;
+            case ROUTE:
+                return ROUTE;
+        }
+
+        String address = requestInfo.getRemoteIpAddress();
+        return address != null ? address : ROUTE;
+    }
+}
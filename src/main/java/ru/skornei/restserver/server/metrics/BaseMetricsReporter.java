@@ -0,0 +1,13 @@
+package ru.skornei.restserver.server.metrics;
+
+/**
+ * Периодическая отправка статистики, например в лог или во внешнюю систему
+ */
+public interface BaseMetricsReporter {
+
+    /**
+     * Отправить статистику
+     * @param registry статистика сервера
+     */
+    void report(MetricsRegistry registry);
+}
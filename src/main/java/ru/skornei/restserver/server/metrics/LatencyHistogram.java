@@ -0,0 +1,102 @@
+package ru.skornei.restserver.server.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Гистограмма задержек с логарифмическими корзинами, как в HdrHistogram.
+ * Значения хранятся в микросекундах с точностью 1/8 порядка,
+ * запись не создает объектов
+ */
+public class LatencyHistogram {
+
+    /**
+     * Бит точности внутри порядка
+     */
+    private static final int SUB_BITS = 3;
+
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+
+    /**
+     * Корзин до 2^32 микросекунд, больше попадает в последнюю
+     */
+    static final int BUCKETS = (32 - SUB_BITS) * SUB_COUNT + SUB_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    private final AtomicLong count = new AtomicLong();
+
+    private final AtomicLong sumNanos = new AtomicLong();
+
+    /**
+     * Записать значение
+     * @param nanos наносекунды
+     */
+    public void record(long nanos) {
+        if (nanos < 0)
+            nanos = 0;
+
+        counts.incrementAndGet(index(nanos / 1000));
+        count.incrementAndGet();
+        sumNanos.addAndGet(nanos);
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Сумма значений
+     * @return наносекунды
+     */
+    public long getSumNanos() {
+        return sumNanos.get();
+    }
+
+    /**
+     * Значение перцентиля, верхняя граница корзины
+     * @param percentile от 0 до 100
+     * @return микросекунды
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = count.get();
+        if (total == 0)
+            return 0;
+
+        long target = Math.max(1, (long) Math.ceil(total * percentile / 100d));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= target)
+                return highestValue(i);
+        }
+
+        return highestValue(BUCKETS - 1);
+    }
+
+    /**
+     * Номер корзины
+     * @param micros значение в микросекундах
+     */
+    static int index(long micros) {
+        if (micros < SUB_COUNT)
+            return (int) micros;
+
+        int shift = 63 - Long.numberOfLeadingZeros(micros) - SUB_BITS;
+        int index = (shift + 1) * SUB_COUNT + (int) ((micros >>> shift) & (SUB_COUNT - 1));
+        return Math.min(index, BUCKETS - 1);
+    }
+
+    /**
+     * Наибольшее значение в корзине
+     * @param index номер корзины
+     */
+    static long highestValue(int index) {
+        if (index < SUB_COUNT)
+            return index;
+
+        int shift = index / SUB_COUNT - 1;
+        long lowest = (long) (SUB_COUNT + index % SUB_COUNT) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,45 @@
+package ru.skornei.restserver.server.metrics;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Статистика всех обработчиков сервера
+ */
+public class MetricsRegistry {
+
+    /**
+     * Статистика запросов, для которых не нашлось обработчика
+     */
+    private final RouteMetrics unmatched = new RouteMetrics("", "");
+
+    private final List<RouteMetrics> routes = new CopyOnWriteArrayList<>();
+
+    /**
+     * Создать статистику обработчика
+     * @param route шаблон адреса
+     * @param method http метод
+     * @return статистика
+     */
+    public RouteMetrics register(String route, String method) {
+        RouteMetrics metrics = new RouteMetrics(route, method);
+        routes.add(metrics);
+        return metrics;
+    }
+
+    /**
+     * Убрать статистику обработчика
+     * @param metrics статистика
+     */
+    public void unregister(RouteMetrics metrics) {
+        routes.remove(metrics);
+    }
+
+    public RouteMetrics getUnmatched() {
+        return unmatched;
+    }
+
+    public List<RouteMetrics> getRoutes() {
+        return routes;
+    }
+}
@@ -0,0 +1,51 @@
+package ru.skornei.restserver.server.metrics;
+
+/**
+ * Этапы обработки запроса
+ */
+public enum Phase {
+
+    /**
+     * Чтение тела запроса в память
+     */
+    BODY_READ("body_read"),
+
+    /**
+     * Проверка аутентификации
+     */
+    AUTH("auth"),
+
+    /**
+     * Разбор тела конвертером
+     */
+    DESERIALIZE("deserialize"),
+
+    /**
+     * Вызов обработчика
+     */
+    INVOKE("invoke"),
+
+    /**
+     * Преобразование результата конвертером
+     */
+    SERIALIZE("serialize"),
+
+    /**
+     * Весь запрос до начала отправки ответа
+     */
+    TOTAL("total");
+
+    private final String name;
+
+    Phase(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Название для отчетов
+     * @return название
+     */
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,107 @@
+package ru.skornei.restserver.server.metrics;
+
+import java.util.List;
+
+/**
+ * Статистика в текстовом формате Prometheus 0.0.4
+ */
+public class PrometheusFormatter {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private PrometheusFormatter() {
+        throw new RuntimeException();
+    }
+
+    /**
+     * Сформировать отчет
+     * @param registry статистика
+     * @return текст
+     */
+    public static String format(MetricsRegistry registry) {
+        List<RouteMetrics> routes = registry.getRoutes();
+        StringBuilder out = new StringBuilder(4096);
+
+        out.append("# HELP restserver_requests_total Requests by route, method and status class\n");
+        out.append("# TYPE restserver_requests_total counter\n");
+        for (RouteMetrics route : routes)
+            appendStatuses(out, route);
+        appendStatuses(out, registry.getUnmatched());
+
+        out.append("# HELP restserver_request_body_bytes_total Request body bytes\n");
+        out.append("# TYPE restserver_request_body_bytes_total counter\n");
+        for (RouteMetrics route : routes) {
+            appendName(out, "restserver_request_body_bytes_total", route);
+            out.append("} ").append(route.getRequestBytes()).append('\n');
+        }
+
+        out.append("# HELP restserver_response_body_bytes_total Response body bytes held in memory\n");
+        out.append("# TYPE restserver_response_body_bytes_total counter\n");
+        for (RouteMetrics route : routes) {
+            appendName(out, "restserver_response_body_bytes_total", route);
+            out.append("} ").append(route.getResponseBytes()).append('\n');
+        }
+
+        out.append("# HELP restserver_request_duration_seconds Time spent in each phase of a request\n");
+        out.append("# TYPE restserver_request_duration_seconds summary\n");
+        for (RouteMetrics route : routes) {
+            for (Phase phase : Phase.values()) {
+                LatencyHistogram histogram = route.getHistogram(phase);
+                if (histogram.getCount() == 0)
+                    continue;
+
+                for (double quantile : QUANTILES) {
+                    appendName(out, "restserver_request_duration_seconds", route);
+                    out.append(",phase=\"").append(phase.getName())
+                            .append("\",quantile=\"").append(quantile).append("\"} ")
+                            .append(histogram.getValueAtPercentile(quantile * 100) / 1e6).append('\n');
+                }
+                appendName(out, "restserver_request_duration_seconds_sum", route);
+                out.append(",phase=\"").append(phase.getName()).append("\"} ")
+                        .append(histogram.getSumNanos() / 1e9).append('\n');
+                appendName(out, "restserver_request_duration_seconds_count", route);
+                out.append(",phase=\"").append(phase.getName()).append("\"} ")
+                        .append(histogram.getCount()).append('\n');
+            }
+        }
+
+        return out.toString();
+    }
+
+    /**
+     * Значение сервера без меток
+     * @param name название
+     * @param type gauge или counter
+     * @param help описание
+     * @param value значение
+     * @return текст
+     */
+    public static String format(String name, String type, String help, double value) {
+        return "# HELP " + name + " " + help + "\n" +
+                "# TYPE " + name + " " + type + "\n" +
+                name + " " + value + "\n";
+    }
+
+    private static void appendStatuses(StringBuilder out, RouteMetrics route) {
+        for (int statusClass = 1; statusClass <= 5; statusClass++) {
+            long count = route.getStatusCount(statusClass);
+            if (count == 0)
+                continue;
+
+            appendName(out, "restserver_requests_total", route);
+            out.append(",status=\"").append(statusClass).append("xx\"} ").append(count).append('\n');
+        }
+    }
+
+    private static void appendName(StringBuilder out, String name, RouteMetrics route) {
+        out.append(name)
+                .append("{route=\"").append(escape(route.getRoute()))
+                .append("\",method=\"").append(route.getMethod()).append('"');
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,85 @@
+package ru.skornei.restserver.server.metrics;
+
+/**
+ * Замер этапов текущего запроса. Один объект на поток,
+ * поэтому замер не создает объектов
+ */
+public class RequestTimer {
+
+    private static final ThreadLocal<RequestTimer> TIMERS = new ThreadLocal<RequestTimer>() {
+        @Override
+        protected RequestTimer initialValue() {
+            return new RequestTimer();
+        }
+    };
+
+    /**
+     * Обработчик запроса, null пока не найден
+     */
+    private RouteMetrics route;
+
+    /**
+     * Начало запроса
+     */
+    private long start;
+
+    /**
+     * Конец предыдущего этапа
+     */
+    private long last;
+
+    private RequestTimer() {
+    }
+
+    /**
+     * Начать замер запроса в этом потоке
+     * @return замер
+     */
+    public static RequestTimer start() {
+        RequestTimer timer = TIMERS.get();
+        timer.route = null;
+        timer.start = System.nanoTime();
+        timer.last = timer.start;
+        return timer;
+    }
+
+    /**
+     * Запрос относится к обработчику
+     * @param route статистика обработчика
+     */
+    public void setRoute(RouteMetrics route) {
+        this.route = route;
+        this.last = System.nanoTime();
+    }
+
+    /**
+     * Закончился этап
+     * @param phase этап
+     */
+    public void mark(Phase phase) {
+        long now = System.nanoTime();
+        if (route != null)
+            route.record(phase, now - last);
+        last = now;
+    }
+
+    /**
+     * Пропустить время, не относящееся к этапам
+     */
+    public void skip() {
+        last = System.nanoTime();
+    }
+
+    /**
+     * Закончить запрос
+     * @param unmatched статистика запросов без обработчика
+     * @param status статус ответа
+     * @param requestLength размер тела запроса
+     * @param responseLength размер тела ответа, -1 если неизвестен
+     */
+    public void finish(RouteMetrics unmatched, int status, long requestLength, long responseLength) {
+        RouteMetrics target = route != null ? route : unmatched;
+        target.record(System.nanoTime() - start, status, requestLength, responseLength);
+        route = null;
+    }
+}
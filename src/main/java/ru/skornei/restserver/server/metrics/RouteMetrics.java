@@ -0,0 +1,98 @@
+package ru.skornei.restserver.server.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Статистика одного обработчика: адрес и http метод
+ */
+public class RouteMetrics {
+
+    private static final int PHASES = Phase.values().length;
+
+    /**
+     * Шаблон адреса
+     */
+    private final String route;
+
+    /**
+     * Http метод
+     */
+    private final String method;
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[PHASES];
+
+    /**
+     * Ответы по классам статуса 1xx - 5xx
+     */
+    private final AtomicLongArray statusClasses = new AtomicLongArray(5);
+
+    private final AtomicLong requestBytes = new AtomicLong();
+
+    private final AtomicLong responseBytes = new AtomicLong();
+
+    public RouteMetrics(String route, String method) {
+        this.route = route;
+        this.method = method;
+        for (int i = 0; i < PHASES; i++)
+            histograms[i] = new LatencyHistogram();
+    }
+
+    public String getRoute() {
+        return route;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * Гистограмма этапа
+     * @param phase этап
+     * @return гистограмма
+     */
+    public LatencyHistogram getHistogram(Phase phase) {
+        return histograms[phase.ordinal()];
+    }
+
+    /**
+     * Количество запросов
+     * @return количество
+     */
+    public long getCount() {
+        return histograms[Phase.TOTAL.ordinal()].getCount();
+    }
+
+    /**
+     * Количество ответов с классом статуса
+     * @param statusClass 1 - 5
+     * @return количество
+     */
+    public long getStatusCount(int statusClass) {
+        return statusClasses.get(statusClass - 1);
+    }
+
+    public long getRequestBytes() {
+        return requestBytes.get();
+    }
+
+    public long getResponseBytes() {
+        return responseBytes.get();
+    }
+
+    void record(Phase phase, long nanos) {
+        histograms[phase.ordinal()].record(nanos);
+    }
+
+    void record(long totalNanos, int status, long requestLength, long responseLength) {
+        histograms[Phase.TOTAL.ordinal()].record(totalNanos);
+
+        int statusClass = status / 100;
+        if (statusClass >= 1 && statusClass <= 5)
+            statusClasses.incrementAndGet(statusClass - 1);
+        if (requestLength > 0)
+            requestBytes.addAndGet(requestLength);
+        if (responseLength > 0)
+            responseBytes.addAndGet(responseLength);
+    }
+}
@@ -0,0 +1,104 @@
+package ru.skornei.restserver.server.protocol;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Результат обработчика, который будет готов позже.
+ * Обработчик получает его параметром и завершает из любого потока
+ */
+public class AsyncResponse implements Future<Object> {
+
+    private static final int PENDING = 0;
+    private static final int COMPLETED = 1;
+    private static final int FAILED = 2;
+    private static final int CANCELLED = 3;
+
+    private final AtomicInteger state = new AtomicInteger(PENDING);
+
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    private volatile Object result;
+
+    private volatile Throwable error;
+
+    /**
+     * Передать результат, он преобразуется конвертером как возвращаемое значение
+     * @param result результат
+     * @return false, если ответ уже завершен или время ожидания вышло
+     */
+    public boolean complete(Object result) {
+        if (!state.compareAndSet(PENDING, COMPLETED))
+            return false;
+
+        this.result = result;
+        done.countDown();
+        return true;
+    }
+
+    /**
+     * Завершить ответ ошибкой, она передается в ExceptionHandler
+     * @param throwable ошибка
+     * @return false, если ответ уже завершен или время ожидания вышло
+     */
+    public boolean fail(Throwable throwable) {
+        if (!state.compareAndSet(PENDING, FAILED))
+            return false;
+
+        this.error = throwable;
+        done.countDown();
+        return true;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        if (!state.compareAndSet(PENDING, CANCELLED))
+            return false;
+
+        done.countDown();
+        return true;
+    }
+
+    /**
+     * Ответ больше никому не нужен, работу можно прекратить
+     * @return да или нет
+     */
+    @Override
+    public boolean isCancelled() {
+        return state.get() == CANCELLED;
+    }
+
+    @Override
+    public boolean isDone() {
+        return state.get() != PENDING;
+    }
+
+    @Override
+    public Object get() throws InterruptedException, ExecutionException {
+        done.await();
+        return report();
+    }
+
+    @Override
+    public Object get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        if (!done.await(timeout, unit))
+            throw new TimeoutException();
+        return report();
+    }
+
+    private Object report() throws ExecutionException {
+        switch (state.get()) {
+            case FAILED:
+                throw new ExecutionException(error);
+            case CANCELLED:
+                throw new CancellationException();
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,14 @@
+package ru.skornei.restserver.server.protocol;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+public interface BodyWriter {
+
+    /**
+     * Записать тело ответа прямо в соединение
+     * @param outputStream поток ответа, закрывать не нужно
+     * @throws IOException ошибка записи
+     */
+    void write(OutputStream outputStream) throws IOException;
+}
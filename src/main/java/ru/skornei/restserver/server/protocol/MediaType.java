@@ -0,0 +1,149 @@
+package ru.skornei.restserver.server.protocol;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Тип содержимого из заголовков Accept и Content-Type
+ */
+public class MediaType {
+
+    private static final String WILDCARD = "*";
+
+    /**
+     * Исходная строка
+     */
+    private final String value;
+
+    private final String type;
+
+    private final String subtype;
+
+    /**
+     * Вес из параметра q
+     */
+    private final float quality;
+
+    private MediaType(String value, String type, String subtype, float quality) {
+        this.value = value;
+        this.type = type;
+        this.subtype = subtype;
+        this.quality = quality;
+    }
+
+    /**
+     * Разобрать тип
+     * @param value строка вида type/subtype; q=0.8; charset=utf-8
+     * @return тип или null, если строка некорректна
+     */
+    public static MediaType parse(String value) {
+        if (value == null)
+            return null;
+
+        String[] parts = value.split(";");
+        String mime = parts[0].trim().toLowerCase(Locale.US);
+        if (mime.equals(WILDCARD))
+            mime = "*/*";
+
+        int slash = mime.indexOf('/');
+        if (slash <= 0 || slash == mime.length() - 1)
+            return null;
+
+        float quality = 1f;
+        for (int i = 1; i < parts.length; i++) {
+            String param = parts[i].trim();
+            if (param.startsWith("q=") || param.startsWith("Q=")) {
+                try {
+                    quality = Math.max(0f, Math.min(1f, Float.parseFloat(param.substring(2).trim())));
+                } catch (NumberFormatException e) {
+                    quality = 0f;
+                }
+            }
+        }
+
+        return new MediaType(value.trim(), mime.substring(0, slash), mime.substring(slash + 1), quality);
+    }
+
+    /**
+     * Разобрать список типов из заголовка Accept
+     * @param header заголовок
+     * @return список типов в порядке заголовка
+     */
+    public static List<MediaType> parseList(String header) {
+        List<MediaType> mediaTypes = new ArrayList<>();
+        if (header == null)
+            return mediaTypes;
+
+        for (String value : header.split(",")) {
+            MediaType mediaType = parse(value);
+            if (mediaType != null)
+                mediaTypes.add(mediaType);
+        }
+
+        return mediaTypes;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getSubtype() {
+        return subtype;
+    }
+
+    public float getQuality() {
+        return quality;
+    }
+
+    /**
+     * Содержит ли тип маску
+     * @return да или нет
+     */
+    public boolean isWildcard() {
+        return type.equals(WILDCARD) || subtype.contains(WILDCARD);
+    }
+
+    /**
+     * Подходит ли тип под этот диапазон, параметры не учитываются.
+     * Поддерживаются *&#47;*, type&#47;* и type&#47;*+suffix
+     * @param other конкретный тип
+     * @return да или нет
+     */
+    public boolean includes(MediaType other) {
+        if (!type.equals(WILDCARD) && !type.equals(other.type))
+            return false;
+
+        if (subtype.equals(WILDCARD) || subtype.equals(other.subtype))
+            return true;
+
+        //application/*+json
+        if (subtype.startsWith("*+"))
+            return other.subtype.endsWith(subtype.substring(1));
+
+        return false;
+    }
+
+    /**
+     * Насколько диапазон конкретен: точный тип важнее маски
+     * @return 0 для *&#47;*, 1 для type/*, 2 для type/*+suffix, 3 для точного типа
+     */
+    public int getSpecificity() {
+        if (type.equals(WILDCARD))
+            return 0;
+        if (subtype.equals(WILDCARD))
+            return 1;
+        if (subtype.contains(WILDCARD))
+            return 2;
+        return 3;
+    }
+
+    @Override
+    public String toString() {
+        return value;
+    }
+}
@@ -1,8 +1,13 @@
 package ru.skornei.restserver.server.protocol;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
+import ru.skornei.restserver.server.websocket.WebSocketConnection;
+
 public class RequestInfo {
 
     /**
@@ -20,11 +25,31 @@ public class RequestInfo {
      */
     private Map<String, List<String>> parameters;
 
+    /**
+     * Переменные из шаблона адреса
+     */
+    private Map<String, String> pathVariables = Collections.emptyMap();
+
     /**
      * Тело
      */
     private byte[] body;
 
+    /**
+     * Тело, которое читается прямо из соединения
+     */
+    private InputStream bodyStream;
+
+    /**
+     * Данные пользователя после аутентификации
+     */
+    private Object principal;
+
+    /**
+     * Соединение WebSocket этого запроса
+     */
+    private WebSocketConnection webSocket;
+
     public RequestInfo(String remoteIpAddress, Map<String, String> headers, Map<String, List<String>> parameters) {
         this.remoteIpAddress = remoteIpAddress;
         this.headers = headers;
@@ -43,6 +68,18 @@ public class RequestInfo {
         return parameters;
     }
 
+    public Map<String, String> getPathVariables() {
+        return pathVariables;
+    }
+
+    public String getPathVariable(String name) {
+        return pathVariables.get(name);
+    }
+
+    public void setPathVariables(Map<String, String> pathVariables) {
+        this.pathVariables = pathVariables;
+    }
+
     public boolean isBodyAvailable() {
         return body != null;
     }
@@ -54,4 +91,46 @@ public class RequestInfo {
     public void setBody(byte[] body) {
         this.body = body;
     }
+
+    /**
+     * Тело запроса в виде потока
+     * @return поток, пустой если тела нет
+     */
+    public InputStream getBodyStream() {
+        if (bodyStream != null)
+            return bodyStream;
+
+        if (body != null)
+            return new ByteArrayInputStream(body);
+
+        return new ByteArrayInputStream(new byte[0]);
+    }
+
+    public void setBodyStream(InputStream bodyStream) {
+        this.bodyStream = bodyStream;
+    }
+
+    /**
+     * Данные пользователя после аутентификации
+     * @return данные или null
+     */
+    public Object getPrincipal() {
+        return principal;
+    }
+
+    public void setPrincipal(Object principal) {
+        this.principal = principal;
+    }
+
+    /**
+     * Соединение WebSocket
+     * @return соединение или null
+     */
+    public WebSocketConnection getWebSocket() {
+        return webSocket;
+    }
+
+    public void setWebSocket(WebSocketConnection webSocket) {
+        this.webSocket = webSocket;
+    }
 }
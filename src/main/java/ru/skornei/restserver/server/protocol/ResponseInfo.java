@@ -1,10 +1,16 @@
 package ru.skornei.restserver.server.protocol;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.InputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import ru.skornei.restserver.server.dictionary.ContentType;
 import ru.skornei.restserver.server.dictionary.ResponseStatus;
+import ru.skornei.restserver.server.sse.EventSubscriber;
+import ru.skornei.restserver.utils.ETagUtils;
 
 public class ResponseInfo {
 
@@ -18,11 +24,56 @@ public class ResponseInfo {
      */
     private String type = ContentType.TEXT_PLAIN;
 
+    /**
+     * Заголовки
+     */
+    private Map<String, String> headers = new LinkedHashMap<>();
+
+    /**
+     * Версия ответа для ETag
+     */
+    private String etag;
+
+    /**
+     * Время изменения данных, -1 если неизвестно
+     */
+    private long lastModified = -1;
+
     /**
      * Тело запроса
      */
     private byte[] body;
 
+    /**
+     * Файл, который отправляется как тело
+     */
+    private File bodyFile;
+
+    /**
+     * Тело ответа из потока
+     */
+    private InputStream bodyStream;
+
+    /**
+     * Тело ответа, которое пишет обработчик
+     */
+    private BodyWriter bodyWriter;
+
+    /**
+     * Результат, который обработчик передаст позже
+     */
+    private AsyncResponse asyncResponse;
+
+    /**
+     * Клиент, подписанный на события
+     */
+    private EventSubscriber eventSubscriber;
+
+    /**
+     * Тело ответа по блокам
+     */
+    private Iterator<byte[]> bodyChunks;
+
     public ResponseStatus getStatus() {
         return status;
     }
@@ -39,6 +90,43 @@ public class ResponseInfo {
         this.type = type;
     }
 
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    /**
+     * Добавить заголовок ответа
+     * @param name название
+     * @param value значение
+     */
+    public void addHeader(String name, String value) {
+        headers.put(name, value);
+    }
+
+    public String getETag() {
+        return etag;
+    }
+
+    /**
+     * Версия ответа. Если не задана, ETag GET ответа считается по телу
+     * @param etag версия, кавычки добавляются автоматически
+     */
+    public void setETag(String etag) {
+        this.etag = etag != null ? ETagUtils.quote(etag) : null;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Время изменения данных для If-Modified-Since
+     * @param lastModified время в миллисекундах
+     */
+    public void setLastModified(long lastModified) {
+        this.lastModified = lastModified;
+    }
+
     public byte[] getBody() {
         return body;
     }
@@ -47,6 +135,63 @@ public class ResponseInfo {
         this.body = body;
     }
 
+    public File getBodyFile() {
+        return bodyFile;
+    }
+
+    /**
+     * Отправить файл без загрузки в память.
+     * Range, ETag и If-Modified-Since обрабатываются автоматически
+     * @param bodyFile файл
+     */
+    public void setBodyFile(File bodyFile) {
+        this.bodyFile = bodyFile;
+    }
+
+    public InputStream getBodyStream() {
+        return bodyStream;
+    }
+
+    /**
+     * Отправить тело из потока, поток будет закрыт после отправки
+     * @param bodyStream поток
+     */
+    public void setBodyStream(InputStream bodyStream) {
+        this.bodyStream = bodyStream;
+    }
+
+    public BodyWriter getBodyWriter() {
+        return bodyWriter;
+    }
+
+    /**
+     * Писать тело прямо в соединение во время отправки ответа
+     * @param bodyWriter обработчик записи
+     */
+    public void setBodyWriter(BodyWriter bodyWriter) {
+        this.bodyWriter = bodyWriter;
+    }
+
+    public Iterator<byte[]> getBodyChunks() {
+        return bodyChunks;
+    }
+
+    /**
+     * Отправить тело по блокам, следующий блок запрашивается по мере отправки
+     * @param bodyChunks блоки
+     */
+    public void setBodyChunks(Iterator<byte[]> bodyChunks) {
+        this.bodyChunks = bodyChunks;
+    }
+
+    /**
+     * Тело отправляется потоком, а не массивом байт
+     * @return да или нет
+     */
+    public boolean isStreaming() {
+        return bodyFile != null || bodyStream != null || bodyWriter != null || bodyChunks != null;
+    }
+
     public InputStream getBodyInputStream() {
         if (body != null)
             return new ByteArrayInputStream(body);
@@ -60,4 +205,28 @@ public class ResponseInfo {
 
         return 0;
     }
+
+    /**
+     * Результат, который обработчик передаст позже
+     * @return результат или null
+     */
+    public AsyncResponse getAsyncResponse() {
+        return asyncResponse;
+    }
+
+    public void setAsyncResponse(AsyncResponse asyncResponse) {
+        this.asyncResponse = asyncResponse;
+    }
+
+    /**
+     * Клиент, подписанный на события
+     * @return клиент или null
+     */
+    public EventSubscriber getEventSubscriber() {
+        return eventSubscriber;
+    }
+
+    public void setEventSubscriber(EventSubscriber eventSubscriber) {
+        this.eventSubscriber = eventSubscriber;
+    }
 }
@@ -0,0 +1,365 @@
+package ru.skornei.restserver.server.route;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import fi.iki.elonen.NanoHTTPD;
+import ru.skornei.restserver.annotations.ExceptionHandler;
+import ru.skornei.restserver.annotations.RateLimit;
+import ru.skornei.restserver.annotations.RestController;
+import ru.skornei.restserver.annotations.Version;
+import ru.skornei.restserver.annotations.WebSocket;
+import ru.skornei.restserver.annotations.lifecycle.OnReset;
+import ru.skornei.restserver.annotations.lifecycle.OnStart;
+import ru.skornei.restserver.annotations.lifecycle.OnStop;
+import ru.skornei.restserver.annotations.methods.DELETE;
+import ru.skornei.restserver.annotations.methods.GET;
+import ru.skornei.restserver.annotations.methods.POST;
+import ru.skornei.restserver.annotations.methods.PUT;
+import ru.skornei.restserver.annotations.methods.SSE;
+import ru.skornei.restserver.server.cache.ResponseCache;
+import ru.skornei.restserver.server.controller.BaseControllerProvider;
+import ru.skornei.restserver.server.controller.PooledControllerProvider;
+import ru.skornei.restserver.server.controller.RequestControllerProvider;
+import ru.skornei.restserver.server.controller.SingletonControllerProvider;
+import ru.skornei.restserver.server.converter.BaseConverter;
+import ru.skornei.restserver.server.limit.RateLimiter;
+import ru.skornei.restserver.server.metrics.MetricsRegistry;
+import ru.skornei.restserver.server.metrics.RouteMetrics;
+import ru.skornei.restserver.server.sse.EventPublisher;
+import ru.skornei.restserver.server.websocket.WebSocketEndpoint;
+import ru.skornei.restserver.utils.ReflectionUtils;
+
+/**
+ * Описание контроллера, собранное один раз при создании сервера
+ */
+public class ControllerInfo {
+
+    /**
+     * Класс контроллера
+     */
+    private final Class<?> type;
+
+    /**
+     * Обработчики по http методу
+     */
+    private final Map<NanoHTTPD.Method, ReflectionUtils.MethodInfo> methods;
+
+    /**
+     * Обработчик исключений
+     */
+    private final ReflectionUtils.MethodInfo exceptionHandler;
+
+    /**
+     * Статистика по http методу
+     */
+    private final Map<NanoHTTPD.Method, RouteMetrics> metrics;
+
+    /**
+     * Ограничения запросов по http методу
+     */
+    private final Map<NanoHTTPD.Method, RateLimiter> rateLimiters;
+
+    /**
+     * Ограничение подписок на события, место занято пока поток открыт
+     */
+    private final RateLimiter eventStreamLimiter;
+
+    /**
+     * Подписка на события, null если ее нет
+     */
+    private final ReflectionUtils.MethodInfo eventStream;
+
+    /**
+     * Рассылка событий подписчикам
+     */
+    private final EventPublisher eventPublisher;
+
+    /**
+     * Соединения WebSocket, null если контроллер их не принимает
+     */
+    private final WebSocketEndpoint webSocket;
+
+    /**
+     * Быстрая проверка версии данных для GET
+     */
+    private final ReflectionUtils.MethodInfo version;
+
+    /**
+     * Время жизни экземпляров
+     */
+    private final BaseControllerProvider provider;
+
+    /**
+     * Запомненные ответы GET обработчика, null если не используются
+     */
+    private final ResponseCache responseCache;
+
+    /**
+     * Экземпляры, выданные запросам и еще не возвращенные
+     */
+    private int inFlight;
+
+    /**
+     * Контроллер остановлен, новые экземпляры не выдаются
+     */
+    private boolean stopping;
+
+    /**
+     * @param type класс контроллера
+     * @param registry статистика сервера или null
+     * @param converter конвертер данных событий и сообщений или null
+     */
+    public ControllerInfo(Class<?> type, MetricsRegistry registry, BaseConverter converter) {
+        this.type = type;
+
+        Map<NanoHTTPD.Method, ReflectionUtils.MethodInfo> methods = new EnumMap<>(NanoHTTPD.Method.class);
+        put(methods, NanoHTTPD.Method.GET, GET.class);
+        put(methods, NanoHTTPD.Method.POST, POST.class);
+        put(methods, NanoHTTPD.Method.PUT, PUT.class);
+        put(methods, NanoHTTPD.Method.DELETE, DELETE.class);
+        this.methods = Collections.unmodifiableMap(methods);
+
+        this.eventStream = ReflectionUtils.getDeclaredMethodInfo(type, SSE.class);
+        this.eventPublisher = eventStream != null ?
+                new EventPublisher(eventStream.getMethod().getAnnotation(SSE.class), converter) :
+                null;
+        this.webSocket = type.isAnnotationPresent(WebSocket.class) ?
+                new WebSocketEndpoint(type, converter) :
+                null;
+
+        Map<NanoHTTPD.Method, RouteMetrics> metrics = new EnumMap<>(NanoHTTPD.Method.class);
+        if (registry != null) {
+            String route = type.getAnnotation(RestController.class).value();
+            for (NanoHTTPD.Method method : methods.keySet())
+                metrics.put(method, registry.register(route, method.name()));
+            if (eventStream != null && !metrics.containsKey(NanoHTTPD.Method.GET))
+                metrics.put(NanoHTTPD.Method.GET, registry.register(route, NanoHTTPD.Method.GET.name()));
+        }
+        this.metrics = Collections.unmodifiableMap(metrics);
+
+        Map<NanoHTTPD.Method, RateLimiter> rateLimiters = new EnumMap<>(NanoHTTPD.Method.class);
+        for (Map.Entry<NanoHTTPD.Method, ReflectionUtils.MethodInfo> entry : methods.entrySet()) {
+            RateLimiter rateLimiter = RateLimiter.create(entry.getValue().getMethod().getAnnotation(RateLimit.class));
+            if (rateLimiter != null)
+                rateLimiters.put(entry.getKey(), rateLimiter);
+        }
+        this.rateLimiters = Collections.unmodifiableMap(rateLimiters);
+        this.eventStreamLimiter = eventStream != null ?
+                RateLimiter.create(eventStream.getMethod().getAnnotation(RateLimit.class)) :
+                null;
+
+        this.exceptionHandler = ReflectionUtils.getDeclaredMethodInfo(type, ExceptionHandler.class);
+        this.version = ReflectionUtils.getDeclaredMethodInfo(type, Version.class);
+        this.provider = createProvider(type);
+
+        ReflectionUtils.MethodInfo get = methods.get(NanoHTTPD.Method.GET);
+        this.responseCache = get != null && get.getCacheable() != null ?
+                new ResponseCache(get.getCacheable(), get.isRequiresAuthentication()) :
+                null;
+    }
+
+    public Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * Получить обработчик для http метода
+     * @param method http метод
+     * @return обработчик или null
+     */
+    public ReflectionUtils.MethodInfo getMethodInfo(NanoHTTPD.Method method) {
+        return methods.get(method);
+    }
+
+    /**
+     * Статистика обработчика
+     * @param method http метод
+     * @return статистика или null
+     */
+    public RouteMetrics getMetrics(NanoHTTPD.Method method) {
+        return metrics.get(method);
+    }
+
+    /**
+     * Ограничение запросов обработчика
+     * @param method http метод
+     * @return ограничение или null
+     */
+    public RateLimiter getRateLimiter(NanoHTTPD.Method method) {
+        return rateLimiters.get(method);
+    }
+
+    /**
+     * Ограничение подписок на события
+     * @return ограничение или null
+     */
+    public RateLimiter getEventStreamRateLimiter() {
+        return eventStreamLimiter;
+    }
+
+    public ReflectionUtils.MethodInfo getExceptionHandler() {
+        return exceptionHandler;
+    }
+
+    /**
+     * Подписка на события
+     * @return обработчик или null
+     */
+    public ReflectionUtils.MethodInfo getEventStream() {
+        return eventStream;
+    }
+
+    /**
+     * Рассылка событий подписчикам контроллера
+     * @return рассылка или null, если у контроллера нет SSE
+     */
+    public EventPublisher getEventPublisher() {
+        return eventPublisher;
+    }
+
+    /**
+     * Соединения WebSocket контроллера
+     * @return описание или null, если контроллер их не принимает
+     */
+    public WebSocketEndpoint getWebSocket() {
+        return webSocket;
+    }
+
+    public ReflectionUtils.MethodInfo getVersion() {
+        return version;
+    }
+
+    /**
+     * Кэш ответов GET обработчика
+     * @return кэш или null
+     */
+    public ResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    /**
+     * Получить экземпляр контроллера для запроса
+     * @return контроллер или null, если контроллер остановлен
+     */
+    public Object acquire() throws Exception {
+        synchronized (this) {
+            if (stopping)
+                return null;
+            inFlight++;
+        }
+
+        Object controller = null;
+        try {
+            controller = provider.acquire();
+            return controller;
+        } finally {
+            if (controller == null)
+                leave();
+        }
+    }
+
+    /**
+     * Вернуть экземпляр контроллера после запроса
+     * @param controller контроллер
+     */
+    public void release(Object controller) {
+        provider.release(controller);
+        leave();
+    }
+
+    public void start() throws Exception {
+        synchronized (this) {
+            stopping = false;
+        }
+        provider.start();
+    }
+
+    /**
+     * Закрыть потоки событий и соединения WebSocket, они не заканчиваются сами
+     */
+    public void closeStreams() {
+        if (eventPublisher != null)
+            eventPublisher.close();
+        if (webSocket != null)
+            webSocket.getPublisher().close();
+    }
+
+    /**
+     * Обработчики запросов, включая подписку на события
+     * @return обработчики
+     */
+    public Collection<ReflectionUtils.MethodInfo> getHandlers() {
+        List<ReflectionUtils.MethodInfo> handlers = new ArrayList<>(methods.values());
+        if (eventStream != null)
+            handlers.add(eventStream);
+        return handlers;
+    }
+
+    /**
+     * Статистика всех обработчиков
+     * @return статистика
+     */
+    public Collection<RouteMetrics> getMetrics() {
+        return metrics.values();
+    }
+
+    /**
+     * Остановить контроллер. Новые запросы его не получают,
+     * экземпляры останавливаются, когда завершатся начатые запросы
+     */
+    public void stop() {
+        closeStreams();
+
+        synchronized (this) {
+            stopping = true;
+            if (inFlight > 0)
+                return;
+        }
+        provider.stop();
+    }
+
+    /**
+     * Запрос вернул экземпляр, последний запускает отложенную остановку
+     */
+    private void leave() {
+        synchronized (this) {
+            inFlight--;
+            if (!stopping || inFlight > 0)
+                return;
+        }
+        provider.stop();
+    }
+
+    private static BaseControllerProvider createProvider(Class<?> type) {
+        RestController restController = type.getAnnotation(RestController.class);
+        if (restController != null) {
+            switch (restController.scope()) {
+                case SINGLETON:
+                    return new SingletonControllerProvider(type,
+                            ReflectionUtils.getDeclaredMethodInfo(type, OnStart.class),
+                            ReflectionUtils.getDeclaredMethodInfo(type, OnStop.class));
+                case POOLED:
+                    return new PooledControllerProvider(type,
+                            restController.poolSize(),
+                            ReflectionUtils.getDeclaredMethodInfo(type, OnStart.class),
+                            ReflectionUtils.getDeclaredMethodInfo(type, OnStop.class),
+                            ReflectionUtils.getDeclaredMethodInfo(type, OnReset.class));
+            }
+        }
+
+        return new RequestControllerProvider(type);
+    }
+
+    private void put(Map<NanoHTTPD.Method, ReflectionUtils.MethodInfo> methods,
+                     NanoHTTPD.Method method,
+                     Class annotationClass) {
+        ReflectionUtils.MethodInfo methodInfo = ReflectionUtils.getDeclaredMethodInfo(type, annotationClass);
+        if (methodInfo != null)
+            methods.put(method, methodInfo);
+    }
+}
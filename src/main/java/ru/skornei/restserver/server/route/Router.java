@@ -0,0 +1,224 @@
+package ru.skornei.restserver.server.route;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Маршрутизатор по шаблонам адресов вида /devices/{id}/sensors/{sid}.
+ * Дерево строится по сегментам пути, поэтому поиск зависит
+ * от длины адреса, а не от количества маршрутов.
+ * Статический сегмент имеет приоритет над переменной.
+ * Для замены маршрутов во время работы создается копия с изменением,
+ * а старая продолжает обслуживать начатые запросы.
+ *
+ * @param <T> значение маршрута
+ */
+public class Router<T> {
+
+    /**
+     * Результат поиска маршрута
+     */
+    public static class Match<T> {
+
+        private final T value;
+        private final Map<String, String> pathVariables;
+
+        Match(T value, Map<String, String> pathVariables) {
+            this.value = value;
+            this.pathVariables = pathVariables;
+        }
+
+        public T getValue() {
+            return value;
+        }
+
+        public Map<String, String> getPathVariables() {
+            return pathVariables;
+        }
+    }
+
+    /**
+     * Узел дерева
+     */
+    private static class Node<T> {
+
+        /**
+         * Статические сегменты
+         */
+        private final Map<String, Node<T>> children = new HashMap<>();
+
+        /**
+         * Сегмент-переменная
+         */
+        private Node<T> variable;
+
+        /**
+         * Значение, если маршрут заканчивается здесь
+         */
+        private T value;
+
+        /**
+         * Имена переменных маршрута по порядку
+         */
+        private String[] variableNames;
+    }
+
+    private final Node<T> root = new Node<>();
+
+    /**
+     * Маршруты без переменных по точному адресу, чтобы не обходить дерево
+     */
+    private final Map<String, Match<T>> staticRoutes = new HashMap<>();
+
+    /**
+     * Значения по шаблону адреса
+     */
+    private final Map<String, T> routes = new LinkedHashMap<>();
+
+    /**
+     * Добавить маршрут
+     * @param template шаблон адреса
+     * @param value значение
+     */
+    public void add(String template, T value) {
+        List<String> variableNames = new ArrayList<>();
+        Node<T> node = root;
+        for (String segment : split(template)) {
+            if (segment.length() > 2 && segment.charAt(0) == '{' && segment.charAt(segment.length() - 1) == '}') {
+                variableNames.add(segment.substring(1, segment.length() - 1));
+                if (node.variable == null)
+                    node.variable = new Node<>();
+                node = node.variable;
+            } else {
+                Node<T> child = node.children.get(segment);
+                if (child == null) {
+                    child = new Node<>();
+                    node.children.put(segment, child);
+                }
+                node = child;
+            }
+        }
+
+        //Another template may lead to the same node, e.g. /a/{id} and /a/{name}
+        if (node.value != null)
+            routes.values().remove(node.value);
+
+        node.value = value;
+        node.variableNames = variableNames.toArray(new String[variableNames.size()]);
+        routes.put(template, value);
+
+        if (variableNames.isEmpty())
+            staticRoutes.put(template, new Match<>(value, Collections.<String, String>emptyMap()));
+    }
+
+    /**
+     * Найти маршрут для адреса
+     * @param path адрес запроса
+     * @return маршрут или null
+     */
+    public Match<T> match(String path) {
+        if (path == null)
+            return null;
+
+        Match<T> staticRoute = staticRoutes.get(path);
+        if (staticRoute != null)
+            return staticRoute;
+
+        List<String> segments = split(path);
+        String[] variables = new String[segments.size()];
+        Node<T> node = find(root, segments, 0, variables, 0);
+        if (node == null)
+            return null;
+
+        if (node.variableNames.length == 0)
+            return new Match<>(node.value, Collections.<String, String>emptyMap());
+
+        Map<String, String> pathVariables = new LinkedHashMap<>();
+        for (int i = 0; i < node.variableNames.length; i++)
+            pathVariables.put(node.variableNames[i], variables[i]);
+
+        return new Match<>(node.value, Collections.unmodifiableMap(pathVariables));
+    }
+
+    /**
+     * Все значения маршрутов
+     * @return значения
+     */
+    public List<T> values() {
+        return Collections.unmodifiableList(new ArrayList<>(routes.values()));
+    }
+
+    /**
+     * Копия с добавленным или замененным маршрутом
+     * @param template шаблон адреса
+     * @param value значение
+     * @return новый маршрутизатор
+     */
+    public Router<T> with(String template, T value) {
+        Router<T> router = new Router<>();
+        for (Map.Entry<String, T> route : routes.entrySet())
+            router.add(route.getKey(), route.getValue());
+        router.add(template, value);
+        return router;
+    }
+
+    /**
+     * Копия без маршрута
+     * @param value значение маршрута
+     * @return новый маршрутизатор
+     */
+    public Router<T> without(T value) {
+        Router<T> router = new Router<>();
+        for (Map.Entry<String, T> route : routes.entrySet()) {
+            if (!route.getValue().equals(value))
+                router.add(route.getKey(), route.getValue());
+        }
+
+        return router;
+    }
+
+    private Node<T> find(Node<T> node, List<String> segments, int index, String[] variables, int variableCount) {
+        if (index == segments.size())
+            return node.value != null ? node : null;
+
+        String segment = segments.get(index);
+
+        //Static segment first
+        Node<T> child = node.children.get(segment);
+        if (child != null) {
+            Node<T> found = find(child, segments, index + 1, variables, variableCount);
+            if (found != null)
+                return found;
+        }
+
+        //Then the variable
+        if (node.variable != null) {
+            variables[variableCount] = segment;
+            return find(node.variable, segments, index + 1, variables, variableCount + 1);
+        }
+
+        return null;
+    }
+
+    /**
+     * Разбить адрес на непустые сегменты
+     */
+    private static List<String> split(String path) {
+        List<String> segments = new ArrayList<>();
+        int start = 0;
+        int length = path.length();
+        for (int i = 0; i <= length; i++) {
+            if (i == length || path.charAt(i) == '/') {
+                if (i > start)
+                    segments.add(path.substring(start, i));
+                start = i + 1;
+            }
+        }
+
+        return segments;
+    }
+}
@@ -0,0 +1,18 @@
+package ru.skornei.restserver.server.runner;
+
+import fi.iki.elonen.NanoHTTPD;
+
+public interface BaseRunner extends NanoHTTPD.AsyncRunner {
+
+    /**
+     * Количество соединений, которые сейчас обрабатываются
+     * @return количество
+     */
+    int getActiveCount();
+
+    /**
+     * Количество соединений в очереди
+     * @return количество
+     */
+    int getQueueDepth();
+}
@@ -0,0 +1,57 @@
+package ru.skornei.restserver.server.runner;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Фиксированное число потоков и ограниченная очередь соединений
+ */
+public class BoundedRunner extends ExecutorRunner {
+
+    /**
+     * Сколько живет простаивающий поток
+     */
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    public BoundedRunner(int threads, int queueSize, int retryAfter) {
+        super(createExecutor(threads, queueSize), retryAfter);
+    }
+
+    private static ThreadPoolExecutor createExecutor(int threads, int queueSize) {
+        BlockingQueue<Runnable> queue;
+        if (queueSize > 0)
+            queue = new ArrayBlockingQueue<>(queueSize);
+        else
+            queue = new SynchronousQueue<>();
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads,
+                threads,
+                KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS,
+                queue,
+                new WorkerThreadFactory(),
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Потоки-демоны с понятными именами
+     */
+    private static class WorkerThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "RestServer Worker #" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package ru.skornei.restserver.server.runner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import fi.iki.elonen.NanoHTTPD;
+
+/**
+ * Обработка соединений в пуле потоков.
+ * Если пул отказал, клиент получает 503 с Retry-After
+ */
+public class ExecutorRunner implements BaseRunner {
+
+    /**
+     * Пул потоков
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Через сколько секунд клиенту повторить запрос после отказа
+     */
+    private final int retryAfter;
+
+    /**
+     * Открытые соединения
+     */
+    private final Set<NanoHTTPD.ClientHandler> running =
+            Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<NanoHTTPD.ClientHandler, Boolean>()));
+
+    /**
+     * Соединения в работе
+     */
+    private final AtomicInteger active = new AtomicInteger();
+
+    public ExecutorRunner(ExecutorService executor, int retryAfter) {
+        this.executor = executor;
+        this.retryAfter = retryAfter;
+    }
+
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    @Override
+    public void exec(final NanoHTTPD.ClientHandler clientHandler) {
+        running.add(clientHandler);
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    active.incrementAndGet();
+                    try {
+                        clientHandler.run();
+                    } finally {
+                        active.decrementAndGet();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            closed(clientHandler);
+            reject(clientHandler);
+        }
+    }
+
+    @Override
+    public void closed(NanoHTTPD.ClientHandler clientHandler) {
+        running.remove(clientHandler);
+    }
+
+    @Override
+    public void closeAll() {
+        for (NanoHTTPD.ClientHandler clientHandler : new ArrayList<>(running))
+            clientHandler.close();
+    }
+
+    @Override
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    @Override
+    public int getQueueDepth() {
+        if (executor instanceof ThreadPoolExecutor)
+            return ((ThreadPoolExecutor) executor).getQueue().size();
+
+        return 0;
+    }
+
+    /**
+     * Отказать клиенту
+     * @param clientHandler соединение
+     */
+    protected void reject(NanoHTTPD.ClientHandler clientHandler) {
+        if (clientHandler instanceof RejectableHandler)
+            ((RejectableHandler) clientHandler).reject(retryAfter);
+        else
+            clientHandler.close();
+    }
+}
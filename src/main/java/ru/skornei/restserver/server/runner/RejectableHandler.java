@@ -0,0 +1,10 @@
+package ru.skornei.restserver.server.runner;
+
+public interface RejectableHandler {
+
+    /**
+     * Отказать в обработке: ответить 503 и закрыть соединение
+     * @param retryAfter через сколько секунд повторить запрос
+     */
+    void reject(int retryAfter);
+}
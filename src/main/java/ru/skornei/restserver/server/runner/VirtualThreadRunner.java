@@ -0,0 +1,64 @@
+package ru.skornei.restserver.server.runner;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+
+import fi.iki.elonen.NanoHTTPD;
+
+/**
+ * Виртуальный поток на соединение, если JVM их поддерживает.
+ * Количество одновременных соединений ограничено,
+ * лишние получают 503 без создания потока
+ */
+public class VirtualThreadRunner extends ExecutorRunner {
+
+    private final Semaphore permits;
+
+    public VirtualThreadRunner(int maxConnections, int retryAfter) {
+        super(createExecutor(), retryAfter);
+        this.permits = maxConnections > 0 ? new Semaphore(maxConnections) : null;
+    }
+
+    /**
+     * Поддерживает ли JVM виртуальные потоки
+     * @return да или нет
+     */
+    public static boolean isSupported() {
+        try {
+            getFactoryMethod();
+            return true;
+        } catch (Throwable throwable) {
+            return false;
+        }
+    }
+
+    @Override
+    public void exec(NanoHTTPD.ClientHandler clientHandler) {
+        if (permits != null && !permits.tryAcquire()) {
+            reject(clientHandler);
+            return;
+        }
+
+        super.exec(clientHandler);
+    }
+
+    @Override
+    public void closed(NanoHTTPD.ClientHandler clientHandler) {
+        super.closed(clientHandler);
+        if (permits != null)
+            permits.release();
+    }
+
+    private static ExecutorService createExecutor() {
+        try {
+            return (ExecutorService) getFactoryMethod().invoke(null);
+        } catch (Throwable throwable) {
+            throw new UnsupportedOperationException("Virtual threads are not supported", throwable);
+        }
+    }
+
+    private static Method getFactoryMethod() throws NoSuchMethodException {
+        return java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+    }
+}
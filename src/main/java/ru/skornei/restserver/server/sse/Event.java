@@ -0,0 +1,53 @@
+package ru.skornei.restserver.server.sse;
+
+import java.io.UnsupportedEncodingException;
+
+/**
+ * Событие, уже записанное в формате text/event-stream
+ */
+class Event {
+
+    /**
+     * Номер события, 0 - событие только для одного клиента
+     */
+    private final long id;
+
+    private final byte[] frame;
+
+    Event(long id, byte[] frame) {
+        this.id = id;
+        this.frame = frame;
+    }
+
+    long getId() {
+        return id;
+    }
+
+    byte[] getFrame() {
+        return frame;
+    }
+
+    /**
+     * Записать событие
+     * @param id номер или 0
+     * @param event название или null
+     * @param data данные, строки передаются отдельными полями data
+     * @return событие
+     */
+    static Event create(long id, String event, String data) {
+        StringBuilder frame = new StringBuilder();
+        if (id > 0)
+            frame.append("id: ").append(id).append('\n');
+        if (event != null)
+            frame.append("event: ").append(event.replace('\n', ' ').replace('\r', ' ')).append('\n');
+        for (String line : (data != null ? data : "").split("\r\n|\r|\n", -1))
+            frame.append("data: ").append(line).append('\n');
+        frame.append('\n');
+
+        try {
+            return new Event(id, frame.toString().getBytes("UTF-8"));
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package ru.skornei.restserver.server.sse;
+
+import java.io.UnsupportedEncodingException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ru.skornei.restserver.annotations.methods.SSE;
+import ru.skornei.restserver.server.converter.BaseConverter;
+
+/**
+ * Рассылка событий всем подписчикам контроллера.
+ * Последние события хранятся в кольцевом буфере для повтора по Last-Event-ID
+ */
+public class EventPublisher {
+
+    private final int bufferSize;
+
+    private final long heartbeat;
+
+    /**
+     * Преобразование данных событий, которые не строки
+     */
+    private final BaseConverter converter;
+
+    /**
+     * Последние события
+     */
+    private final Event[] ring;
+
+    private int ringStart;
+
+    private int ringCount;
+
+    /**
+     * Номер последнего события
+     */
+    private long lastId;
+
+    private final CopyOnWriteArrayList<EventSubscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    /**
+     * Отключено медленных клиентов
+     */
+    private final AtomicLong evicted = new AtomicLong();
+
+    public EventPublisher(SSE sse, BaseConverter converter) {
+        this.bufferSize = sse.bufferSize();
+        this.heartbeat = Math.max(1, sse.heartbeat());
+        this.converter = converter;
+        this.ring = new Event[Math.max(0, sse.replaySize())];
+    }
+
+    /**
+     * Отправить событие всем подписчикам
+     * @param data данные: строка как есть, иначе через конвертер
+     * @return номер события
+     */
+    public long publish(Object data) {
+        return publish(null, data);
+    }
+
+    /**
+     * Отправить событие всем подписчикам
+     * @param event название или null
+     * @param data данные: строка как есть, иначе через конвертер
+     * @return номер события
+     */
+    public long publish(String event, Object data) {
+        String text = toString(data);
+        synchronized (this) {
+            Event frame = Event.create(++lastId, event, text);
+            remember(frame);
+
+            for (EventSubscriber subscriber : subscribers) {
+                //Slow consumer, it reconnects and catches up from the ring
+                if (!subscriber.offer(frame)) {
+                    evicted.incrementAndGet();
+                    subscriber.close();
+                }
+            }
+
+            return frame.getId();
+        }
+    }
+
+    /**
+     * Количество подписчиков
+     * @return количество
+     */
+    public int getSubscribers() {
+        return subscribers.size();
+    }
+
+    /**
+     * Количество отключенных медленных клиентов
+     * @return количество
+     */
+    public long getEvicted() {
+        return evicted.get();
+    }
+
+    /**
+     * Отключить всех подписчиков
+     */
+    public void close() {
+        for (EventSubscriber subscriber : subscribers)
+            subscriber.close();
+    }
+
+    long getHeartbeat() {
+        return heartbeat;
+    }
+
+    /**
+     * Новый клиент, события ему идут после subscribe
+     * @return клиент
+     */
+    public EventSubscriber newSubscriber() {
+        return new EventSubscriber(this, bufferSize);
+    }
+
+    /**
+     * Начать рассылку клиенту
+     * @param subscriber клиент
+     * @param lastEventId заголовок Last-Event-ID или null
+     */
+    public synchronized void subscribe(EventSubscriber subscriber, String lastEventId) {
+        if (lastEventId != null) {
+            long lastSeen;
+            try {
+                lastSeen = Long.parseLong(lastEventId.trim());
+            } catch (NumberFormatException e) {
+                lastSeen = lastId;
+            }
+
+            //Replay what was missed, not more than fits into the buffer
+            int skip = Math.max(0, ringCount - bufferSize);
+            for (int i = skip; i < ringCount; i++) {
+                Event event = ring[(ringStart + i) % ring.length];
+                if (event.getId() > lastSeen)
+                    subscriber.offer(event);
+            }
+        }
+
+        if (!subscriber.isClosed())
+            subscribers.add(subscriber);
+    }
+
+    void unsubscribe(EventSubscriber subscriber) {
+        subscribers.remove(subscriber);
+    }
+
+    String toString(Object data) {
+        if (data == null || data instanceof String)
+            return (String) data;
+
+        if (converter == null)
+            return data.toString();
+
+        try {
+            return new String(converter.writeValueAsBytes(data), "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void remember(Event event) {
+        if (ring.length == 0)
+            return;
+
+        if (ringCount < ring.length) {
+            ring[(ringStart + ringCount) % ring.length] = event;
+            ringCount++;
+        } else {
+            ring[ringStart] = event;
+            ringStart = (ringStart + 1) % ring.length;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package ru.skornei.restserver.server.sse;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import ru.skornei.restserver.server.dictionary.ResponseStatus;
+import ru.skornei.restserver.server.io.BaseResponse;
+import ru.skornei.restserver.server.limit.RateLimiter;
+
+/**
+ * Ответ text/event-stream, открыт пока клиент подписан.
+ * Тело заканчивается закрытием соединения
+ */
+public class EventStreamResponse extends BaseResponse {
+
+    public static final String MIME_TYPE = "text/event-stream";
+
+    /**
+     * Комментарий, который держит соединение открытым
+     */
+    private static final byte[] HEARTBEAT = {':', '\n', '\n'};
+
+    private final EventSubscriber subscriber;
+
+    private final long heartbeat;
+
+    /**
+     * Место в ограничении подписок, освобождается с концом потока
+     */
+    private RateLimiter.Client limit;
+
+    public EventStreamResponse(EventPublisher publisher, EventSubscriber subscriber) {
+        this(publisher, subscriber, null);
+    }
+
+    /**
+     * @param publisher рассылка
+     * @param subscriber подписчик
+     * @param limit занятое место в ограничении подписок или null
+     */
+    public EventStreamResponse(EventPublisher publisher, EventSubscriber subscriber, RateLimiter.Client limit) {
+        super(ResponseStatus.OK, MIME_TYPE, null, -1);
+        this.subscriber = subscriber;
+        this.heartbeat = publisher.getHeartbeat();
+        this.limit = limit;
+        addHeader("Cache-Control", "no-cache");
+        closeConnection(true);
+    }
+
+    @Override
+    protected void appendBodyHeaders(StringBuilder header) {
+    }
+
+    @Override
+    protected void sendBody(OutputStream outputStream) throws IOException {
+        try {
+            //Headers go out at once, the first event may come much later
+            outputStream.flush();
+            while (true) {
+                //A concurrent offer may have taken the place of CLOSE in a full queue
+                Event event = subscriber.poll(heartbeat);
+                if (event == EventSubscriber.CLOSE || subscriber.isClosed())
+                    break;
+
+                outputStream.write(event != null ? event.getFrame() : HEARTBEAT);
+                outputStream.flush();
+            }
+        } catch (IOException e) {
+            //The client went away, this is how an event stream normally ends
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            subscriber.close();
+            release();
+        }
+    }
+
+    @Override
+    public void writeBody(OutputStream outputStream) throws IOException {
+        //Inside a batch only what is already queued is sent
+        try {
+            Event event;
+            while ((event = subscriber.poll()) != null && event != EventSubscriber.CLOSE)
+                outputStream.write(event.getFrame());
+        } finally {
+            subscriber.close();
+            release();
+        }
+    }
+
+    private void release() {
+        if (limit != null) {
+            limit.release();
+            limit = null;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package ru.skornei.restserver.server.sse;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Клиент, подписанный на события. События ждут отправки в ограниченной очереди
+ */
+public class EventSubscriber {
+
+    /**
+     * Отправка закончена
+     */
+    static final Event CLOSE = new Event(0, new byte[0]);
+
+    private final EventPublisher publisher;
+
+    private final ArrayBlockingQueue<Event> queue;
+
+    private volatile boolean closed;
+
+    EventSubscriber(EventPublisher publisher, int bufferSize) {
+        this.publisher = publisher;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, bufferSize));
+    }
+
+    /**
+     * Отправить событие только этому клиенту, например начальное состояние
+     * @param event название или null
+     * @param data данные
+     * @return false, если клиент отключен или его очередь заполнена
+     */
+    public boolean send(String event, Object data) {
+        return offer(Event.create(0, event, publisher.toString(data)));
+    }
+
+    /**
+     * Отключить клиента
+     */
+    public void close() {
+        if (closed)
+            return;
+
+        closed = true;
+        publisher.unsubscribe(this);
+
+        //Wake up the writer even if the queue is full
+        queue.clear();
+        queue.offer(CLOSE);
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    boolean offer(Event event) {
+        return !closed && queue.offer(event);
+    }
+
+    Event poll(long timeout) throws InterruptedException {
+        return queue.poll(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    Event poll() {
+        return queue.poll();
+    }
+}
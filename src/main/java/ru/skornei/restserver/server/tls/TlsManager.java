@@ -0,0 +1,201 @@
+package ru.skornei.restserver.server.tls;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+import ru.skornei.restserver.annotations.RestServer;
+
+/**
+ * HTTPS для сервера: ключи из хранилища, кэш сессий и статистика рукопожатий.
+ * Рукопожатие выполняется в потоке соединения, а не в потоке приема
+ */
+public class TlsManager {
+
+    private final SSLContext sslContext;
+
+    private final SSLSocketFactory socketFactory;
+
+    /**
+     * Разрешенные версии протокола, null - по умолчанию системы
+     */
+    private final String[] protocols;
+
+    private final AtomicLong handshakes = new AtomicLong();
+
+    private final AtomicLong resumed = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private final AtomicLong handshakeNanos = new AtomicLong();
+
+    /**
+     * @param keyStore путь к файлу или ресурсу хранилища ключей
+     * @param password пароль хранилища и ключа
+     * @param type тип хранилища, пустой - по умолчанию системы
+     * @param protocols версии протокола, пустой массив - по умолчанию системы
+     * @param sessionCacheSize сколько сессий помнить для возобновления
+     * @param sessionTimeout сколько помнить сессию, секунды
+     */
+    public TlsManager(String keyStore,
+                      char[] password,
+                      String type,
+                      String[] protocols,
+                      int sessionCacheSize,
+                      int sessionTimeout) throws IOException, GeneralSecurityException {
+        KeyStore store = KeyStore.getInstance(type.isEmpty() ? KeyStore.getDefaultType() : type);
+        InputStream inputStream = open(keyStore);
+        try {
+            store.load(inputStream, password);
+        } finally {
+            inputStream.close();
+        }
+
+        KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagerFactory.init(store, password);
+
+        this.sslContext = SSLContext.getInstance("TLS");
+        this.sslContext.init(keyManagerFactory.getKeyManagers(), null, null);
+
+        //Resumed sessions skip the key exchange, the expensive part on weak CPUs
+        SSLSessionContext sessionContext = sslContext.getServerSessionContext();
+        if (sessionContext != null) {
+            sessionContext.setSessionCacheSize(Math.max(0, sessionCacheSize));
+            sessionContext.setSessionTimeout(Math.max(0, sessionTimeout));
+        }
+
+        this.socketFactory = sslContext.getSocketFactory();
+        this.protocols = protocols.length > 0 ? protocols : null;
+    }
+
+    /**
+     * Создать по настройкам сервера
+     * @param restServer настройки сервера
+     * @param password пароль хранилища, после загрузки массив очищается.
+     *                 null - пароль из аннотации
+     * @return TLS или null, если хранилище ключей не задано
+     */
+    public static TlsManager create(RestServer restServer, char[] password) {
+        if (restServer.keyStore().isEmpty())
+            return null;
+
+        char[] passphrase = password != null ? password : restServer.keyStorePassword().toCharArray();
+        try {
+            return new TlsManager(restServer.keyStore(),
+                    passphrase,
+                    restServer.keyStoreType(),
+                    restServer.tlsProtocols(),
+                    restServer.tlsSessionCacheSize(),
+                    restServer.tlsSessionTimeout());
+        } catch (IOException | GeneralSecurityException e) {
+            //Never fall back to plain HTTP
+            throw new IllegalStateException("Could not load key store " + restServer.keyStore(), e);
+        } finally {
+            //The password is not kept in memory longer than needed
+            Arrays.fill(passphrase, '\0');
+        }
+    }
+
+    /**
+     * Обернуть принятое соединение, рукопожатие еще не начинается
+     * @param socket сокет клиента
+     * @return TLS сокет
+     */
+    public SSLSocket wrap(Socket socket) throws IOException {
+        SSLSocket sslSocket = (SSLSocket) socketFactory.createSocket(socket,
+                socket.getInetAddress().getHostAddress(),
+                socket.getPort(),
+                true);
+        sslSocket.setUseClientMode(false);
+        if (protocols != null)
+            sslSocket.setEnabledProtocols(protocols);
+
+        return sslSocket;
+    }
+
+    /**
+     * Выполнить рукопожатие и учесть его в статистике
+     * @param socket TLS сокет
+     * @return false, если рукопожатие не удалось
+     */
+    public boolean handshake(SSLSocket socket) {
+        long startMillis = System.currentTimeMillis();
+        long start = System.nanoTime();
+        try {
+            socket.startHandshake();
+        } catch (IOException e) {
+            failed.incrementAndGet();
+            return false;
+        }
+
+        handshakeNanos.addAndGet(System.nanoTime() - start);
+        handshakes.incrementAndGet();
+
+        //A resumed session was created by an earlier handshake
+        if (socket.getSession().getCreationTime() < startMillis)
+            resumed.incrementAndGet();
+
+        return true;
+    }
+
+    public SSLContext getSslContext() {
+        return sslContext;
+    }
+
+    /**
+     * Количество удачных рукопожатий
+     * @return количество
+     */
+    public long getHandshakes() {
+        return handshakes.get();
+    }
+
+    /**
+     * Количество рукопожатий с возобновлением сессии
+     * @return количество
+     */
+    public long getResumedHandshakes() {
+        return resumed.get();
+    }
+
+    /**
+     * Количество неудачных рукопожатий
+     * @return количество
+     */
+    public long getFailedHandshakes() {
+        return failed.get();
+    }
+
+    /**
+     * Время удачных рукопожатий
+     * @return наносекунды
+     */
+    public long getHandshakeNanos() {
+        return handshakeNanos.get();
+    }
+
+    private static InputStream open(String keyStore) throws IOException {
+        File file = new File(keyStore);
+        if (file.isFile())
+            return new FileInputStream(file);
+
+        InputStream inputStream = TlsManager.class.getResourceAsStream(keyStore.startsWith("/") ? keyStore : "/" + keyStore);
+        if (inputStream == null)
+            throw new FileNotFoundException(keyStore);
+
+        return inputStream;
+    }
+}
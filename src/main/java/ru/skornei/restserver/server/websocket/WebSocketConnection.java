@@ -0,0 +1,302 @@
+package ru.skornei.restserver.server.websocket;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import fi.iki.elonen.NanoHTTPD;
+import fi.iki.elonen.NanoWSD;
+import ru.skornei.restserver.server.protocol.RequestInfo;
+import ru.skornei.restserver.server.route.ControllerInfo;
+import ru.skornei.restserver.utils.ReflectionUtils;
+
+/**
+ * Соединение WebSocket. Входящие сообщения читает поток соединения,
+ * исходящие ждут отправки в ограниченной очереди и пишутся потоком рассылки
+ */
+public class WebSocketConnection extends NanoWSD.WebSocket {
+
+    private final ControllerInfo controllerInfo;
+
+    private final WebSocketEndpoint endpoint;
+
+    /**
+     * Запрос установки соединения
+     */
+    private final RequestInfo requestInfo;
+
+    /**
+     * Потоки отправки сообщений
+     */
+    private final Executor sender;
+
+    /**
+     * Сокет клиента или null
+     */
+    private final Socket socket;
+
+    private final ArrayBlockingQueue<NanoWSD.WebSocketFrame> queue;
+
+    /**
+     * Очередь уже отправляется
+     */
+    private final AtomicBoolean draining = new AtomicBoolean();
+
+    /**
+     * Клиент не успевал читать и будет отключен
+     */
+    private final AtomicBoolean evicted = new AtomicBoolean();
+
+    /**
+     * Закрыть после отправки очереди
+     */
+    private volatile boolean closeRequested;
+
+    /**
+     * Экземпляр контроллера на время соединения
+     */
+    private volatile Object controller;
+
+    private final Runnable drainTask = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    public WebSocketConnection(NanoHTTPD.IHTTPSession handshake,
+                               ControllerInfo controllerInfo,
+                               RequestInfo requestInfo,
+                               Executor sender,
+                               Socket socket) {
+        super(handshake);
+        this.controllerInfo = controllerInfo;
+        this.endpoint = controllerInfo.getWebSocket();
+        this.requestInfo = requestInfo;
+        this.sender = sender;
+        this.socket = socket;
+        this.queue = new ArrayBlockingQueue<>(endpoint.getSendQueueSize());
+        requestInfo.setWebSocket(this);
+    }
+
+    public RequestInfo getRequestInfo() {
+        return requestInfo;
+    }
+
+    /**
+     * Отправить сообщение этому клиенту
+     * @param message строка, массив байт или объект для конвертера
+     * @return false, если соединение закрыто или очередь клиента заполнена
+     */
+    public boolean send(Object message) {
+        return enqueue(endpoint.encode(message));
+    }
+
+    /**
+     * Отправить текст через очередь клиента
+     * @param payload текст
+     */
+    @Override
+    public void send(String payload) {
+        send((Object) payload);
+    }
+
+    /**
+     * Отправить массив байт через очередь клиента
+     * @param payload данные
+     */
+    @Override
+    public void send(byte[] payload) {
+        send((Object) payload);
+    }
+
+    /**
+     * Закрыть соединение после отправки сообщений из очереди
+     */
+    public void close() {
+        closeRequested = true;
+        schedule();
+    }
+
+    @Override
+    protected void onOpen() {
+        try {
+            //Without this NanoHTTPD drops idle connections after its read timeout
+            if (socket != null)
+                socket.setSoTimeout(endpoint.getIdleTimeout());
+        } catch (SocketException e) {
+            e.printStackTrace();
+        }
+
+        try {
+            controller = controllerInfo.acquire();
+        } catch (Throwable throwable) {
+            throwable.printStackTrace();
+            closeNow(NanoWSD.WebSocketFrame.CloseCode.InternalServerError, "Controller unavailable");
+            return;
+        }
+
+        //The controller was removed after the handshake
+        if (controller == null) {
+            closeNow(NanoWSD.WebSocketFrame.CloseCode.GoingAway, "Controller stopped");
+            return;
+        }
+
+        endpoint.getPublisher().add(this);
+        invoke(endpoint.getOnOpen(), null);
+    }
+
+    @Override
+    protected void onMessage(NanoWSD.WebSocketFrame message) {
+        Object value;
+        try {
+            value = endpoint.decode(message);
+        } catch (RuntimeException e) {
+            closeNow(NanoWSD.WebSocketFrame.CloseCode.InvalidFramePayloadData, "Invalid message");
+            return;
+        }
+
+        invoke(endpoint.getOnMessage(), value);
+    }
+
+    @Override
+    protected void onClose(NanoWSD.WebSocketFrame.CloseCode code, String reason, boolean initiatedByRemote) {
+        endpoint.getPublisher().remove(this);
+        queue.clear();
+
+        Object controller = this.controller;
+        this.controller = null;
+        if (controller != null) {
+            invoke(controller, endpoint.getOnClose(), null);
+            controllerInfo.release(controller);
+        }
+    }
+
+    @Override
+    protected void onPong(NanoWSD.WebSocketFrame pong) {
+    }
+
+    @Override
+    protected void onException(IOException exception) {
+    }
+
+    boolean enqueue(NanoWSD.WebSocketFrame frame) {
+        if (!isOpen() || closeRequested || evicted.get())
+            return false;
+
+        if (!queue.offer(frame)) {
+            evict();
+            return false;
+        }
+
+        schedule();
+        return true;
+    }
+
+    private void invoke(ReflectionUtils.MethodInfo methodInfo, Object value) {
+        Object controller = this.controller;
+        if (controller != null)
+            invoke(controller, methodInfo, value);
+    }
+
+    private void invoke(Object controller, ReflectionUtils.MethodInfo methodInfo, Object value) {
+        if (methodInfo == null)
+            return;
+
+        try {
+            methodInfo.invoke(controller, requestInfo, null, value);
+        } catch (InvocationTargetException e) {
+            e.getCause().printStackTrace();
+            closeNow(NanoWSD.WebSocketFrame.CloseCode.InternalServerError, "Handler failed");
+        } catch (IllegalAccessException e) {
+            e.printStackTrace();
+            closeNow(NanoWSD.WebSocketFrame.CloseCode.InternalServerError, "Handler failed");
+        }
+    }
+
+    /**
+     * Отключить клиента, который не успевает читать
+     */
+    private void evict() {
+        if (!evicted.compareAndSet(false, true))
+            return;
+
+        endpoint.getPublisher().remove(this);
+        endpoint.getPublisher().evicted();
+
+        //The sender may be blocked writing to this client, only closing the socket releases it
+        if (draining.get() && socket != null) {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        } else {
+            schedule();
+        }
+    }
+
+    private void schedule() {
+        if (!draining.compareAndSet(false, true))
+            return;
+
+        try {
+            sender.execute(drainTask);
+        } catch (RejectedExecutionException e) {
+            draining.set(false);
+        }
+    }
+
+    /**
+     * Отправить очередь, одновременно работает только одна отправка
+     */
+    private void drain() {
+        try {
+            while (true) {
+                if (evicted.get()) {
+                    queue.clear();
+                    closeNow(NanoWSD.WebSocketFrame.CloseCode.PolicyViolation, "Slow consumer");
+                    return;
+                }
+
+                NanoWSD.WebSocketFrame frame = queue.poll();
+                if (frame == null) {
+                    if (closeRequested)
+                        closeNow(NanoWSD.WebSocketFrame.CloseCode.NormalClosure, "");
+                    return;
+                }
+
+                if (!isOpen()) {
+                    queue.clear();
+                    return;
+                }
+
+                sendFrame(frame);
+            }
+        } catch (IOException e) {
+            queue.clear();
+        } finally {
+            draining.set(false);
+
+            //A message or a close may have arrived after the last poll, its schedule was skipped
+            if ((!queue.isEmpty() || closeRequested || evicted.get()) && isOpen())
+                schedule();
+        }
+    }
+
+    private void closeNow(NanoWSD.WebSocketFrame.CloseCode code, String reason) {
+        if (!isOpen())
+            return;
+
+        //Nothing more is published while waiting for the client to answer
+        endpoint.getPublisher().remove(this);
+        try {
+            close(code, reason, false);
+        } catch (IOException ignored) {
+        }
+    }
+}
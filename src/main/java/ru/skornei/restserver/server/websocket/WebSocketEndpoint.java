@@ -0,0 +1,121 @@
+package ru.skornei.restserver.server.websocket;
+
+import java.nio.charset.CharacterCodingException;
+
+import fi.iki.elonen.NanoWSD;
+import ru.skornei.restserver.annotations.WebSocket;
+import ru.skornei.restserver.annotations.websocket.OnClose;
+import ru.skornei.restserver.annotations.websocket.OnMessage;
+import ru.skornei.restserver.annotations.websocket.OnOpen;
+import ru.skornei.restserver.server.converter.BaseConverter;
+import ru.skornei.restserver.utils.ReflectionUtils;
+
+/**
+ * Описание контроллера WebSocket, собранное один раз при создании сервера
+ */
+public class WebSocketEndpoint {
+
+    private final ReflectionUtils.MethodInfo onOpen;
+
+    private final ReflectionUtils.MethodInfo onMessage;
+
+    private final ReflectionUtils.MethodInfo onClose;
+
+    /**
+     * Преобразование сообщений, которые не строки и не массивы байт
+     */
+    private final BaseConverter converter;
+
+    private final int sendQueueSize;
+
+    private final int idleTimeout;
+
+    /**
+     * Рассылка всем соединениям контроллера
+     */
+    private final WebSocketPublisher publisher;
+
+    public WebSocketEndpoint(Class<?> type, BaseConverter converter) {
+        WebSocket webSocket = type.getAnnotation(WebSocket.class);
+        this.onOpen = ReflectionUtils.getDeclaredMethodInfo(type, OnOpen.class);
+        this.onMessage = ReflectionUtils.getDeclaredMethodInfo(type, OnMessage.class);
+        this.onClose = ReflectionUtils.getDeclaredMethodInfo(type, OnClose.class);
+        this.converter = converter;
+        this.sendQueueSize = Math.max(1, webSocket.sendQueueSize());
+        this.idleTimeout = Math.max(0, webSocket.idleTimeout());
+        this.publisher = new WebSocketPublisher(this);
+    }
+
+    public ReflectionUtils.MethodInfo getOnOpen() {
+        return onOpen;
+    }
+
+    public ReflectionUtils.MethodInfo getOnMessage() {
+        return onMessage;
+    }
+
+    public ReflectionUtils.MethodInfo getOnClose() {
+        return onClose;
+    }
+
+    public int getSendQueueSize() {
+        return sendQueueSize;
+    }
+
+    public int getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public WebSocketPublisher getPublisher() {
+        return publisher;
+    }
+
+    /**
+     * Нужна ли аутентификация до установки соединения
+     * @return да или нет
+     */
+    public boolean isRequiresAuthentication() {
+        return onOpen != null && onOpen.isRequiresAuthentication();
+    }
+
+    /**
+     * Получить сообщение для OnMessage
+     * @param frame кадр
+     * @return сообщение или null, если обработчик его не принимает
+     */
+    Object decode(NanoWSD.WebSocketFrame frame) {
+        Class<?> paramClass = onMessage != null ? onMessage.getParamClass() : null;
+        if (paramClass == null)
+            return null;
+
+        if (String.class.equals(paramClass))
+            return frame.getTextPayload();
+
+        if (byte[].class.equals(paramClass))
+            return frame.getBinaryPayload();
+
+        if (converter == null)
+            throw new IllegalStateException("No converter for " + paramClass.getName());
+
+        return converter.writeValue(frame.getBinaryPayload(), paramClass);
+    }
+
+    /**
+     * Записать сообщение в кадр
+     * @param message строка, массив байт или объект для конвертера
+     * @return кадр
+     */
+    NanoWSD.WebSocketFrame encode(Object message) {
+        if (message instanceof byte[])
+            return new NanoWSD.WebSocketFrame(NanoWSD.WebSocketFrame.OpCode.Binary, true, (byte[]) message);
+
+        try {
+            if (message instanceof String || converter == null)
+                return new NanoWSD.WebSocketFrame(NanoWSD.WebSocketFrame.OpCode.Text, true, String.valueOf(message));
+        } catch (CharacterCodingException e) {
+            throw new IllegalArgumentException(e);
+        }
+
+        return new NanoWSD.WebSocketFrame(NanoWSD.WebSocketFrame.OpCode.Text, true, converter.writeValueAsBytes(message));
+    }
+}
@@ -0,0 +1,80 @@
+package ru.skornei.restserver.server.websocket;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicLong;
+
+import fi.iki.elonen.NanoWSD;
+
+/**
+ * Рассылка сообщений всем соединениям контроллера WebSocket
+ */
+public class WebSocketPublisher {
+
+    private final WebSocketEndpoint endpoint;
+
+    private final Set<WebSocketConnection> connections =
+            Collections.newSetFromMap(new ConcurrentHashMap<WebSocketConnection, Boolean>());
+
+    /**
+     * Отключено медленных клиентов
+     */
+    private final AtomicLong evicted = new AtomicLong();
+
+    WebSocketPublisher(WebSocketEndpoint endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    /**
+     * Отправить сообщение всем соединениям, оно преобразуется один раз
+     * @param message строка, массив байт или объект для конвертера
+     * @return сколько соединений получат сообщение
+     */
+    public int publish(Object message) {
+        NanoWSD.WebSocketFrame frame = endpoint.encode(message);
+        int sent = 0;
+        for (WebSocketConnection connection : connections) {
+            if (connection.enqueue(frame))
+                sent++;
+        }
+
+        return sent;
+    }
+
+    /**
+     * Количество открытых соединений
+     * @return количество
+     */
+    public int getConnections() {
+        return connections.size();
+    }
+
+    /**
+     * Количество отключенных медленных клиентов
+     * @return количество
+     */
+    public long getEvicted() {
+        return evicted.get();
+    }
+
+    /**
+     * Закрыть все соединения
+     */
+    public void close() {
+        for (WebSocketConnection connection : connections)
+            connection.close();
+    }
+
+    void add(WebSocketConnection connection) {
+        connections.add(connection);
+    }
+
+    void remove(WebSocketConnection connection) {
+        connections.remove(connection);
+    }
+
+    void evicted() {
+        evicted.incrementAndGet();
+    }
+}
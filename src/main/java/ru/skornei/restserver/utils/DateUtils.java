@@ -0,0 +1,50 @@
+package ru.skornei.restserver.utils;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+public class DateUtils {
+
+    /**
+     * Формат даты в заголовках http
+     */
+    private static final String HTTP_DATE_FORMAT = "EEE, dd MMM yyyy HH:mm:ss 'GMT'";
+
+    private DateUtils() {
+        throw new RuntimeException();
+    }
+
+    /**
+     * Дата для заголовка http
+     * @param time время в миллисекундах
+     * @return строка
+     */
+    public static String formatHttpDate(long time) {
+        return createFormat().format(new Date(time));
+    }
+
+    /**
+     * Разобрать дату из заголовка http
+     * @param value строка
+     * @return время в миллисекундах или -1
+     */
+    public static long parseHttpDate(String value) {
+        if (value == null)
+            return -1;
+
+        try {
+            return createFormat().parse(value.trim()).getTime();
+        } catch (ParseException e) {
+            return -1;
+        }
+    }
+
+    private static SimpleDateFormat createFormat() {
+        SimpleDateFormat format = new SimpleDateFormat(HTTP_DATE_FORMAT, Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        return format;
+    }
+}
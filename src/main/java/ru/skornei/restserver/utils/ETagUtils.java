@@ -0,0 +1,76 @@
+package ru.skornei.restserver.utils;
+
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import ru.skornei.restserver.server.dictionary.HeaderType;
+
+public class ETagUtils {
+
+    private ETagUtils() {
+        throw new RuntimeException();
+    }
+
+    /**
+     * ETag по содержимому тела: размер и CRC32
+     * @param body тело
+     * @return ETag в кавычках
+     */
+    public static String createETag(byte[] body) {
+        CRC32 crc = new CRC32();
+        crc.update(body, 0, body.length);
+        return "\"" + Integer.toHexString(body.length) + "-" + Long.toHexString(crc.getValue()) + "\"";
+    }
+
+    /**
+     * Взять версию в кавычки, если их нет
+     * @param tag версия или ETag
+     * @return ETag
+     */
+    public static String quote(String tag) {
+        if (tag.startsWith("\"") || tag.startsWith("W/\""))
+            return tag;
+
+        return "\"" + tag.replace("\"", "") + "\"";
+    }
+
+    /**
+     * Не изменился ли ответ по If-None-Match и If-Modified-Since
+     * @param requestHeaders заголовки запроса
+     * @param etag ETag ответа или null
+     * @param lastModified время изменения или -1
+     * @return да или нет
+     */
+    public static boolean isNotModified(Map<String, String> requestHeaders, String etag, long lastModified) {
+        String ifNoneMatch = requestHeaders.get(HeaderType.IF_NONE_MATCH);
+        if (ifNoneMatch != null)
+            return etag != null && matches(ifNoneMatch, etag);
+
+        if (lastModified < 0)
+            return false;
+
+        long ifModifiedSince = DateUtils.parseHttpDate(requestHeaders.get(HeaderType.IF_MODIFIED_SINCE));
+        return ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+    }
+
+    /**
+     * Есть ли ETag в списке If-None-Match, сравнение без учета W/
+     * @param header заголовок
+     * @param etag ETag
+     * @return да или нет
+     */
+    public static boolean matches(String header, String etag) {
+        if (etag.startsWith("W/"))
+            etag = etag.substring(2);
+
+        for (String value : header.split(",")) {
+            value = value.trim();
+            if (value.startsWith("W/"))
+                value = value.substring(2);
+            if (value.equals("*") || value.equals(etag))
+                return true;
+        }
+
+        return false;
+    }
+}
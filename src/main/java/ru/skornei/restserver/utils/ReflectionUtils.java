@@ -1,16 +1,27 @@
 package ru.skornei.restserver.utils;
 
-import android.content.Context;
-
 import java.lang.annotation.Annotation;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.nio.channels.Channels;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Future;
 
+import ru.skornei.restserver.Cache;
 import ru.skornei.restserver.annotations.Accept;
+import ru.skornei.restserver.annotations.CacheEvict;
+import ru.skornei.restserver.annotations.Cacheable;
+import ru.skornei.restserver.annotations.Compress;
+import ru.skornei.restserver.annotations.Principal;
 import ru.skornei.restserver.annotations.Produces;
 import ru.skornei.restserver.annotations.RequiresAuthentication;
+import ru.skornei.restserver.annotations.Timeout;
+import ru.skornei.restserver.server.invoker.BaseInvoker;
+import ru.skornei.restserver.server.invoker.Invokers;
+import ru.skornei.restserver.server.invoker.ParamType;
+import ru.skornei.restserver.server.protocol.MediaType;
 import ru.skornei.restserver.server.protocol.RequestInfo;
 import ru.skornei.restserver.server.protocol.ResponseInfo;
 
@@ -22,92 +33,290 @@ public class ReflectionUtils {
 
     /**
      * Information about the method
+     * Аннотации читаются один раз при создании
      */
     public static class MethodInfo {
 
-        private Object object;
-        private Method method;
+        private final Method method;
+        private final BaseInvoker invoker;
+        private final ParamType[] paramTypes;
+        private final List<MediaType> produces;
+        private final List<MediaType> accept;
+        private final Class paramClass;
+        private final boolean voidResult;
+        private final boolean requiresAuthentication;
+        private final boolean streamingBody;
+        private final Compress compress;
+        private final Cacheable cacheable;
+        private final boolean cacheEvict;
+        private final boolean async;
+        private final long timeout;
 
-        public MethodInfo(Object object, Method method) {
-            this.object = object;
+        public MethodInfo(Method method) {
             this.method = method;
+            this.invoker = Invokers.create(method);
+            this.paramTypes = readParamTypes(method);
+            this.produces = readProduces(method);
+            this.accept = readAccept(method);
+            this.paramClass = readParamClass(method, paramTypes);
+            this.voidResult = method.getReturnType().equals(Void.TYPE) &&
+                    !hasParamType(paramTypes, ParamType.ASYNC_RESPONSE);
+            this.async = Future.class.isAssignableFrom(method.getReturnType()) ||
+                    hasParamType(paramTypes, ParamType.ASYNC_RESPONSE);
+            this.timeout = method.isAnnotationPresent(Timeout.class) ? method.getAnnotation(Timeout.class).value() : -1;
+            this.requiresAuthentication = method.isAnnotationPresent(RequiresAuthentication.class);
+            this.streamingBody = hasParamType(paramTypes, ParamType.BODY_STREAM) ||
+                    hasParamType(paramTypes, ParamType.BODY_CHANNEL);
+            this.compress = method.getAnnotation(Compress.class);
+            this.cacheable = method.getAnnotation(Cacheable.class);
+            this.cacheEvict = method.isAnnotationPresent(CacheEvict.class);
         }
 
-        public String getProduces() {
-            Annotation annotation = method.getAnnotation(Produces.class);
-            if (annotation != null)
-                return ((Produces) annotation).value();
-
-            return null;
+        public Method getMethod() {
+            return method;
         }
 
-        public String getAccept() {
-            Annotation annotation = method.getAnnotation(Accept.class);
-            if (annotation != null)
-                return ((Accept) annotation).value();
+        /**
+         * Типы ответа в порядке предпочтения
+         * @return список, пустой если не указаны
+         */
+        public List<MediaType> getProduces() {
+            return produces;
+        }
 
-            return null;
+        /**
+         * Допустимые типы тела запроса
+         * @return список, пустой если не указаны
+         */
+        public List<MediaType> getAccept() {
+            return accept;
         }
 
         public Class getParamClass() {
-            for (Class cls : method.getParameterTypes()) {
-                if (!Context.class.equals(cls) &&
-                        !ResponseInfo.class.equals(cls) &&
-                        !RequestInfo.class.equals(cls))
-                    return cls;
-            }
-
-            return null;
+            return paramClass;
         }
 
         public boolean isVoidResult() {
-            return method.getReturnType().equals(Void.TYPE);
+            return voidResult;
         }
 
         public boolean isRequiresAuthentication() {
-            Annotation annotation = method.getAnnotation(RequiresAuthentication.class);
-            if (annotation != null)
-                return true;
+            return requiresAuthentication;
+        }
 
-            return false;
+        /**
+         * Обработчик сам читает тело запроса из потока
+         * @return да или нет
+         */
+        public boolean isStreamingBody() {
+            return streamingBody;
+        }
+
+        /**
+         * Настройки сжатия ответа
+         * @return аннотация или null
+         */
+        public Compress getCompress() {
+            return compress;
         }
 
-        public Object invoke(Object... params) throws NoSuchMethodException, InvocationTargetException, IllegalAccessException {
-            List<Object> newParams = new ArrayList<>();
+        /**
+         * Настройки кэша ответов
+         * @return аннотация или null
+         */
+        public Cacheable getCacheable() {
+            return cacheable;
+        }
 
-            //Сортируем в порядке указаных параметров
-            for (Class cls : method.getParameterTypes()) {
-                for (Object param : params) {
-                    if (cls.isInstance(param)) {
-                        newParams.add(param);
+        /**
+         * Очищать кэш ответов контроллера после вызова
+         * @return да или нет
+         */
+        public boolean isCacheEvict() {
+            return cacheEvict;
+        }
+
+        /**
+         * Результат будет готов позже: метод возвращает Future или принимает AsyncResponse
+         * @return да или нет
+         */
+        public boolean isAsync() {
+            return async;
+        }
+
+        /**
+         * Сколько ждать результат
+         * @return миллисекунды, -1 если не задано
+         */
+        public long getTimeout() {
+            return timeout;
+        }
+
+        /**
+         * Вызвать обработчик запроса
+         * @param object контроллер
+         * @param requestInfo запрос
+         * @param responseInfo ответ
+         * @param paramObject объект из тела запроса
+         * @return результат метода
+         */
+        public Object invoke(Object object,
+                             RequestInfo requestInfo,
+                             ResponseInfo responseInfo,
+                             Object paramObject) throws InvocationTargetException, IllegalAccessException {
+            return invoker.invoke(object, arguments(requestInfo, responseInfo, paramObject, null));
+        }
+
+        /**
+         * Вызвать обработчик исключений
+         * @param object контроллер
+         * @param throwable исключение
+         * @param responseInfo ответ
+         * @return результат метода
+         */
+        public Object invoke(Object object,
+                             Throwable throwable,
+                             ResponseInfo responseInfo) throws InvocationTargetException, IllegalAccessException {
+            return invoker.invoke(object, arguments(null, responseInfo, null, throwable));
+        }
+
+        /**
+         * Вызвать метод жизненного цикла контроллера
+         * @param object контроллер
+         * @return результат метода
+         */
+        public Object invoke(Object object) throws InvocationTargetException, IllegalAccessException {
+            return invoker.invoke(object, arguments(null, null, null, null));
+        }
+
+        /**
+         * Раскладываем аргументы по заранее определенным позициям
+         */
+        private Object[] arguments(RequestInfo requestInfo,
+                                   ResponseInfo responseInfo,
+                                   Object paramObject,
+                                   Throwable throwable) {
+            Object[] args = new Object[paramTypes.length];
+            for (int i = 0; i < paramTypes.length; i++) {
+                switch (paramTypes[i]) {
+                    case CONTEXT:
+                        args[i] = Cache.getContext();
+                        break;
+                    case REQUEST_INFO:
+                        args[i] = requestInfo;
+                        break;
+                    case RESPONSE_INFO:
+                        args[i] = responseInfo;
+                        break;
+                    case THROWABLE:
+                        args[i] = throwable;
+                        break;
+                    case BODY_STREAM:
+                        args[i] = requestInfo != null ? requestInfo.getBodyStream() : null;
+                        break;
+                    case BODY_CHANNEL:
+                        args[i] = requestInfo != null ? Channels.newChannel(requestInfo.getBodyStream()) : null;
+                        break;
+                    case EVENT_SUBSCRIBER:
+                        args[i] = responseInfo != null ? responseInfo.getEventSubscriber() : null;
+                        break;
+                    case WEB_SOCKET:
+                        args[i] = requestInfo != null ? requestInfo.getWebSocket() : null;
+                        break;
+                    case ASYNC_RESPONSE:
+                        args[i] = responseInfo != null ? responseInfo.getAsyncResponse() : null;
+                        break;
+                    case PRINCIPAL:
+                        args[i] = requestInfo != null ? requestInfo.getPrincipal() : null;
+                        break;
+                    case BODY:
+                        args[i] = paramObject;
                         break;
-                    }
                 }
             }
 
-            return method.invoke(object, newParams.toArray());
+            return args;
+        }
+
+        private static ParamType[] readParamTypes(Method method) {
+            Class<?>[] parameterTypes = method.getParameterTypes();
+            Annotation[][] parameterAnnotations = method.getParameterAnnotations();
+            ParamType[] paramTypes = new ParamType[parameterTypes.length];
+            for (int i = 0; i < parameterTypes.length; i++) {
+                paramTypes[i] = ParamType.of(parameterTypes[i]);
+                for (Annotation annotation : parameterAnnotations[i]) {
+                    if (annotation instanceof Principal)
+                        paramTypes[i] = ParamType.PRINCIPAL;
+                }
+            }
+
+            return paramTypes;
+        }
+
+        private static List<MediaType> readProduces(Method method) {
+            Annotation annotation = method.getAnnotation(Produces.class);
+            if (annotation != null)
+                return parseMediaTypes(((Produces) annotation).value());
+
+            return Collections.emptyList();
+        }
+
+        private static List<MediaType> readAccept(Method method) {
+            Annotation annotation = method.getAnnotation(Accept.class);
+            if (annotation != null)
+                return parseMediaTypes(((Accept) annotation).value());
+
+            return Collections.emptyList();
+        }
+
+        private static List<MediaType> parseMediaTypes(String[] values) {
+            List<MediaType> mediaTypes = new ArrayList<>();
+            for (String value : values) {
+                MediaType mediaType = MediaType.parse(value);
+                if (mediaType != null)
+                    mediaTypes.add(mediaType);
+            }
+
+            return Collections.unmodifiableList(mediaTypes);
+        }
+
+        private static boolean hasParamType(ParamType[] paramTypes, ParamType paramType) {
+            for (ParamType type : paramTypes) {
+                if (type == paramType)
+                    return true;
+            }
+
+            return false;
+        }
+
+        private static Class readParamClass(Method method, ParamType[] paramTypes) {
+            for (int i = 0; i < paramTypes.length; i++) {
+                if (paramTypes[i] == ParamType.BODY)
+                    return method.getParameterTypes()[i];
+            }
+
+            return null;
         }
     }
 
     /**
      * Получаем метод с нужной аннотацией
-     * @param object объект
      * @param type класс
      * @param annotationClass аннотация
      * @return метод
      */
-    public static MethodInfo getDeclaredMethodInfo(Object object, Class<?> type, Class annotationClass) {
+    public static MethodInfo getDeclaredMethodInfo(Class<?> type, Class annotationClass) {
         Method[] methods = type.getMethods();
 
         for (Method method : methods) {
             Annotation annotation = method.getAnnotation(annotationClass);
             if (annotation != null)
-                return new MethodInfo(object, method);
+                return new MethodInfo(method);
         }
 
         Class<?> parentType = type.getSuperclass();
         if (parentType != null) {
-            return getDeclaredMethodInfo(object, parentType, annotationClass);
+            return getDeclaredMethodInfo(parentType, annotationClass);
         }
 
         return null;
@@ -0,0 +1,144 @@
+package ru.skornei.restserver.benchmark;
+
+import java.nio.charset.Charset;
+
+import ru.skornei.restserver.annotations.ExceptionHandler;
+import ru.skornei.restserver.annotations.Produces;
+import ru.skornei.restserver.annotations.RequiresAuthentication;
+import ru.skornei.restserver.annotations.RestController;
+import ru.skornei.restserver.annotations.RestServer;
+import ru.skornei.restserver.annotations.methods.GET;
+import ru.skornei.restserver.annotations.methods.POST;
+import ru.skornei.restserver.server.BaseRestServer;
+import ru.skornei.restserver.server.authentication.BaseAuthentication;
+import ru.skornei.restserver.server.converter.BaseConverter;
+import ru.skornei.restserver.server.dictionary.ContentType;
+import ru.skornei.restserver.server.dictionary.HeaderType;
+import ru.skornei.restserver.server.dictionary.ResponseStatus;
+import ru.skornei.restserver.server.protocol.RequestInfo;
+import ru.skornei.restserver.server.protocol.ResponseInfo;
+
+/**
+ * Сервер с типичными обработчиками для замеров
+ */
+@RestServer(port = BenchmarkServer.PORT,
+        converter = BenchmarkServer.ReadingConverter.class,
+        authentication = BenchmarkServer.TokenAuthentication.class,
+        controllers = {BenchmarkServer.PingController.class,
+                BenchmarkServer.ReadingController.class,
+                BenchmarkServer.SecureController.class,
+                BenchmarkServer.FailingController.class})
+public class BenchmarkServer extends BaseRestServer {
+
+    public static final int PORT = 18765;
+
+    public static final String TOKEN = "Bearer benchmark";
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    public static final byte[] READING_JSON = bytes("{\"device\":\"sensor-42\",\"value\":21.5,\"time\":1500000000000}");
+
+    /**
+     * Показание датчика
+     */
+    public static class Reading {
+        public String device;
+        public double value;
+        public long time;
+    }
+
+    @RestController("/ping")
+    public static class PingController {
+
+        private static final byte[] PONG = bytes("pong");
+
+        @GET
+        public void ping(ResponseInfo responseInfo) {
+            responseInfo.setBody(PONG);
+        }
+    }
+
+    @RestController("/devices/{id}/readings")
+    public static class ReadingController {
+
+        @POST
+        @Produces(ContentType.APPLICATION_JSON)
+        public Reading post(Reading reading) {
+            reading.value *= 2;
+            return reading;
+        }
+    }
+
+    @RestController("/secure")
+    public static class SecureController {
+
+        @GET
+        @RequiresAuthentication
+        public void get(ResponseInfo responseInfo) {
+            responseInfo.setBody(PingController.PONG);
+        }
+    }
+
+    @RestController("/failing")
+    public static class FailingController {
+
+        private static final IllegalStateException FAILURE = new IllegalStateException("failure");
+
+        @GET
+        public void get() {
+            throw FAILURE;
+        }
+
+        @ExceptionHandler
+        public void handle(Throwable throwable, ResponseInfo responseInfo) {
+            responseInfo.setStatus(ResponseStatus.BAD_REQUEST);
+            //Reflection wraps what the handler threw
+            Throwable cause = throwable.getCause() != null ? throwable.getCause() : throwable;
+            responseInfo.setBody(bytes(cause.getMessage()));
+        }
+    }
+
+    /**
+     * Простой разбор плоского JSON показания
+     */
+    public static class ReadingConverter implements BaseConverter {
+
+        @Override
+        public byte[] writeValueAsBytes(Object value) {
+            Reading reading = (Reading) value;
+            return bytes("{\"device\":\"" + reading.device +
+                    "\",\"value\":" + reading.value +
+                    ",\"time\":" + reading.time + "}");
+        }
+
+        @Override
+        public <T> T writeValue(byte[] src, Class<T> valueType) {
+            String json = new String(src, 0, src.length, UTF8);
+            Reading reading = new Reading();
+            reading.device = field(json, "device").replace("\"", "");
+            reading.value = Double.parseDouble(field(json, "value"));
+            reading.time = Long.parseLong(field(json, "time"));
+            return valueType.cast(reading);
+        }
+
+        private static String field(String json, String name) {
+            int start = json.indexOf("\"" + name + "\":") + name.length() + 3;
+            int end = start;
+            while (end < json.length() && json.charAt(end) != ',' && json.charAt(end) != '}')
+                end++;
+            return json.substring(start, end).trim();
+        }
+    }
+
+    public static class TokenAuthentication implements BaseAuthentication {
+
+        @Override
+        public boolean authentication(RequestInfo requestInfo) {
+            return TOKEN.equals(requestInfo.getHeaders().get(HeaderType.CONTENT_AUTHORIZATION));
+        }
+    }
+
+    static byte[] bytes(String value) {
+        return value.getBytes(UTF8);
+    }
+}
@@ -0,0 +1,120 @@
+package ru.skornei.restserver.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import ru.skornei.restserver.server.invoker.MethodHandleInvoker;
+import ru.skornei.restserver.server.invoker.ReflectionInvoker;
+import ru.skornei.restserver.server.protocol.RequestInfo;
+import ru.skornei.restserver.server.protocol.ResponseInfo;
+import ru.skornei.restserver.utils.ReflectionUtils;
+
+/**
+ * Сравнение вызова обработчика: старый путь с сортировкой аргументов
+ * и Method.invoke против заранее разложенных аргументов.
+ *
+ * Запуск: main из IDE или gradle test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InvokerBenchmark {
+
+    public static class Body {
+        int value = 42;
+    }
+
+    public static class Controller {
+        public Body handle(RequestInfo requestInfo, ResponseInfo responseInfo, Body body) {
+            return body;
+        }
+    }
+
+    private Controller controller;
+    private RequestInfo requestInfo;
+    private ResponseInfo responseInfo;
+    private Body body;
+
+    private Method method;
+    private ReflectionUtils.MethodInfo methodInfo;
+    private ReflectionInvoker reflectionInvoker;
+    private MethodHandleInvoker methodHandleInvoker;
+
+    @Setup
+    public void setup() throws Exception {
+        controller = new Controller();
+        requestInfo = new RequestInfo("127.0.0.1",
+                Collections.<String, String>emptyMap(),
+                Collections.<String, List<String>>emptyMap());
+        responseInfo = new ResponseInfo();
+        body = new Body();
+
+        method = Controller.class.getMethod("handle", RequestInfo.class, ResponseInfo.class, Body.class);
+        methodInfo = new ReflectionUtils.MethodInfo(method);
+        reflectionInvoker = new ReflectionInvoker(method);
+        methodHandleInvoker = new MethodHandleInvoker(method);
+    }
+
+    /**
+     * Прежняя реализация MethodInfo.invoke
+     */
+    @Benchmark
+    public Object legacyReflective() throws Exception {
+        Object[] params = new Object[]{null, requestInfo, responseInfo, body};
+        List<Object> newParams = new ArrayList<>();
+        for (Class cls : method.getParameterTypes()) {
+            for (Object param : params) {
+                if (cls.isInstance(param)) {
+                    newParams.add(param);
+                    break;
+                }
+            }
+        }
+
+        return method.invoke(controller, newParams.toArray());
+    }
+
+    @Benchmark
+    public Object methodInfo() throws Exception {
+        return methodInfo.invoke(controller, requestInfo, responseInfo, body);
+    }
+
+    @Benchmark
+    public Object reflectionInvoker() throws Exception {
+        return reflectionInvoker.invoke(controller, new Object[]{requestInfo, responseInfo, body});
+    }
+
+    @Benchmark
+    public Object methodHandleInvoker() throws Exception {
+        return methodHandleInvoker.invoke(controller, new Object[]{requestInfo, responseInfo, body});
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(InvokerBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,175 @@
+package ru.skornei.restserver.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Запросы через loopback от нескольких клиентов с keep-alive соединениями.
+ * Включает разбор http в NanoHTTPD, отправку ответа и переключение потоков
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class LoopbackBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Server {
+
+        private BenchmarkServer server;
+
+        @Setup(Level.Trial)
+        public void start() throws IOException {
+            server = new BenchmarkServer();
+            server.start();
+        }
+
+        @TearDown(Level.Trial)
+        public void stop() {
+            server.stop();
+        }
+    }
+
+    /**
+     * Соединение клиента, одно на поток
+     */
+    @State(Scope.Thread)
+    public static class Client {
+
+        private static final byte[] PING = BenchmarkServer.bytes("GET /ping HTTP/1.1\r\n" +
+                "Host: localhost\r\n" +
+                "Connection: keep-alive\r\n\r\n");
+
+        private static final byte[] POST = BenchmarkServer.bytes("POST /devices/42/readings HTTP/1.1\r\n" +
+                "Host: localhost\r\n" +
+                "Content-Type: application/json\r\n" +
+                "Content-Length: " + BenchmarkServer.READING_JSON.length + "\r\n" +
+                "Connection: keep-alive\r\n\r\n");
+
+        private Socket socket;
+        private InputStream in;
+        private OutputStream out;
+        private final byte[] buffer = new byte[8192];
+
+        @Setup(Level.Trial)
+        public void connect(Server server) throws IOException {
+            socket = new Socket(InetAddress.getLoopbackAddress(), BenchmarkServer.PORT);
+            socket.setTcpNoDelay(true);
+            in = new BufferedInputStream(socket.getInputStream());
+            out = socket.getOutputStream();
+        }
+
+        @TearDown(Level.Trial)
+        public void close() throws IOException {
+            socket.close();
+        }
+
+        int exchange(byte[] head, byte[] body) throws IOException {
+            out.write(head);
+            if (body != null)
+                out.write(body);
+            out.flush();
+            return readResponse();
+        }
+
+        /**
+         * Прочитать ответ с Content-Length
+         * @return размер тела
+         */
+        private int readResponse() throws IOException {
+            int contentLength = 0;
+            int lineLength;
+            while ((lineLength = readLine()) > 0) {
+                if (startsWithIgnoreCase(lineLength, "content-length:"))
+                    contentLength = parseInt(15, lineLength);
+            }
+
+            int remaining = contentLength;
+            while (remaining > 0) {
+                int read = in.read(buffer, 0, Math.min(buffer.length, remaining));
+                if (read < 0)
+                    throw new EOFException();
+                remaining -= read;
+            }
+
+            return contentLength;
+        }
+
+        private int readLine() throws IOException {
+            int length = 0;
+            int b;
+            while ((b = in.read()) != '\n') {
+                if (b < 0)
+                    throw new EOFException();
+                if (b != '\r' && length < buffer.length)
+                    buffer[length++] = (byte) b;
+            }
+            return length;
+        }
+
+        private boolean startsWithIgnoreCase(int length, String prefix) {
+            if (length < prefix.length())
+                return false;
+            for (int i = 0; i < prefix.length(); i++) {
+                if (Character.toLowerCase((char) buffer[i]) != prefix.charAt(i))
+                    return false;
+            }
+            return true;
+        }
+
+        private int parseInt(int from, int to) {
+            int value = 0;
+            for (int i = from; i < to; i++) {
+                if (buffer[i] >= '0' && buffer[i] <= '9')
+                    value = value * 10 + buffer[i] - '0';
+            }
+            return value;
+        }
+    }
+
+    @Benchmark
+    public int tinyGet(Client client) throws IOException {
+        return client.exchange(Client.PING, null);
+    }
+
+    @Benchmark
+    public int jsonPost(Client client) throws IOException {
+        return client.exchange(Client.POST, BenchmarkServer.READING_JSON);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(LoopbackBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,114 @@
+package ru.skornei.restserver.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import fi.iki.elonen.NanoHTTPD;
+import ru.skornei.restserver.server.dictionary.HeaderType;
+
+/**
+ * Запрос без сокета. Тело перематывается перед каждым вызовом,
+ * поэтому один объект используется во всех итерациях
+ */
+public class MockSession implements NanoHTTPD.IHTTPSession {
+
+    private final NanoHTTPD.Method method;
+    private final String uri;
+    private final Map<String, String> headers = new HashMap<>();
+    private final Map<String, List<String>> parameters = new HashMap<>();
+    private final ByteArrayInputStream body;
+
+    public MockSession(NanoHTTPD.Method method, String uri, byte[] body) {
+        this.method = method;
+        this.uri = uri;
+        this.body = new ByteArrayInputStream(body != null ? body : new byte[0]);
+        if (body != null)
+            headers.put(HeaderType.CONTENT_LENGTH, String.valueOf(body.length));
+    }
+
+    public MockSession header(String name, String value) {
+        headers.put(name, value);
+        return this;
+    }
+
+    public MockSession parameter(String name, String value) {
+        if (!parameters.containsKey(name))
+            parameters.put(name, new LinkedList<String>());
+        parameters.get(name).add(value);
+        return this;
+    }
+
+    /**
+     * Подготовить к следующему вызову serve
+     * @return запрос
+     */
+    public MockSession rewind() {
+        body.reset();
+        return this;
+    }
+
+    @Override
+    public void execute() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public NanoHTTPD.CookieHandler getCookies() {
+        return null;
+    }
+
+    @Override
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return body;
+    }
+
+    @Override
+    public NanoHTTPD.Method getMethod() {
+        return method;
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public Map<String, String> getParms() {
+        return Collections.emptyMap();
+    }
+
+    @Override
+    public Map<String, List<String>> getParameters() {
+        return parameters;
+    }
+
+    @Override
+    public String getQueryParameterString() {
+        return null;
+    }
+
+    @Override
+    public String getUri() {
+        return uri;
+    }
+
+    @Override
+    public void parseBody(Map<String, String> files) {
+    }
+
+    @Override
+    public String getRemoteIpAddress() {
+        return "127.0.0.1";
+    }
+
+    @Override
+    public String getRemoteHostName() {
+        return "localhost";
+    }
+}
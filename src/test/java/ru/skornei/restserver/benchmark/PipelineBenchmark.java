@@ -0,0 +1,100 @@
+package ru.skornei.restserver.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+import fi.iki.elonen.NanoHTTPD;
+import ru.skornei.restserver.server.dictionary.ContentType;
+import ru.skornei.restserver.server.dictionary.HeaderType;
+
+/**
+ * Обработка запроса без сети: от IHTTPSession до готового Response.
+ * Запуск с -prof gc показывает выделение памяти на запрос.
+ * Запросы перематываются, поэтому у каждого потока свои
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PipelineBenchmark {
+
+    private BenchmarkServer server;
+
+    private MockSession tinyGet;
+    private MockSession jsonPost;
+    private MockSession authenticated;
+    private MockSession unauthorized;
+    private MockSession exceptionHandler;
+    private MockSession notFound;
+
+    @Setup
+    public void setup() {
+        server = new BenchmarkServer();
+
+        tinyGet = new MockSession(NanoHTTPD.Method.GET, "/ping", null);
+        jsonPost = new MockSession(NanoHTTPD.Method.POST, "/devices/42/readings", BenchmarkServer.READING_JSON)
+                .header(HeaderType.CONTENT_TYPE, ContentType.APPLICATION_JSON);
+        authenticated = new MockSession(NanoHTTPD.Method.GET, "/secure", null)
+                .header(HeaderType.CONTENT_AUTHORIZATION, BenchmarkServer.TOKEN);
+        unauthorized = new MockSession(NanoHTTPD.Method.GET, "/secure", null)
+                .header(HeaderType.CONTENT_AUTHORIZATION, "Bearer wrong");
+        exceptionHandler = new MockSession(NanoHTTPD.Method.GET, "/failing", null);
+        notFound = new MockSession(NanoHTTPD.Method.GET, "/missing/route", null);
+    }
+
+    @Benchmark
+    public NanoHTTPD.Response tinyGet() {
+        return server.serve(tinyGet.rewind());
+    }
+
+    @Benchmark
+    public NanoHTTPD.Response jsonPost() {
+        return server.serve(jsonPost.rewind());
+    }
+
+    @Benchmark
+    public NanoHTTPD.Response authenticated() {
+        return server.serve(authenticated.rewind());
+    }
+
+    @Benchmark
+    public NanoHTTPD.Response unauthorized() {
+        return server.serve(unauthorized.rewind());
+    }
+
+    @Benchmark
+    public NanoHTTPD.Response exceptionHandler() {
+        return server.serve(exceptionHandler.rewind());
+    }
+
+    @Benchmark
+    public NanoHTTPD.Response notFound() {
+        return server.serve(notFound.rewind());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(PipelineBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,83 @@
+package ru.skornei.restserver.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import ru.skornei.restserver.server.route.Router;
+
+/**
+ * Время поиска маршрута в зависимости от количества маршрутов.
+ * exactMap - прежний HashMap по точному адресу, для сравнения.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RouterBenchmark {
+
+    @Param({"10", "1000", "5000"})
+    public int routes;
+
+    private Router<Integer> router;
+    private Map<String, Integer> exactMap;
+
+    private String staticPath;
+    private String templatePath;
+
+    @Setup
+    public void setup() {
+        router = new Router<>();
+        exactMap = new HashMap<>();
+        for (int i = 0; i < routes; i++) {
+            router.add("/api/group" + (i % 10) + "/resource" + i, i);
+            router.add("/api/group" + (i % 10) + "/resource" + i + "/{id}/items/{item}", i);
+            exactMap.put("/api/group" + (i % 10) + "/resource" + i, i);
+        }
+
+        int last = routes - 1;
+        staticPath = "/api/group" + (last % 10) + "/resource" + last;
+        templatePath = staticPath + "/42/items/7";
+    }
+
+    @Benchmark
+    public Object exactMap() {
+        return exactMap.get(staticPath);
+    }
+
+    @Benchmark
+    public Object routerStatic() {
+        return router.match(staticPath);
+    }
+
+    @Benchmark
+    public Object routerTemplate() {
+        return router.match(templatePath);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(RouterBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(options).run();
+    }
+}
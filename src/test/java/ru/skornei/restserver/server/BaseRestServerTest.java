@@ -0,0 +1,112 @@
+package ru.skornei.restserver.server;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import fi.iki.elonen.NanoHTTPD;
+import ru.skornei.restserver.annotations.RestController;
+import ru.skornei.restserver.annotations.RestServer;
+import ru.skornei.restserver.annotations.lifecycle.OnStop;
+import ru.skornei.restserver.annotations.methods.GET;
+import ru.skornei.restserver.benchmark.MockSession;
+import ru.skornei.restserver.server.dictionary.ControllerScope;
+import ru.skornei.restserver.server.exceptions.NoAnnotationException;
+import ru.skornei.restserver.server.protocol.ResponseInfo;
+
+import static org.junit.Assert.*;
+
+public class BaseRestServerTest {
+
+    @RestController(value = "/version", scope = ControllerScope.SINGLETON)
+    public static class OldController {
+
+        static final CountDownLatch ENTERED = new CountDownLatch(1);
+        static final CountDownLatch RELEASE = new CountDownLatch(1);
+        static volatile boolean stopped;
+
+        @GET
+        public void get(ResponseInfo responseInfo) throws InterruptedException {
+            ENTERED.countDown();
+            RELEASE.await(5, TimeUnit.SECONDS);
+            responseInfo.setBody("old".getBytes());
+        }
+
+        @OnStop
+        public void stop() {
+            stopped = true;
+        }
+    }
+
+    @RestController("/version")
+    public static class NewController {
+
+        @GET
+        public void get(ResponseInfo responseInfo) {
+            responseInfo.setBody("new".getBytes());
+        }
+    }
+
+    @RestServer(port = 0, controllers = OldController.class)
+    public static class Server extends BaseRestServer {
+    }
+
+    static String body(NanoHTTPD.Response response) throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        InputStream inputStream = response.getData();
+        int read;
+        while ((read = inputStream.read()) != -1)
+            outputStream.write(read);
+        return outputStream.toString("UTF-8");
+    }
+
+    private static NanoHTTPD.Response get(BaseRestServer server) {
+        return server.serve(new MockSession(NanoHTTPD.Method.GET, "/version", null));
+    }
+
+    @Test
+    public void register_swapsRouteWhileRequestInFlight() throws Exception {
+        final Server server = new Server();
+        server.start();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> inFlight = executor.submit(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    return body(get(server));
+                }
+            });
+            assertTrue(OldController.ENTERED.await(5, TimeUnit.SECONDS));
+
+            //New requests go to the new controller, the old one waits for its request
+            server.register(NewController.class);
+            assertEquals("new", body(get(server)));
+            assertFalse(OldController.stopped);
+
+            //The request that had started completes on the old instance, then it is stopped
+            OldController.RELEASE.countDown();
+            assertEquals("old", inFlight.get(5, TimeUnit.SECONDS));
+            assertTrue(OldController.stopped);
+
+            assertTrue(server.unregister(NewController.class));
+            assertEquals(404, get(server).getStatus().getRequestStatus());
+            assertFalse(server.unregister(NewController.class));
+        } finally {
+            OldController.RELEASE.countDown();
+            executor.shutdownNow();
+            server.stop();
+        }
+    }
+
+    @Test(expected = NoAnnotationException.class)
+    public void register_withoutAnnotation_refused() throws Exception {
+        new Server().register(Object.class);
+    }
+}
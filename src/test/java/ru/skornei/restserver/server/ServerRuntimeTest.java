@@ -0,0 +1,125 @@
+package ru.skornei.restserver.server;
+
+import org.junit.Test;
+
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import fi.iki.elonen.NanoHTTPD;
+import ru.skornei.restserver.annotations.RestController;
+import ru.skornei.restserver.annotations.RestServer;
+import ru.skornei.restserver.annotations.lifecycle.OnStart;
+import ru.skornei.restserver.annotations.lifecycle.OnStop;
+import ru.skornei.restserver.annotations.methods.GET;
+import ru.skornei.restserver.benchmark.MockSession;
+import ru.skornei.restserver.server.dictionary.ControllerScope;
+import ru.skornei.restserver.server.protocol.ResponseInfo;
+
+import static org.junit.Assert.*;
+
+public class ServerRuntimeTest {
+
+    @RestController(value = "/counter", scope = ControllerScope.SINGLETON)
+    public static class CounterController {
+
+        static final AtomicInteger STARTED = new AtomicInteger();
+        static final AtomicInteger STOPPED = new AtomicInteger();
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @GET
+        public void get(ResponseInfo responseInfo) {
+            responseInfo.setBody(String.valueOf(count.incrementAndGet()).getBytes());
+        }
+
+        @OnStart
+        public void start() {
+            STARTED.incrementAndGet();
+        }
+
+        @OnStop
+        public void stop() {
+            STOPPED.incrementAndGet();
+        }
+    }
+
+    @RestController("/slow")
+    public static class SlowController {
+
+        static final CountDownLatch ENTERED = new CountDownLatch(2);
+        static final CountDownLatch RELEASE = new CountDownLatch(1);
+
+        @GET
+        public void get(ResponseInfo responseInfo) throws InterruptedException {
+            ENTERED.countDown();
+            RELEASE.await(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @RestServer(port = 0, controllers = {CounterController.class, SlowController.class})
+    public static class PublicServer extends BaseRestServer {
+        public PublicServer(ServerRuntime runtime) {
+            super(runtime);
+        }
+    }
+
+    @RestServer(port = 0, hostname = "127.0.0.1", controllers = {CounterController.class, SlowController.class})
+    public static class LocalServer extends BaseRestServer {
+        public LocalServer(ServerRuntime runtime) {
+            super(runtime);
+        }
+    }
+
+    private static String counter(BaseRestServer server) throws Exception {
+        return BaseRestServerTest.body(server.serve(new MockSession(NanoHTTPD.Method.GET, "/counter", null)));
+    }
+
+    private static Socket slow(BaseRestServer server) throws Exception {
+        Socket socket = new Socket("127.0.0.1", server.getListeningPort());
+        OutputStream outputStream = socket.getOutputStream();
+        outputStream.write("GET /slow HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes("US-ASCII"));
+        outputStream.flush();
+        return socket;
+    }
+
+    @Test
+    public void runtime_sharesControllersAndStopDeadline() throws Exception {
+        ServerRuntime runtime = new ServerRuntime(4, 0);
+        PublicServer publicServer = new PublicServer(runtime);
+        LocalServer localServer = new LocalServer(runtime);
+        Socket first = null;
+        Socket second = null;
+        try {
+            runtime.start();
+            assertEquals(2, runtime.getServers().size());
+            assertNotEquals(publicServer.getListeningPort(), localServer.getListeningPort());
+
+            //One instance answers on both listeners
+            assertEquals("1", counter(publicServer));
+            assertEquals("2", counter(localServer));
+            assertEquals(1, CounterController.STARTED.get());
+
+            //Both listeners are busy, they share one deadline
+            first = slow(publicServer);
+            second = slow(localServer);
+            assertTrue(SlowController.ENTERED.await(5, TimeUnit.SECONDS));
+
+            long start = System.nanoTime();
+            assertFalse(runtime.stop(500));
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue("stopped in " + elapsed + " ms", elapsed >= 450 && elapsed < 950);
+            assertEquals(1, CounterController.STOPPED.get());
+        } finally {
+            SlowController.RELEASE.countDown();
+            if (first != null)
+                first.close();
+            if (second != null)
+                second.close();
+            runtime.stop(0);
+            runtime.shutdown();
+        }
+    }
+}
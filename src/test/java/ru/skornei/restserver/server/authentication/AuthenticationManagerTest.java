@@ -0,0 +1,164 @@
+package ru.skornei.restserver.server.authentication;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import fi.iki.elonen.NanoHTTPD;
+import ru.skornei.restserver.annotations.RequiresAuthentication;
+import ru.skornei.restserver.annotations.RestController;
+import ru.skornei.restserver.annotations.RestServer;
+import ru.skornei.restserver.annotations.methods.GET;
+import ru.skornei.restserver.benchmark.MockSession;
+import ru.skornei.restserver.server.BaseRestServer;
+import ru.skornei.restserver.server.dictionary.HeaderType;
+import ru.skornei.restserver.server.protocol.RequestInfo;
+import ru.skornei.restserver.server.protocol.ResponseInfo;
+
+import static org.junit.Assert.*;
+
+public class AuthenticationManagerTest {
+
+    private static class TokenAuthentication implements BasePrincipalAuthentication {
+
+        private final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public Object authenticate(RequestInfo requestInfo) {
+            calls.incrementAndGet();
+            String token = requestInfo.getHeaders().get(HeaderType.CONTENT_AUTHORIZATION);
+            return "Bearer valid".equals(token) ? "user" : null;
+        }
+    }
+
+    /**
+     * Проверка, которая никогда не завершается
+     */
+    public static class StuckAuthentication implements BaseAsyncAuthentication {
+
+        static volatile FutureTask<Object> last;
+
+        @Override
+        public Future<?> authenticate(RequestInfo requestInfo) {
+            last = new FutureTask<>(new Callable<Object>() {
+                @Override
+                public Object call() {
+                    return "user";
+                }
+            });
+            return last;
+        }
+    }
+
+    @RestController("/secure")
+    public static class SecureController {
+
+        @GET
+        @RequiresAuthentication
+        public void get(ResponseInfo responseInfo) {
+            responseInfo.setBody("secret".getBytes());
+        }
+    }
+
+    @RestServer(port = 0,
+            authentication = StuckAuthentication.class,
+            authTimeout = 50,
+            retryAfter = 3,
+            controllers = SecureController.class)
+    public static class StuckServer extends BaseRestServer {
+    }
+
+    private static RequestInfo request(String authorization) {
+        Map<String, String> headers = new HashMap<>();
+        if (authorization != null)
+            headers.put(HeaderType.CONTENT_AUTHORIZATION, authorization);
+        return new RequestInfo("127.0.0.1", headers, Collections.<String, List<String>>emptyMap());
+    }
+
+    @Test
+    public void authenticate_cachesBothResults() throws Exception {
+        TokenAuthentication authentication = new TokenAuthentication();
+        AuthenticationManager manager = new AuthenticationManager(authentication, 60000, 60000, 16);
+
+        assertNull(manager.getCached(request("Bearer valid")));
+        assertEquals("user", manager.authenticate(request("Bearer valid")));
+        assertEquals("user", manager.getCached(request("Bearer valid")));
+
+        assertSame(AuthenticationManager.DENIED, manager.authenticate(request("Bearer forged")));
+        assertSame(AuthenticationManager.DENIED, manager.getCached(request("Bearer forged")));
+
+        assertEquals(2, authentication.calls.get());
+        assertEquals(2, manager.getHits());
+    }
+
+    @Test
+    public void getVerifiedKey_onlyAcceptedCredentials() throws Exception {
+        AuthenticationManager manager = new AuthenticationManager(new TokenAuthentication(), 60000, 60000, 16);
+        assertNull(manager.getVerifiedKey(request("Bearer valid")));
+
+        manager.authenticate(request("Bearer valid"));
+        manager.authenticate(request("Bearer forged"));
+        assertEquals("Bearer valid", manager.getVerifiedKey(request("Bearer valid")));
+        assertNull(manager.getVerifiedKey(request("Bearer forged")));
+        assertNull(manager.getVerifiedKey(request(null)));
+        assertEquals(0, manager.getHits());
+    }
+
+    @Test
+    public void authenticate_withoutTtlOrHeader_notCached() throws Exception {
+        AuthenticationManager manager = new AuthenticationManager(new TokenAuthentication(), 60000, 0, 16);
+
+        manager.authenticate(request("Bearer forged"));
+        assertNull(manager.getCached(request("Bearer forged")));
+
+        manager.authenticate(request(null));
+        assertNull(manager.getCached(request(null)));
+    }
+
+    @Test
+    public void authenticate_boundedSize() throws Exception {
+        AuthenticationManager manager = new AuthenticationManager(new BaseAuthentication() {
+            @Override
+            public boolean authentication(RequestInfo requestInfo) {
+                return true;
+            }
+        }, 60000, 0, 8);
+
+        for (int i = 0; i < 100; i++)
+            assertNull(AuthenticationManager.getPrincipal(manager.authenticate(request("Bearer " + i))));
+
+        int cached = 0;
+        for (int i = 0; i < 100; i++) {
+            if (manager.getCached(request("Bearer " + i)) != null)
+                cached++;
+        }
+        assertTrue(cached > 0 && cached <= 8);
+    }
+
+    @Test
+    public void await_timeout_cancelsAndIsNotCached() throws Exception {
+        AuthenticationManager manager = new AuthenticationManager(new StuckAuthentication(), 60000, 60000, 16, 50);
+
+        assertSame(AuthenticationManager.UNAVAILABLE, manager.authenticate(request("Bearer valid")));
+        assertTrue(StuckAuthentication.last.isCancelled());
+        assertNull(manager.getCached(request("Bearer valid")));
+        assertNull(AuthenticationManager.getPrincipal(AuthenticationManager.UNAVAILABLE));
+    }
+
+    @Test
+    public void await_timeout_answers503() throws Exception {
+        NanoHTTPD.Response response = new StuckServer().serve(new MockSession(NanoHTTPD.Method.GET, "/secure", null)
+                .header(HeaderType.CONTENT_AUTHORIZATION, "Bearer valid"));
+
+        assertEquals(503, response.getStatus().getRequestStatus());
+        assertEquals("3", response.getHeader(HeaderType.RETRY_AFTER));
+        assertTrue(StuckAuthentication.last.isCancelled());
+    }
+}
@@ -0,0 +1,207 @@
+package ru.skornei.restserver.server.batch;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import fi.iki.elonen.NanoHTTPD;
+import ru.skornei.restserver.annotations.RestController;
+import ru.skornei.restserver.annotations.RestServer;
+import ru.skornei.restserver.annotations.methods.GET;
+import ru.skornei.restserver.benchmark.MockSession;
+import ru.skornei.restserver.server.BaseRestServer;
+import ru.skornei.restserver.server.converter.BaseConverter;
+import ru.skornei.restserver.server.protocol.ResponseInfo;
+
+import static org.junit.Assert.*;
+
+public class BatchTest {
+
+    private static final AtomicInteger CALLS = new AtomicInteger();
+
+    @RestController("/items")
+    public static class ItemController {
+
+        @GET
+        public void get(ResponseInfo responseInfo) {
+            CALLS.incrementAndGet();
+            responseInfo.setBody("item".getBytes());
+        }
+    }
+
+    @RestController("/thread")
+    public static class ThreadController {
+
+        @GET
+        public void get(ResponseInfo responseInfo) throws InterruptedException {
+            //Long enough for the pool to pick up the other requests
+            Thread.sleep(50);
+            responseInfo.setBody(Thread.currentThread().getName().getBytes());
+        }
+    }
+
+    @RestController("/image")
+    public static class ImageController {
+
+        @GET
+        public void get(ResponseInfo responseInfo) {
+            responseInfo.setType("image/png");
+            responseInfo.setBody(new byte[]{(byte) 0x89, 'P', 'N', 'G', 0, (byte) 0xff});
+        }
+    }
+
+    /**
+     * Отдает заранее заданный пакет и запоминает ответ
+     */
+    public static class ObjectConverter implements BaseConverter {
+
+        static volatile Object read;
+
+        static volatile Object written;
+
+        @Override
+        public byte[] writeValueAsBytes(Object value) {
+            written = value;
+            return new byte[0];
+        }
+
+        @Override
+        public <T> T writeValue(byte[] src, Class<T> valueType) {
+            return valueType.cast(read);
+        }
+    }
+
+    @RestServer(port = 0,
+            converter = ObjectConverter.class,
+            batchPath = "/batch",
+            controllers = {ItemController.class, ThreadController.class, ImageController.class})
+    public static class Server extends BaseRestServer {
+    }
+
+    @RestServer(port = 0,
+            converter = ObjectConverter.class,
+            batchPath = "/batch",
+            batchMaxRequests = 3,
+            batchThreads = 2,
+            maxBufferedBody = 16,
+            controllers = {ItemController.class, ThreadController.class})
+    public static class LimitedServer extends BaseRestServer {
+    }
+
+    private static BatchRequest request(String method, String uri) {
+        BatchRequest request = new BatchRequest();
+        request.setMethod(method);
+        request.setUri(uri);
+        return request;
+    }
+
+    private static BatchResponse[] batch(BaseRestServer server, BatchRequest... requests) {
+        return batch(server, new MockSession(NanoHTTPD.Method.POST, "/batch", "[]".getBytes()), requests);
+    }
+
+    private static BatchResponse[] batch(BaseRestServer server, MockSession session, BatchRequest... requests) {
+        ObjectConverter.read = requests;
+        NanoHTTPD.Response response = server.serve(session);
+        assertEquals(200, response.getStatus().getRequestStatus());
+        return (BatchResponse[]) ObjectConverter.written;
+    }
+
+    private static int status(BaseRestServer server, MockSession session, BatchRequest... requests) {
+        ObjectConverter.read = requests;
+        return server.serve(session).getStatus().getRequestStatus();
+    }
+
+    @Before
+    public void reset() {
+        CALLS.set(0);
+    }
+
+    @Test
+    public void batch_nestedEncodedPath_refused() {
+        BatchResponse[] responses = batch(new Server(),
+                request("POST", "/%62atch"),
+                request("POST", "/batch?parallel=true"),
+                request("GET", "/items"));
+
+        assertEquals(400, responses[0].getStatus());
+        assertEquals(400, responses[1].getStatus());
+        assertEquals(200, responses[2].getStatus());
+        assertEquals(1, CALLS.get());
+    }
+
+    @Test
+    public void batch_binaryBody_base64() {
+        BatchResponse[] responses = batch(new Server(),
+                request("GET", "/image"),
+                request("GET", "/items"));
+
+        assertEquals(BatchResponse.BASE64, responses[0].getEncoding());
+        assertEquals("iVBORwD/", responses[0].getBody());
+        assertNull(responses[1].getEncoding());
+        assertEquals("item", responses[1].getBody());
+    }
+
+    @Test
+    public void batch_sequential_inOrderOnCallingThread() {
+        BatchResponse[] responses = batch(new Server(),
+                request("GET", "/items"),
+                request("GET", "/thread"),
+                request("GET", "/missing"),
+                request("GET", "/items"));
+
+        assertEquals(4, responses.length);
+        assertEquals(200, responses[0].getStatus());
+        assertEquals(Thread.currentThread().getName(), responses[1].getBody());
+        assertEquals(404, responses[2].getStatus());
+        assertEquals(200, responses[3].getStatus());
+        assertEquals(2, CALLS.get());
+    }
+
+    @Test
+    public void batch_parallel_usesPool() throws Exception {
+        LimitedServer server = new LimitedServer();
+        server.start();
+        try {
+            MockSession session = new MockSession(NanoHTTPD.Method.POST, "/batch", "[]".getBytes())
+                    .parameter("parallel", "true");
+            BatchResponse[] responses = batch(server, session,
+                    request("GET", "/thread"),
+                    request("GET", "/thread"),
+                    request("GET", "/thread"));
+
+            String caller = Thread.currentThread().getName();
+            assertNotEquals(caller, responses[0].getBody());
+            assertNotEquals(caller, responses[1].getBody());
+            assertEquals(caller, responses[2].getBody());
+
+            //Without the parameter the same server runs them in order
+            responses = batch(server, request("GET", "/thread"), request("GET", "/thread"));
+            assertEquals(caller, responses[0].getBody());
+            assertEquals(caller, responses[1].getBody());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void batch_limits() {
+        LimitedServer server = new LimitedServer();
+
+        //More requests than batchMaxRequests
+        assertEquals(400, status(server, new MockSession(NanoHTTPD.Method.POST, "/batch", "[]".getBytes()),
+                request("GET", "/items"), request("GET", "/items"), request("GET", "/items"), request("GET", "/items")));
+
+        //Body the converter could not read
+        assertEquals(400, status(server, new MockSession(NanoHTTPD.Method.POST, "/batch", "[]".getBytes()),
+                (BatchRequest[]) null));
+
+        //Body larger than maxBufferedBody
+        NanoHTTPD.Response response = server.serve(new MockSession(NanoHTTPD.Method.POST, "/batch", new byte[64]));
+        assertEquals(413, response.getStatus().getRequestStatus());
+        assertTrue(response.isCloseConnection());
+
+        assertEquals(405, status(server, new MockSession(NanoHTTPD.Method.GET, "/batch", null)));
+        assertEquals(0, CALLS.get());
+    }
+}
@@ -0,0 +1,189 @@
+package ru.skornei.restserver.server.cache;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import fi.iki.elonen.NanoHTTPD;
+import ru.skornei.restserver.annotations.CacheEvict;
+import ru.skornei.restserver.annotations.Cacheable;
+import ru.skornei.restserver.annotations.RequiresAuthentication;
+import ru.skornei.restserver.annotations.RestController;
+import ru.skornei.restserver.annotations.RestServer;
+import ru.skornei.restserver.annotations.methods.GET;
+import ru.skornei.restserver.annotations.methods.POST;
+import ru.skornei.restserver.benchmark.MockSession;
+import ru.skornei.restserver.server.BaseRestServer;
+import ru.skornei.restserver.server.authentication.BasePrincipalAuthentication;
+import ru.skornei.restserver.server.dictionary.HeaderType;
+import ru.skornei.restserver.server.protocol.RequestInfo;
+import ru.skornei.restserver.server.protocol.ResponseInfo;
+
+import static org.junit.Assert.*;
+
+public class ResponseCacheTest {
+
+    @RestController("/profile")
+    public static class ProfileController {
+
+        @GET
+        @RequiresAuthentication
+        @Cacheable(ttl = 60000)
+        public void get(RequestInfo requestInfo, ResponseInfo responseInfo) {
+            responseInfo.setBody(String.valueOf(requestInfo.getPrincipal()).getBytes());
+        }
+    }
+
+    @RestController("/items")
+    public static class ItemController {
+
+        static final AtomicInteger CALLS = new AtomicInteger();
+
+        @GET
+        @Cacheable(ttl = 60000)
+        public void get(ResponseInfo responseInfo) {
+            responseInfo.setBody(String.valueOf(CALLS.incrementAndGet()).getBytes());
+        }
+
+        @POST
+        @CacheEvict
+        public void post() {
+        }
+    }
+
+    @Cacheable(ttl = 50)
+    public void shortLived() {
+    }
+
+    @Cacheable(ttl = 60000, maxEntries = 2)
+    public void fewEntries() {
+    }
+
+    @Cacheable(ttl = 60000, maxBytes = 10)
+    public void fewBytes() {
+    }
+
+    private static ResponseCache cache(String method) throws Exception {
+        return new ResponseCache(ResponseCacheTest.class.getMethod(method).getAnnotation(Cacheable.class));
+    }
+
+    private static String key(ResponseCache cache, String uri) {
+        return cache.key(uri, new RequestInfo("127.0.0.1",
+                new HashMap<String, String>(),
+                Collections.<String, List<String>>emptyMap()), "text/plain");
+    }
+
+    private static ResponseInfo response(String body) {
+        ResponseInfo responseInfo = new ResponseInfo();
+        responseInfo.setBody(body.getBytes());
+        return responseInfo;
+    }
+
+    private static boolean hit(ResponseCache cache, String uri) {
+        return cache.get(key(cache, uri), new ResponseInfo());
+    }
+
+    public static class UserAuthentication implements BasePrincipalAuthentication {
+
+        @Override
+        public Object authenticate(RequestInfo requestInfo) {
+            String token = requestInfo.getHeaders().get(HeaderType.CONTENT_AUTHORIZATION);
+            return token != null && token.startsWith("Bearer ") ? token.substring(7) : null;
+        }
+    }
+
+    @RestServer(port = 0,
+            authentication = UserAuthentication.class,
+            controllers = {ProfileController.class, ItemController.class})
+    public static class Server extends BaseRestServer {
+    }
+
+    private static String body(NanoHTTPD.Response response) throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        InputStream inputStream = response.getData();
+        int read;
+        while ((read = inputStream.read()) != -1)
+            outputStream.write(read);
+        return outputStream.toString("UTF-8");
+    }
+
+    private static String profile(BaseRestServer server, String user) throws Exception {
+        return body(server.serve(new MockSession(NanoHTTPD.Method.GET, "/profile", null)
+                .header(HeaderType.CONTENT_AUTHORIZATION, "Bearer " + user)));
+    }
+
+    @Test
+    public void key_authenticatedHandler_perUser() throws Exception {
+        Server server = new Server();
+
+        assertEquals("alice", profile(server, "alice"));
+        assertEquals("bob", profile(server, "bob"));
+        assertEquals("alice", profile(server, "alice"));
+    }
+
+    @Test
+    public void get_expiresAfterTtl() throws Exception {
+        ResponseCache cache = cache("shortLived");
+        cache.put(key(cache, "/a"), response("a"));
+
+        ResponseInfo responseInfo = new ResponseInfo();
+        assertTrue(cache.get(key(cache, "/a"), responseInfo));
+        assertEquals("a", new String(responseInfo.getBody()));
+
+        Thread.sleep(80);
+        assertFalse(hit(cache, "/a"));
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void put_evictsLeastRecentlyUsedByCount() throws Exception {
+        ResponseCache cache = cache("fewEntries");
+        cache.put(key(cache, "/a"), response("a"));
+        cache.put(key(cache, "/b"), response("b"));
+
+        //Reading /a makes /b the oldest
+        assertTrue(hit(cache, "/a"));
+        cache.put(key(cache, "/c"), response("c"));
+
+        assertTrue(hit(cache, "/a"));
+        assertFalse(hit(cache, "/b"));
+        assertTrue(hit(cache, "/c"));
+        assertEquals(1, cache.getEvictions());
+    }
+
+    @Test
+    public void put_evictsBySize() throws Exception {
+        ResponseCache cache = cache("fewBytes");
+        cache.put(key(cache, "/a"), response("aaaa"));
+        cache.put(key(cache, "/b"), response("bbbb"));
+        cache.put(key(cache, "/c"), response("cccc"));
+
+        assertFalse(hit(cache, "/a"));
+        assertTrue(hit(cache, "/b"));
+        assertTrue(hit(cache, "/c"));
+
+        //Larger than the whole cache, not stored at all
+        cache.put(key(cache, "/d"), response("ddddddddddd"));
+        assertFalse(hit(cache, "/d"));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void cacheEvict_clearsController() throws Exception {
+        Server server = new Server();
+        ItemController.CALLS.set(0);
+
+        assertEquals("1", body(server.serve(new MockSession(NanoHTTPD.Method.GET, "/items", null))));
+        assertEquals("1", body(server.serve(new MockSession(NanoHTTPD.Method.GET, "/items", null))));
+
+        assertEquals(200, server.serve(new MockSession(NanoHTTPD.Method.POST, "/items", null)).getStatus().getRequestStatus());
+        assertEquals("2", body(server.serve(new MockSession(NanoHTTPD.Method.GET, "/items", null))));
+    }
+}
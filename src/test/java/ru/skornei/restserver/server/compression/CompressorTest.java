@@ -0,0 +1,80 @@
+package ru.skornei.restserver.server.compression;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+
+import ru.skornei.restserver.server.dictionary.ContentEncoding;
+
+import static org.junit.Assert.*;
+
+public class CompressorTest {
+
+    @Test
+    public void negotiate_usesQuality() throws Exception {
+        assertEquals(ContentEncoding.GZIP, Compressor.negotiate("gzip, deflate"));
+        assertEquals(ContentEncoding.DEFLATE, Compressor.negotiate("gzip;q=0.5, deflate"));
+        assertEquals(ContentEncoding.DEFLATE, Compressor.negotiate("gzip;q=0, *"));
+        assertNull(Compressor.negotiate("identity"));
+        assertNull(Compressor.negotiate("br, *;q=0"));
+        assertNull(Compressor.negotiate(null));
+    }
+
+    @Test
+    public void compress_cachesEqualBodies() throws Exception {
+        Compressor compressor = new Compressor(true, 0, new String[]{"text/*"}, 1024 * 1024);
+        byte[] body = "hello hello hello hello".getBytes("UTF-8");
+
+        byte[] first = compressor.compress(body, ContentEncoding.GZIP, true);
+        byte[] second = compressor.compress(body.clone(), ContentEncoding.GZIP, true);
+        assertSame(first, second);
+        assertEquals(1, compressor.getCacheHits());
+        assertEquals(1, compressor.getCacheMisses());
+
+        GZIPInputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(first));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        int read;
+        while ((read = inputStream.read()) != -1)
+            outputStream.write(read);
+        assertArrayEquals(body, outputStream.toByteArray());
+    }
+
+    @Test
+    public void compressAndWrap_endDeflaters() throws Exception {
+        Compressor compressor = new Compressor(true, 0, new String[]{"text/*"}, 0);
+        byte[] body = "hello hello hello hello".getBytes("UTF-8");
+
+        for (int i = 0; i < 1000; i++) {
+            compressor.compress(body, i % 2 == 0 ? ContentEncoding.GZIP : ContentEncoding.DEFLATE, false);
+
+            DeflaterOutputStream outputStream = compressor.wrap(new ByteArrayOutputStream(), ContentEncoding.GZIP);
+            outputStream.write(body);
+            outputStream.finish();
+        }
+        assertEquals(0, compressor.getOpenStreams());
+        assertEquals(2000, compressor.getCompressedCount());
+
+        //The client went away before the end of the body
+        DeflaterOutputStream broken = compressor.wrap(new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("closed");
+            }
+        }, ContentEncoding.DEFLATE);
+        try {
+            broken.write(body);
+        } catch (IOException expected) {
+        }
+        try {
+            broken.finish();
+            fail();
+        } catch (IOException expected) {
+        }
+        assertEquals(0, compressor.getOpenStreams());
+    }
+}
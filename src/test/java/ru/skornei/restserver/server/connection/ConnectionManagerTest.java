@@ -0,0 +1,172 @@
+package ru.skornei.restserver.server.connection;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import ru.skornei.restserver.annotations.RestController;
+import ru.skornei.restserver.annotations.RestServer;
+import ru.skornei.restserver.annotations.methods.GET;
+import ru.skornei.restserver.server.BaseRestServer;
+import ru.skornei.restserver.server.dictionary.HeaderType;
+import ru.skornei.restserver.server.protocol.ResponseInfo;
+
+import static org.junit.Assert.*;
+
+public class ConnectionManagerTest {
+
+    @RestController("/ping")
+    public static class PingController {
+
+        @GET
+        public void get(ResponseInfo responseInfo) {
+            responseInfo.setBody("pong".getBytes());
+        }
+    }
+
+    @RestServer(port = 0,
+            maxConnections = 1,
+            maxRequestsPerConnection = 2,
+            retryAfter = 2,
+            controllers = PingController.class)
+    public static class LimitedServer extends BaseRestServer {
+    }
+
+    /**
+     * Ответ, прочитанный из сокета
+     */
+    private static class Reply {
+        int status;
+        Map<String, String> headers = new HashMap<>();
+    }
+
+    private static Reply get(Socket socket) throws IOException {
+        socket.getOutputStream().write("GET /ping HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes("US-ASCII"));
+        return read(socket.getInputStream());
+    }
+
+    private static Reply read(InputStream inputStream) throws IOException {
+        Reply reply = new Reply();
+        String[] lines = readHead(inputStream).split("\r\n");
+        reply.status = Integer.parseInt(lines[0].split(" ")[1]);
+        for (int i = 1; i < lines.length; i++) {
+            int separator = lines[i].indexOf(':');
+            reply.headers.put(lines[i].substring(0, separator).trim().toLowerCase(Locale.US), lines[i].substring(separator + 1).trim());
+        }
+
+        int length = Integer.parseInt(reply.headers.get(HeaderType.CONTENT_LENGTH));
+        for (int i = 0; i < length; i++)
+            assertNotEquals(-1, inputStream.read());
+        return reply;
+    }
+
+    private static String readHead(InputStream inputStream) throws IOException {
+        StringBuilder head = new StringBuilder();
+        while (head.length() < 4 || !head.substring(head.length() - 4).equals("\r\n\r\n")) {
+            int b = inputStream.read();
+            if (b == -1)
+                throw new IOException("closed");
+            head.append((char) b);
+        }
+        return head.toString().trim();
+    }
+
+    @Test
+    public void open_limitsConnections() throws Exception {
+        ConnectionManager manager = new ConnectionManager(2, 0);
+        Socket first = new Socket();
+        Socket second = new Socket();
+
+        assertTrue(manager.open(first));
+        assertTrue(manager.open(second));
+        assertFalse(manager.open(new Socket()));
+
+        manager.closed(first);
+        manager.closed(first);
+        assertEquals(1, manager.getOpenConnections());
+        assertTrue(manager.open(new Socket()));
+        assertEquals(3, manager.getAcceptedConnections());
+        assertEquals(1, manager.getRefusedConnections());
+    }
+
+    @Test
+    public void requestFinished_closesAfterLimit() {
+        ConnectionManager manager = new ConnectionManager(0, 3);
+        for (int served = 1; served <= 3; served++) {
+            manager.requestStarted();
+            assertEquals(served == 3, manager.requestFinished(served));
+        }
+        assertEquals(3, manager.getRequests());
+        assertEquals(0, manager.getActiveRequests());
+    }
+
+    @Test
+    public void drain_waitsUntilDeadline() throws Exception {
+        final ConnectionManager manager = new ConnectionManager(0, 0);
+        final Socket socket = new Socket();
+        assertTrue(manager.open(socket));
+        manager.requestStarted();
+
+        //The request does not finish in time
+        long start = System.nanoTime();
+        assertFalse(manager.drain(50));
+        assertTrue(System.nanoTime() - start >= 50000000L);
+        assertTrue(manager.isDraining());
+        assertFalse(manager.open(new Socket()));
+
+        //It finishes while the next drain waits
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException ignored) {
+                }
+                manager.requestFinished(1);
+                manager.closed(socket);
+            }
+        }).start();
+        assertTrue(manager.drain(5000));
+        assertEquals(0, manager.getOpenConnections());
+
+        manager.resume();
+        assertTrue(manager.open(new Socket()));
+    }
+
+    @Test
+    public void server_refusesAndClosesByLimits() throws Exception {
+        LimitedServer server = new LimitedServer();
+        server.start();
+        Socket first = new Socket("127.0.0.1", server.getListeningPort());
+        Socket second = null;
+        try {
+            Reply reply = get(first);
+            assertEquals(200, reply.status);
+            assertEquals("keep-alive", reply.headers.get("connection"));
+
+            //The only place is taken by the keep-alive connection
+            second = new Socket("127.0.0.1", server.getListeningPort());
+            reply = read(second.getInputStream());
+            assertEquals(503, reply.status);
+            assertEquals("2", reply.headers.get(HeaderType.RETRY_AFTER));
+
+            //The second request is the last one on this connection
+            reply = get(first);
+            assertEquals(200, reply.status);
+            assertEquals("close", reply.headers.get("connection"));
+            assertEquals(-1, first.getInputStream().read());
+
+            assertEquals(1, server.getConnections().getRefusedConnections());
+        } finally {
+            first.close();
+            if (second != null)
+                second.close();
+            server.stop();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package ru.skornei.restserver.server.controller;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ru.skornei.restserver.annotations.lifecycle.OnReset;
+import ru.skornei.restserver.annotations.lifecycle.OnStart;
+import ru.skornei.restserver.annotations.lifecycle.OnStop;
+import ru.skornei.restserver.utils.ReflectionUtils;
+
+import static org.junit.Assert.*;
+
+public class PooledControllerProviderTest {
+
+    public static class Controller {
+
+        static final AtomicInteger STARTED = new AtomicInteger();
+        static final AtomicInteger STOPPED = new AtomicInteger();
+
+        int requests;
+        boolean broken;
+
+        @OnStart
+        public void start() {
+            STARTED.incrementAndGet();
+        }
+
+        @OnReset
+        public void reset() {
+            if (broken)
+                throw new IllegalStateException("broken");
+            requests = 0;
+        }
+
+        @OnStop
+        public void stop() {
+            STOPPED.incrementAndGet();
+        }
+    }
+
+    private static PooledControllerProvider provider(int poolSize) {
+        return new PooledControllerProvider(Controller.class,
+                poolSize,
+                ReflectionUtils.getDeclaredMethodInfo(Controller.class, OnStart.class),
+                ReflectionUtils.getDeclaredMethodInfo(Controller.class, OnStop.class),
+                ReflectionUtils.getDeclaredMethodInfo(Controller.class, OnReset.class));
+    }
+
+    @Test
+    public void acquire_reusesResetInstances() throws Exception {
+        Controller.STARTED.set(0);
+        Controller.STOPPED.set(0);
+        PooledControllerProvider provider = provider(2);
+        provider.start();
+        assertEquals(2, Controller.STARTED.get());
+
+        Controller first = (Controller) provider.acquire();
+        Controller second = (Controller) provider.acquire();
+        Controller temporary = (Controller) provider.acquire();
+        assertEquals(3, Controller.STARTED.get());
+
+        //Returned instances are reset, the one over the pool size is stopped
+        first.requests = 5;
+        provider.release(first);
+        provider.release(second);
+        provider.release(temporary);
+        assertEquals(0, first.requests);
+        assertEquals(1, Controller.STOPPED.get());
+
+        assertSame(first, provider.acquire());
+        assertSame(second, provider.acquire());
+        assertEquals(3, Controller.STARTED.get());
+
+        //An instance that could not be reset is not returned
+        second.broken = true;
+        provider.release(second);
+        assertEquals(2, Controller.STOPPED.get());
+        provider.release(first);
+
+        provider.stop();
+        assertEquals(3, Controller.STOPPED.get());
+    }
+
+    @Test
+    public void stop_instancesReturnedLaterAreStopped() throws Exception {
+        Controller.STARTED.set(0);
+        Controller.STOPPED.set(0);
+        PooledControllerProvider provider = provider(1);
+        provider.start();
+
+        Object controller = provider.acquire();
+        provider.stop();
+        provider.release(controller);
+        assertEquals(1, Controller.STOPPED.get());
+
+        try {
+            provider.acquire();
+            fail();
+        } catch (IllegalStateException ignored) {
+        }
+        assertEquals(1, Controller.STARTED.get());
+    }
+}
@@ -0,0 +1,59 @@
+package ru.skornei.restserver.server.converter;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import static org.junit.Assert.*;
+
+public class ConverterBodyWriterTest {
+
+    /**
+     * Закрывает поток после записи, как Jackson с AUTO_CLOSE_TARGET
+     */
+    private static class ClosingConverter implements BaseStreamConverter {
+
+        @Override
+        public void writeValue(OutputStream outputStream, Object value) throws IOException {
+            Writer writer = new OutputStreamWriter(outputStream, "UTF-8");
+            writer.write(String.valueOf(value));
+            writer.close();
+        }
+
+        @Override
+        public <T> T readValue(InputStream inputStream, Class<T> valueType) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public byte[] writeValueAsBytes(Object value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <T> T writeValue(byte[] src, Class<T> valueType) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    @Test
+    public void write_converterCannotCloseConnection() throws Exception {
+        final boolean[] closed = new boolean[1];
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream() {
+            @Override
+            public void close() {
+                closed[0] = true;
+            }
+        };
+
+        new ConverterBodyWriter(new ClosingConverter(), "{\"a\":1}").write(outputStream);
+
+        assertFalse(closed[0]);
+        assertEquals("{\"a\":1}", outputStream.toString("UTF-8"));
+    }
+}
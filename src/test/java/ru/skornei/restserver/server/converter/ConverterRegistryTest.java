@@ -0,0 +1,36 @@
+package ru.skornei.restserver.server.converter;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+import ru.skornei.restserver.annotations.Produces;
+import ru.skornei.restserver.annotations.methods.GET;
+import ru.skornei.restserver.server.dictionary.ContentType;
+import ru.skornei.restserver.utils.ReflectionUtils;
+
+import static org.junit.Assert.*;
+
+public class ConverterRegistryTest {
+
+    public static class Controller {
+        @GET
+        @Produces({ContentType.APPLICATION_JSON, ContentType.TEXT_PLAIN})
+        public String get() {
+            return "";
+        }
+    }
+
+    @Test
+    public void forget_dropsCachedSelections() throws Exception {
+        ConverterRegistry registry = new ConverterRegistry();
+        ReflectionUtils.MethodInfo methodInfo = ReflectionUtils.getDeclaredMethodInfo(Controller.class, GET.class);
+
+        ConverterRegistry.Selection selection = registry.negotiate(methodInfo, ContentType.TEXT_PLAIN, true);
+        assertEquals(ContentType.TEXT_PLAIN, selection.getType().getValue());
+        assertSame(selection, registry.negotiate(methodInfo, ContentType.TEXT_PLAIN, true));
+
+        registry.forget(Collections.singleton(methodInfo));
+        assertNotSame(selection, registry.negotiate(methodInfo, ContentType.TEXT_PLAIN, true));
+    }
+}
@@ -0,0 +1,30 @@
+package ru.skornei.restserver.server.io;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+import static org.junit.Assert.*;
+
+public class ChunkedInputStreamTest {
+
+    @Test
+    public void readFully_decodesChunksAndLeavesNextRequest() throws Exception {
+        InputStream in = new ByteArrayInputStream(
+                "5;ext=1\r\nhello\r\n6\r\n world\r\n0\r\nX-Trailer: 1\r\n\r\nGET".getBytes("US-ASCII"));
+
+        ChunkedInputStream body = new ChunkedInputStream(in);
+        assertEquals("hello world", new String(body.readFully(100), "US-ASCII"));
+        assertTrue(body.isFinished());
+        assertEquals('G', in.read());
+    }
+
+    @Test
+    public void readFully_returnsNullOverLimit() throws Exception {
+        InputStream in = new ByteArrayInputStream("a\r\n0123456789\r\n0\r\n\r\n".getBytes("US-ASCII"));
+
+        ChunkedInputStream body = new ChunkedInputStream(in);
+        assertNull(body.readFully(5));
+    }
+}
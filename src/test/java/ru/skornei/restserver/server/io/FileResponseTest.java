@@ -0,0 +1,24 @@
+package ru.skornei.restserver.server.io;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FileResponseTest {
+
+    @Test
+    public void parseRange_supportedForms() throws Exception {
+        assertArrayEquals(new long[]{0, 9}, FileResponse.parseRange("bytes=0-9", 100));
+        assertArrayEquals(new long[]{90, 99}, FileResponse.parseRange("bytes=90-", 100));
+        assertArrayEquals(new long[]{97, 99}, FileResponse.parseRange("bytes=-3", 100));
+        assertArrayEquals(new long[]{50, 99}, FileResponse.parseRange("bytes=50-500", 100));
+    }
+
+    @Test
+    public void parseRange_unsatisfiableAndIgnored() throws Exception {
+        assertEquals(0, FileResponse.parseRange("bytes=100-", 100).length);
+        assertNull(FileResponse.parseRange("bytes=0-1,5-6", 100));
+        assertNull(FileResponse.parseRange("items=0-1", 100));
+        assertNull(FileResponse.parseRange("bytes=a-b", 100));
+    }
+}
@@ -0,0 +1,180 @@
+package ru.skornei.restserver.server.io;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.zip.GZIPInputStream;
+
+import fi.iki.elonen.NanoHTTPD;
+import ru.skornei.restserver.server.compression.Compressor;
+import ru.skornei.restserver.server.dictionary.ContentEncoding;
+import ru.skornei.restserver.server.dictionary.ResponseStatus;
+import ru.skornei.restserver.server.protocol.BodyWriter;
+
+import static org.junit.Assert.*;
+
+public class WriterResponseTest {
+
+    private static WriterResponse response(final String... chunks) {
+        return new WriterResponse(ResponseStatus.OK, "text/plain", new BodyWriter() {
+            @Override
+            public void write(OutputStream outputStream) throws IOException {
+                for (String chunk : chunks) {
+                    outputStream.write(chunk.getBytes("UTF-8"));
+                    outputStream.flush();
+                }
+            }
+        });
+    }
+
+    private static String send(BaseResponse response) throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        response.send(outputStream);
+        return outputStream.toString("ISO-8859-1");
+    }
+
+    private static String body(String message) {
+        return message.substring(message.indexOf("\r\n\r\n") + 4);
+    }
+
+    private static byte[] readAll(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[256];
+        int read;
+        while ((read = inputStream.read(buffer, 0, buffer.length)) != -1)
+            outputStream.write(buffer, 0, read);
+        return outputStream.toByteArray();
+    }
+
+    @Test
+    public void chunkedOutputStream_framing() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ChunkedOutputStream chunkedOutputStream = new ChunkedOutputStream(outputStream);
+        chunkedOutputStream.write(new byte[0], 0, 0);
+        chunkedOutputStream.write('a');
+        chunkedOutputStream.write(new byte[300], 0, 300);
+        chunkedOutputStream.close();
+
+        String framed = outputStream.toString("ISO-8859-1");
+        assertTrue(framed.startsWith("1\r\na\r\n12c\r\n"));
+        assertTrue(framed.endsWith("\r\n0\r\n\r\n"));
+        assertEquals(6 + 5 + 300 + 2 + 5, framed.length());
+    }
+
+    @Test
+    public void send_flushedWritesBecomeChunks() throws Exception {
+        String message = send(response("ab", "cde"));
+
+        assertTrue(message.startsWith("HTTP/1.1 200 OK \r\n"));
+        assertTrue(message.contains("\r\nTransfer-Encoding: chunked\r\n"));
+        assertFalse(message.toLowerCase().contains("content-length"));
+        assertEquals("2\r\nab\r\n3\r\ncde\r\n0\r\n\r\n", body(message));
+
+        assertEquals("0\r\n\r\n", body(send(response())));
+    }
+
+    @Test
+    public void send_writerClosesStream_singleLastChunk() throws Exception {
+        BodyWriter closing = new BodyWriter() {
+            @Override
+            public void write(OutputStream outputStream) throws IOException {
+                Writer writer = new OutputStreamWriter(outputStream, "UTF-8");
+                writer.write("hello");
+                writer.close();
+            }
+        };
+        assertEquals("5\r\nhello\r\n0\r\n\r\n", body(send(new WriterResponse(ResponseStatus.OK, "text/plain", closing))));
+
+        Compressor compressor = new Compressor(true, 0, new String[]{"text/*"}, 0);
+        WriterResponse response = new WriterResponse(ResponseStatus.OK, "text/plain", closing);
+        response.setContentEncoding(ContentEncoding.GZIP, compressor);
+        String chunked = body(send(response));
+        assertTrue(chunked.endsWith("\r\n0\r\n\r\n"));
+        assertEquals(chunked.indexOf("\r\n0\r\n\r\n"), chunked.lastIndexOf("\r\n0\r\n\r\n"));
+        byte[] gzip = readAll(new ChunkedInputStream(new ByteArrayInputStream(chunked.getBytes("ISO-8859-1"))));
+        assertEquals("hello", new String(readAll(new GZIPInputStream(new ByteArrayInputStream(gzip))), "UTF-8"));
+        assertEquals(0, compressor.getOpenStreams());
+    }
+
+    @Test
+    public void chunkedOutputStream_finishOnce() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ChunkedOutputStream chunkedOutputStream = new ChunkedOutputStream(outputStream);
+        chunkedOutputStream.finish();
+        chunkedOutputStream.close();
+        chunkedOutputStream.finish();
+        assertEquals("0\r\n\r\n", outputStream.toString("ISO-8859-1"));
+
+        try {
+            chunkedOutputStream.write('a');
+            fail();
+        } catch (IOException ignored) {
+        }
+    }
+
+    @Test
+    public void send_head_noBody() throws Exception {
+        WriterResponse response = response("ab");
+        response.setRequestMethod(NanoHTTPD.Method.HEAD);
+        String message = send(response);
+
+        assertFalse(message.contains("Transfer-Encoding"));
+        assertEquals("", body(message));
+    }
+
+    @Test
+    public void send_compressed_chunksOfGzip() throws Exception {
+        Compressor compressor = new Compressor(true, 0, new String[]{"text/*"}, 0);
+        WriterResponse response = response("hello ", "hello ", "hello");
+        response.setContentEncoding(ContentEncoding.GZIP, compressor);
+        String message = send(response);
+
+        assertTrue(message.contains("\r\nContent-Encoding: gzip\r\n"));
+        byte[] chunked = body(message).getBytes("ISO-8859-1");
+        byte[] gzip = readAll(new ChunkedInputStream(new ByteArrayInputStream(chunked)));
+        assertEquals("hello hello hello", new String(readAll(new GZIPInputStream(new ByteArrayInputStream(gzip))), "UTF-8"));
+        assertEquals(0, compressor.getOpenStreams());
+    }
+
+    @Test
+    public void writeBody_withoutFraming() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        response("ab", "cde").writeBody(outputStream);
+        assertEquals("abcde", outputStream.toString("UTF-8"));
+    }
+
+    @Test
+    public void send_clientGone_closesQuietly() throws Exception {
+        final boolean[] closed = new boolean[1];
+        OutputStream broken = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+
+            @Override
+            public void close() {
+                closed[0] = true;
+            }
+        };
+
+        PrintStream err = System.err;
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        System.setErr(new PrintStream(log));
+        try {
+            response("body").send(broken);
+        } finally {
+            System.setErr(err);
+        }
+
+        assertTrue(closed[0]);
+        assertEquals(0, log.size());
+    }
+}
@@ -0,0 +1,99 @@
+package ru.skornei.restserver.server.limit;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import ru.skornei.restserver.annotations.RateLimit;
+import ru.skornei.restserver.server.dictionary.HeaderType;
+import ru.skornei.restserver.server.dictionary.RateLimitKey;
+import ru.skornei.restserver.server.protocol.RequestInfo;
+
+import static org.junit.Assert.*;
+
+public class RateLimiterTest {
+
+    @RateLimit(rate = 1, burst = 3)
+    public void bucket() {
+    }
+
+    @RateLimit(key = RateLimitKey.ROUTE, concurrency = 2)
+    public void concurrent() {
+    }
+
+    @RateLimit(rate = 1, maxClients = 10)
+    public void bounded() {
+    }
+
+    @RateLimit(key = RateLimitKey.PRINCIPAL, rate = 1, burst = 1)
+    public void principal() {
+    }
+
+    private static RateLimiter limiter(String name) throws Exception {
+        return RateLimiter.create(RateLimiterTest.class.getMethod(name).getAnnotation(RateLimit.class));
+    }
+
+    private static RequestInfo request(String address) {
+        return new RequestInfo(address,
+                new HashMap<String, String>(),
+                Collections.<String, List<String>>emptyMap());
+    }
+
+    @Test
+    public void tryAcquire_allowsBurstPerClient() throws Exception {
+        RateLimiter limiter = limiter("bucket");
+        for (int i = 0; i < 3; i++)
+            assertEquals(0, limiter.client(request("10.0.0.1")).tryAcquire());
+
+        long wait = limiter.client(request("10.0.0.1")).tryAcquire();
+        assertTrue(wait > 0 && wait <= 1000000000L);
+        assertEquals(0, limiter.client(request("10.0.0.2")).tryAcquire());
+        assertEquals(1, limiter.getRejected());
+    }
+
+    @Test
+    public void tryAcquire_limitsInFlight() throws Exception {
+        RateLimiter limiter = limiter("concurrent");
+        RateLimiter.Client first = limiter.client(request("10.0.0.1"));
+        RateLimiter.Client second = limiter.client(request("10.0.0.2"));
+        assertSame(first, second);
+
+        assertEquals(0, first.tryAcquire());
+        assertEquals(0, first.tryAcquire());
+        assertTrue(first.tryAcquire() > 0);
+
+        first.release();
+        assertEquals(0, first.tryAcquire());
+    }
+
+    @Test
+    public void client_boundedMemory() throws Exception {
+        RateLimiter limiter = limiter("bounded");
+        for (int i = 0; i < 1000; i++)
+            limiter.client(request("10.0." + (i / 256) + "." + (i % 256))).tryAcquire();
+
+        assertTrue(limiter.getClients() <= 10);
+        assertNull(RateLimiter.create(null));
+    }
+
+    @Test
+    public void client_principal_unverifiedCountedByAddress() throws Exception {
+        RateLimiter limiter = limiter("principal");
+
+        //A new Authorization value on every request does not get a new counter
+        for (int i = 0; i < 3; i++) {
+            RequestInfo requestInfo = request("10.0.0.1");
+            requestInfo.getHeaders().put(HeaderType.CONTENT_AUTHORIZATION, "Bearer " + i);
+            limiter.client(requestInfo).tryAcquire();
+        }
+        assertEquals(1, limiter.getClients());
+        assertEquals(2, limiter.getRejected());
+
+        //Verified users behind one address are counted apart
+        assertEquals(0, limiter.client(request("10.0.0.1"), "Bearer alice").tryAcquire());
+        assertEquals(0, limiter.client(request("10.0.0.1"), "Bearer bob").tryAcquire());
+        assertTrue(limiter.client(request("10.0.0.1"), "Bearer alice").tryAcquire() > 0);
+    }
+}
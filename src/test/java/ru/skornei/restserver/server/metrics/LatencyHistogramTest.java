@@ -0,0 +1,35 @@
+package ru.skornei.restserver.server.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void index_bucketsCoverValues() throws Exception {
+        for (long micros = 0; micros < 100000; micros++) {
+            int index = LatencyHistogram.index(micros);
+            assertTrue(micros <= LatencyHistogram.highestValue(index));
+            if (index > 0)
+                assertTrue(micros > LatencyHistogram.highestValue(index - 1));
+        }
+
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.index(Long.MAX_VALUE / 1000));
+    }
+
+    @Test
+    public void getValueAtPercentile_withinPrecision() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++)
+            histogram.record(i * 1000L);
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500500000L, histogram.getSumNanos());
+
+        long median = histogram.getValueAtPercentile(50);
+        assertTrue(median >= 500 && median <= 500 * 1.125);
+        long p99 = histogram.getValueAtPercentile(99);
+        assertTrue(p99 >= 990 && p99 <= 990 * 1.125);
+    }
+}
@@ -0,0 +1,50 @@
+package ru.skornei.restserver.server.protocol;
+
+import org.junit.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.*;
+
+public class AsyncResponseTest {
+
+    @Test
+    public void complete_onlyOnce() throws Exception {
+        AsyncResponse response = new AsyncResponse();
+        assertFalse(response.isDone());
+        assertTrue(response.complete("first"));
+        assertFalse(response.complete("second"));
+        assertFalse(response.fail(new IllegalStateException()));
+        assertEquals("first", response.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test(expected = TimeoutException.class)
+    public void get_timesOut() throws Exception {
+        new AsyncResponse().get(10, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void fail_reportsCause() throws Exception {
+        AsyncResponse response = new AsyncResponse();
+        IllegalStateException error = new IllegalStateException();
+        response.fail(error);
+        try {
+            response.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertSame(error, e.getCause());
+        }
+    }
+
+    @Test(expected = CancellationException.class)
+    public void cancel_rejectsLateResult() throws Exception {
+        AsyncResponse response = new AsyncResponse();
+        assertTrue(response.cancel(true));
+        assertFalse(response.complete("late"));
+        assertTrue(response.isCancelled());
+        response.get();
+    }
+}
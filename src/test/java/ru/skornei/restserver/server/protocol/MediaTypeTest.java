@@ -0,0 +1,34 @@
+package ru.skornei.restserver.server.protocol;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MediaTypeTest {
+
+    @Test
+    public void parseList_readsQuality() throws Exception {
+        List<MediaType> mediaTypes = MediaType.parseList("text/xml;q=0.9, Application/JSON, */*;q=0.1, broken");
+        assertEquals(3, mediaTypes.size());
+        assertEquals("xml", mediaTypes.get(0).getSubtype());
+        assertEquals(0.9f, mediaTypes.get(0).getQuality(), 0.001f);
+        assertEquals("application", mediaTypes.get(1).getType());
+        assertEquals(1f, mediaTypes.get(1).getQuality(), 0.001f);
+        assertTrue(mediaTypes.get(2).isWildcard());
+    }
+
+    @Test
+    public void includes_wildcardsAndSuffix() throws Exception {
+        MediaType json = MediaType.parse("application/json; charset=utf-8");
+        MediaType problem = MediaType.parse("application/problem+json");
+
+        assertTrue(MediaType.parse("*/*").includes(json));
+        assertTrue(MediaType.parse("application/*").includes(json));
+        assertTrue(MediaType.parse("application/json").includes(json));
+        assertTrue(MediaType.parse("application/*+json").includes(problem));
+        assertFalse(MediaType.parse("application/*+json").includes(json));
+        assertFalse(MediaType.parse("text/*").includes(json));
+    }
+}
@@ -0,0 +1,75 @@
+package ru.skornei.restserver.server.route;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ru.skornei.restserver.annotations.RestController;
+import ru.skornei.restserver.annotations.lifecycle.OnStart;
+import ru.skornei.restserver.annotations.lifecycle.OnStop;
+import ru.skornei.restserver.annotations.methods.GET;
+import ru.skornei.restserver.server.controller.SingletonControllerProvider;
+import ru.skornei.restserver.server.dictionary.ControllerScope;
+import ru.skornei.restserver.server.protocol.ResponseInfo;
+import ru.skornei.restserver.utils.ReflectionUtils;
+
+import static org.junit.Assert.*;
+
+public class ControllerInfoTest {
+
+    @RestController(value = "/test", scope = ControllerScope.SINGLETON)
+    public static class Controller {
+
+        static final AtomicInteger STARTED = new AtomicInteger();
+        static final AtomicInteger STOPPED = new AtomicInteger();
+
+        @GET
+        public void get(ResponseInfo responseInfo) {
+        }
+
+        @OnStart
+        public void start() {
+            STARTED.incrementAndGet();
+        }
+
+        @OnStop
+        public void stop() {
+            STOPPED.incrementAndGet();
+        }
+    }
+
+    @Test
+    public void stop_waitsForInFlightRequests() throws Exception {
+        Controller.STARTED.set(0);
+        Controller.STOPPED.set(0);
+        ControllerInfo controllerInfo = new ControllerInfo(Controller.class, null, null);
+        controllerInfo.start();
+
+        Object controller = controllerInfo.acquire();
+        controllerInfo.stop();
+        assertEquals(0, Controller.STOPPED.get());
+
+        //Requests that come late do not create a new instance
+        assertNull(controllerInfo.acquire());
+        assertEquals(1, Controller.STARTED.get());
+
+        controllerInfo.release(controller);
+        assertEquals(1, Controller.STOPPED.get());
+        assertNull(controllerInfo.acquire());
+
+        //A restart serves again
+        controllerInfo.start();
+        assertNotNull(controllerInfo.acquire());
+        assertEquals(2, Controller.STARTED.get());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void singletonProvider_refusesAfterStop() throws Exception {
+        SingletonControllerProvider provider = new SingletonControllerProvider(Controller.class,
+                ReflectionUtils.getDeclaredMethodInfo(Controller.class, OnStart.class),
+                ReflectionUtils.getDeclaredMethodInfo(Controller.class, OnStop.class));
+        provider.start();
+        provider.stop();
+        provider.acquire();
+    }
+}
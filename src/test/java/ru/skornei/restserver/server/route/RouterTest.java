@@ -0,0 +1,61 @@
+package ru.skornei.restserver.server.route;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RouterTest {
+
+    @Test
+    public void match_staticAndTemplateRoutes() throws Exception {
+        Router<String> router = new Router<>();
+        router.add("/devices", "list");
+        router.add("/devices/{id}", "device");
+        router.add("/devices/{id}/sensors/{sid}", "sensor");
+
+        assertEquals("list", router.match("/devices").getValue());
+
+        Router.Match<String> device = router.match("/devices/42");
+        assertEquals("device", device.getValue());
+        assertEquals("42", device.getPathVariables().get("id"));
+
+        Router.Match<String> sensor = router.match("/devices/42/sensors/7");
+        assertEquals("sensor", sensor.getValue());
+        assertEquals("42", sensor.getPathVariables().get("id"));
+        assertEquals("7", sensor.getPathVariables().get("sid"));
+
+        assertNull(router.match("/devices/42/sensors"));
+        assertNull(router.match("/unknown"));
+    }
+
+    @Test
+    public void match_staticSegmentWinsAndBacktracks() throws Exception {
+        Router<String> router = new Router<>();
+        router.add("/devices/{id}/state", "state");
+        router.add("/devices/list", "list");
+
+        assertEquals("list", router.match("/devices/list").getValue());
+
+        Router.Match<String> state = router.match("/devices/list/state");
+        assertEquals("state", state.getValue());
+        assertEquals("list", state.getPathVariables().get("id"));
+    }
+
+    @Test
+    public void withAndWithout_leaveOriginalUntouched() throws Exception {
+        Router<String> router = new Router<>();
+        router.add("/devices", "list");
+
+        Router<String> added = router.with("/devices/{id}", "device");
+        assertNull(router.match("/devices/1"));
+        assertEquals("device", added.match("/devices/1").getValue());
+
+        Router<String> replaced = added.with("/devices/{name}", "named");
+        assertEquals("1", replaced.match("/devices/1").getPathVariables().get("name"));
+        assertEquals(2, replaced.values().size());
+
+        Router<String> removed = replaced.without("list");
+        assertNull(removed.match("/devices"));
+        assertEquals("list", replaced.match("/devices").getValue());
+    }
+}
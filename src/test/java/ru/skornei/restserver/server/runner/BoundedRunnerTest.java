@@ -0,0 +1,87 @@
+package ru.skornei.restserver.server.runner;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import ru.skornei.restserver.annotations.RestController;
+import ru.skornei.restserver.annotations.RestServer;
+import ru.skornei.restserver.annotations.methods.GET;
+import ru.skornei.restserver.server.BaseRestServer;
+import ru.skornei.restserver.server.protocol.ResponseInfo;
+
+import static org.junit.Assert.*;
+
+public class BoundedRunnerTest {
+
+    @RestController("/slow")
+    public static class SlowController {
+
+        static final CountDownLatch ENTERED = new CountDownLatch(1);
+        static final CountDownLatch RELEASE = new CountDownLatch(1);
+
+        @GET
+        public void get(ResponseInfo responseInfo) throws InterruptedException {
+            ENTERED.countDown();
+            RELEASE.await(10, TimeUnit.SECONDS);
+            responseInfo.setBody("done".getBytes());
+        }
+    }
+
+    @RestServer(port = 0,
+            threads = 1,
+            queueSize = 0,
+            retryAfter = 4,
+            controllers = SlowController.class)
+    public static class Server extends BaseRestServer {
+    }
+
+    private static Socket request(BaseRestServer server) throws Exception {
+        Socket socket = new Socket("127.0.0.1", server.getListeningPort());
+        socket.setSoTimeout(5000);
+        socket.getOutputStream().write("GET /slow HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n".getBytes("US-ASCII"));
+        return socket;
+    }
+
+    private static String readAll(Socket socket) throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        InputStream inputStream = socket.getInputStream();
+        int read;
+        while ((read = inputStream.read()) != -1)
+            outputStream.write(read);
+        return outputStream.toString("US-ASCII");
+    }
+
+    @Test
+    public void exec_poolFull_answers503WithRetryAfter() throws Exception {
+        Server server = new Server();
+        server.start();
+        Socket busy = null;
+        Socket refused = null;
+        try {
+            busy = request(server);
+            assertTrue(SlowController.ENTERED.await(5, TimeUnit.SECONDS));
+            assertEquals(1, server.getActiveCount());
+
+            //The only thread is busy and there is no queue
+            refused = request(server);
+            String response = readAll(refused);
+            assertTrue(response, response.startsWith("HTTP/1.1 503"));
+            assertTrue(response, response.toLowerCase().contains("retry-after: 4\r\n"));
+
+            SlowController.RELEASE.countDown();
+            assertTrue(readAll(busy).startsWith("HTTP/1.1 200"));
+        } finally {
+            SlowController.RELEASE.countDown();
+            if (busy != null)
+                busy.close();
+            if (refused != null)
+                refused.close();
+            server.stop();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package ru.skornei.restserver.server.sse;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import fi.iki.elonen.NanoHTTPD;
+import ru.skornei.restserver.annotations.RateLimit;
+import ru.skornei.restserver.annotations.RestController;
+import ru.skornei.restserver.annotations.RestServer;
+import ru.skornei.restserver.annotations.methods.GET;
+import ru.skornei.restserver.annotations.methods.SSE;
+import ru.skornei.restserver.benchmark.MockSession;
+import ru.skornei.restserver.server.BaseRestServer;
+import ru.skornei.restserver.server.dictionary.HeaderType;
+import ru.skornei.restserver.server.protocol.ResponseInfo;
+
+import static org.junit.Assert.*;
+
+public class EventPublisherTest {
+
+    @SSE(bufferSize = 3, replaySize = 5)
+    public void events() {
+    }
+
+    @SSE(bufferSize = 1, heartbeat = 20)
+    public void quick() {
+    }
+
+    @RestController("/events")
+    public static class EventController {
+
+        @GET
+        public void get(ResponseInfo responseInfo) {
+            responseInfo.setBody("state".getBytes());
+        }
+
+        @SSE
+        @RateLimit(concurrency = 1)
+        public void subscribe() {
+        }
+    }
+
+    @RestServer(port = 0, controllers = EventController.class)
+    public static class Server extends BaseRestServer {
+    }
+
+    private static NanoHTTPD.Response subscribe(BaseRestServer server) {
+        return server.serve(new MockSession(NanoHTTPD.Method.GET, "/events", null)
+                .header(HeaderType.ACCEPT, EventStreamResponse.MIME_TYPE));
+    }
+
+    private static EventPublisher publisher() throws Exception {
+        return new EventPublisher(EventPublisherTest.class.getMethod("events").getAnnotation(SSE.class), null);
+    }
+
+    private static String next(EventSubscriber subscriber) throws Exception {
+        return new String(subscriber.poll(0).getFrame(), "UTF-8");
+    }
+
+    @Test
+    public void publish_formatsEvent() throws Exception {
+        EventPublisher publisher = publisher();
+        EventSubscriber subscriber = publisher.newSubscriber();
+        publisher.subscribe(subscriber, null);
+
+        publisher.publish("state", "a\nb");
+        assertEquals("id: 1\nevent: state\ndata: a\ndata: b\n\n", next(subscriber));
+    }
+
+    @Test
+    public void subscribe_replaysMissedEvents() throws Exception {
+        EventPublisher publisher = publisher();
+        for (int i = 0; i < 8; i++)
+            publisher.publish(String.valueOf(i));
+
+        EventSubscriber subscriber = publisher.newSubscriber();
+        publisher.subscribe(subscriber, "6");
+        assertTrue(next(subscriber).startsWith("id: 7\n"));
+        assertTrue(next(subscriber).startsWith("id: 8\n"));
+        assertNull(subscriber.poll(0));
+    }
+
+    @Test
+    public void publish_evictsSlowConsumer() throws Exception {
+        EventPublisher publisher = publisher();
+        EventSubscriber subscriber = publisher.newSubscriber();
+        publisher.subscribe(subscriber, null);
+
+        for (int i = 0; i < 4; i++)
+            publisher.publish(String.valueOf(i));
+
+        assertTrue(subscriber.isClosed());
+        assertEquals(0, publisher.getSubscribers());
+        assertEquals(1, publisher.getEvicted());
+        assertSame(EventSubscriber.CLOSE, subscriber.poll(0));
+    }
+
+    @Test
+    public void rateLimit_heldWhileStreamIsOpen() throws Exception {
+        Server server = new Server();
+
+        NanoHTTPD.Response stream = subscribe(server);
+        assertTrue(stream instanceof EventStreamResponse);
+
+        //The open stream takes the only place, plain GET has no limit
+        assertEquals(429, subscribe(server).getStatus().getRequestStatus());
+        assertEquals(200, server.serve(new MockSession(NanoHTTPD.Method.GET, "/events", null)).getStatus().getRequestStatus());
+
+        //The stream ends, the place is free
+        ((EventStreamResponse) stream).writeBody(new ByteArrayOutputStream());
+        assertTrue(subscribe(server) instanceof EventStreamResponse);
+    }
+
+    @Test
+    public void sendBody_endsWhenCloseWasDropped() throws Exception {
+        EventPublisher publisher = new EventPublisher(EventPublisherTest.class.getMethod("quick").getAnnotation(SSE.class), null);
+        final EventSubscriber subscriber = publisher.newSubscriber();
+        publisher.subscribe(subscriber, null);
+        final EventStreamResponse response = new EventStreamResponse(publisher, subscriber);
+
+        //A racing offer refilled the queue of one after close cleared it
+        subscriber.close();
+        assertSame(EventSubscriber.CLOSE, subscriber.poll());
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> stream = executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    response.sendBody(new ByteArrayOutputStream());
+                    return null;
+                }
+            });
+            stream.get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package ru.skornei.restserver.server.tls;
+
+import org.junit.Test;
+
+import ru.skornei.restserver.annotations.RestServer;
+
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.KeyStore;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManagerFactory;
+
+import static org.junit.Assert.*;
+
+public class TlsManagerTest {
+
+    /**
+     * Самоподписанный сертификат для localhost, пароль password
+     */
+    private static final String KEY_STORE = "test-keystore.p12";
+
+    @RestServer(port = 0, controllers = {}, keyStore = KEY_STORE, keyStoreType = "PKCS12")
+    private static class NoPasswordServer {
+    }
+
+    @RestServer(port = 0, controllers = {}, keyStore = KEY_STORE, keyStorePassword = "password", keyStoreType = "PKCS12")
+    private static class AnnotatedPasswordServer {
+    }
+
+    private static SSLContext trustingClient() throws Exception {
+        KeyStore store = KeyStore.getInstance("PKCS12");
+        InputStream inputStream = TlsManagerTest.class.getResourceAsStream("/" + KEY_STORE);
+        try {
+            store.load(inputStream, "password".toCharArray());
+        } finally {
+            inputStream.close();
+        }
+
+        TrustManagerFactory trustManagerFactory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManagerFactory.init(store);
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(null, trustManagerFactory.getTrustManagers(), null);
+        return context;
+    }
+
+    private static boolean connect(final TlsManager tls,
+                                   final ServerSocket serverSocket,
+                                   SSLContext client,
+                                   ExecutorService executor) throws Exception {
+        Future<Boolean> accepted = executor.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                SSLSocket socket = tls.wrap(serverSocket.accept());
+                try {
+                    return tls.handshake(socket);
+                } finally {
+                    socket.close();
+                }
+            }
+        });
+
+        SSLSocket socket = (SSLSocket) client.getSocketFactory().createSocket("localhost", serverSocket.getLocalPort());
+        try {
+            socket.startHandshake();
+        } catch (Exception ignored) {
+        } finally {
+            socket.close();
+        }
+
+        return accepted.get();
+    }
+
+    @Test
+    public void handshake_resumesCachedSession() throws Exception {
+        TlsManager tls = new TlsManager(KEY_STORE, "password".toCharArray(), "PKCS12", new String[]{"TLSv1.2"}, 16, 60);
+        ServerSocket serverSocket = new ServerSocket(0, 10, InetAddress.getByName("127.0.0.1"));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            SSLContext client = trustingClient();
+            assertTrue(connect(tls, serverSocket, client, executor));
+            Thread.sleep(5);
+            assertTrue(connect(tls, serverSocket, client, executor));
+
+            assertEquals(2, tls.getHandshakes());
+            assertEquals(1, tls.getResumedHandshakes());
+            assertTrue(tls.getHandshakeNanos() > 0);
+        } finally {
+            executor.shutdownNow();
+            serverSocket.close();
+        }
+    }
+
+    @Test
+    public void handshake_countsFailures() throws Exception {
+        TlsManager tls = new TlsManager(KEY_STORE, "password".toCharArray(), "PKCS12", new String[0], 16, 60);
+        ServerSocket serverSocket = new ServerSocket(0, 10, InetAddress.getByName("127.0.0.1"));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            //Default trust store does not know the self-signed certificate
+            assertFalse(connect(tls, serverSocket, SSLContext.getDefault(), executor));
+            assertEquals(0, tls.getHandshakes());
+            assertEquals(1, tls.getFailedHandshakes());
+        } finally {
+            executor.shutdownNow();
+            serverSocket.close();
+        }
+    }
+
+    @Test
+    public void create_usesRuntimePassword() {
+        char[] password = "password".toCharArray();
+        RestServer restServer = NoPasswordServer.class.getAnnotation(RestServer.class);
+
+        assertNotNull(TlsManager.create(restServer, password));
+        //The caller's copy is wiped after loading
+        assertTrue(Arrays.equals(new char[password.length], password));
+    }
+
+    @Test
+    public void create_fallsBackToAnnotation() {
+        RestServer restServer = AnnotatedPasswordServer.class.getAnnotation(RestServer.class);
+        assertNotNull(TlsManager.create(restServer, null));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void create_failsWithoutPassword() {
+        TlsManager.create(NoPasswordServer.class.getAnnotation(RestServer.class), null);
+    }
+}
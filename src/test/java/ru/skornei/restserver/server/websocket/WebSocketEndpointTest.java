@@ -0,0 +1,124 @@
+package ru.skornei.restserver.server.websocket;
+
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import fi.iki.elonen.NanoHTTPD;
+import fi.iki.elonen.NanoWSD;
+import ru.skornei.restserver.annotations.RequiresAuthentication;
+import ru.skornei.restserver.annotations.RestController;
+import ru.skornei.restserver.annotations.RestServer;
+import ru.skornei.restserver.annotations.WebSocket;
+import ru.skornei.restserver.annotations.websocket.OnMessage;
+import ru.skornei.restserver.annotations.websocket.OnOpen;
+import ru.skornei.restserver.benchmark.MockSession;
+import ru.skornei.restserver.server.BaseRestServer;
+import ru.skornei.restserver.server.authentication.BaseAsyncAuthentication;
+import ru.skornei.restserver.server.converter.BaseConverter;
+import ru.skornei.restserver.server.dictionary.HeaderType;
+import ru.skornei.restserver.server.protocol.RequestInfo;
+
+import static org.junit.Assert.*;
+
+public class WebSocketEndpointTest {
+
+    @WebSocket(sendQueueSize = 0)
+    public static class Text {
+        @OnMessage
+        public void message(WebSocketConnection connection, String message) {
+        }
+    }
+
+    @WebSocket
+    public static class Number {
+        @OnMessage
+        public void message(Integer message) {
+        }
+    }
+
+    @RestController("/secure")
+    @WebSocket
+    public static class Secure {
+        @OnOpen
+        @RequiresAuthentication
+        public void open(WebSocketConnection connection) {
+        }
+    }
+
+    public static class AsyncAuthentication implements BaseAsyncAuthentication {
+        @Override
+        public Future<?> authenticate(final RequestInfo requestInfo) {
+            FutureTask<Object> task = new FutureTask<>(new Callable<Object>() {
+                @Override
+                public Object call() {
+                    return "Bearer valid".equals(requestInfo.getHeaders().get(HeaderType.CONTENT_AUTHORIZATION)) ? "user" : null;
+                }
+            });
+            new Thread(task).start();
+            return task;
+        }
+    }
+
+    @RestServer(port = 0,
+            authentication = AsyncAuthentication.class,
+            controllers = Secure.class)
+    public static class Server extends BaseRestServer {
+    }
+
+    private static MockSession upgrade(String authorization) {
+        MockSession session = new MockSession(NanoHTTPD.Method.GET, "/secure", null)
+                .header("upgrade", "websocket")
+                .header("connection", "Upgrade")
+                .header("sec-websocket-version", "13")
+                .header("sec-websocket-key", "dGhlIHNhbXBsZSBub25jZQ==");
+        if (authorization != null)
+            session.header(HeaderType.CONTENT_AUTHORIZATION, authorization);
+        return session;
+    }
+
+    private static final BaseConverter CONVERTER = new BaseConverter() {
+        @Override
+        public byte[] writeValueAsBytes(Object value) {
+            return ("<" + value + ">").getBytes();
+        }
+
+        @Override
+        public <T> T writeValue(byte[] src, Class<T> valueType) {
+            return valueType.cast(Integer.valueOf(new String(src)));
+        }
+    };
+
+    @Test
+    public void decode_byParameterClass() throws Exception {
+        WebSocketEndpoint text = new WebSocketEndpoint(Text.class, CONVERTER);
+        assertEquals("hi", text.decode(new NanoWSD.WebSocketFrame(NanoWSD.WebSocketFrame.OpCode.Text, true, "hi")));
+        assertEquals(1, text.getSendQueueSize());
+
+        WebSocketEndpoint number = new WebSocketEndpoint(Number.class, CONVERTER);
+        assertEquals(42, number.decode(new NanoWSD.WebSocketFrame(NanoWSD.WebSocketFrame.OpCode.Text, true, "42")));
+    }
+
+    @Test
+    public void encode_usesConverterForObjects() throws Exception {
+        WebSocketEndpoint endpoint = new WebSocketEndpoint(Text.class, CONVERTER);
+        assertEquals("hi", endpoint.encode("hi").getTextPayload());
+        assertEquals("<7>", endpoint.encode(7).getTextPayload());
+        assertEquals(NanoWSD.WebSocketFrame.OpCode.Binary, endpoint.encode(new byte[]{1}).getOpCode());
+    }
+
+    @Test
+    public void upgrade_asyncAuthentication() throws Exception {
+        Server server = new Server();
+        server.start();
+        try {
+            assertEquals(401, server.serve(upgrade(null)).getStatus().getRequestStatus());
+            assertEquals(401, server.serve(upgrade("Bearer forged")).getStatus().getRequestStatus());
+            assertEquals(101, server.serve(upgrade("Bearer valid")).getStatus().getRequestStatus());
+        } finally {
+            server.stop();
+        }
+    }
+}
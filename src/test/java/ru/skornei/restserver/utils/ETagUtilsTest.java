@@ -0,0 +1,42 @@
+package ru.skornei.restserver.utils;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import ru.skornei.restserver.server.dictionary.HeaderType;
+
+import static org.junit.Assert.*;
+
+public class ETagUtilsTest {
+
+    @Test
+    public void createETag_dependsOnContent() throws Exception {
+        String etag = ETagUtils.createETag("state".getBytes("UTF-8"));
+        assertEquals(etag, ETagUtils.createETag("state".getBytes("UTF-8")));
+        assertNotEquals(etag, ETagUtils.createETag("State".getBytes("UTF-8")));
+        assertTrue(etag.startsWith("\"") && etag.endsWith("\""));
+    }
+
+    @Test
+    public void isNotModified_ifNoneMatch() throws Exception {
+        Map<String, String> headers = new HashMap<>();
+        headers.put(HeaderType.IF_NONE_MATCH, "\"a\", W/\"42\"");
+
+        assertTrue(ETagUtils.isNotModified(headers, ETagUtils.quote("42"), -1));
+        assertTrue(ETagUtils.isNotModified(headers, "W/\"a\"", -1));
+        assertFalse(ETagUtils.isNotModified(headers, "\"43\"", -1));
+        assertFalse(ETagUtils.isNotModified(headers, null, 0));
+    }
+
+    @Test
+    public void isNotModified_ifModifiedSince() throws Exception {
+        Map<String, String> headers = new HashMap<>();
+        headers.put(HeaderType.IF_MODIFIED_SINCE, DateUtils.formatHttpDate(2000000));
+
+        assertTrue(ETagUtils.isNotModified(headers, null, 2000500));
+        assertFalse(ETagUtils.isNotModified(headers, null, 3000000));
+        assertFalse(ETagUtils.isNotModified(headers, null, -1));
+    }
+}